@@ -0,0 +1,55 @@
+package huntingtreasure.benchmarks;
+
+import huntingtreasure.GameEngine;
+import huntingtreasure.GameMode;
+import huntingtreasure.GreedyPolicy;
+import huntingtreasure.Policy;
+import huntingtreasure.SplittableRandomSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Plays whole games end to end with the scripted GreedyPolicy, one seeded game per call.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GameBenchmark {
+    // constants
+    private static final int MAX_TURNS = 500;
+
+    @Param({"EASY", "NORMAL", "HARD", "SAMURAI"})
+    public GameMode mode;
+
+    // instance variables
+    private Policy policy;
+    private long gameIndex;
+
+    @Setup
+    public void setUp() {
+        policy = new GreedyPolicy();
+        gameIndex = 0;
+    }
+
+    @Benchmark
+    public int playGame() {
+        GameEngine game = new GameEngine("bench", mode, SplittableRandomSource.forGame(42, gameIndex++));
+        int turns = 0;
+        while (!game.isGameOver() && turns < MAX_TURNS) {
+            policy.playTurn(game);
+            turns++;
+        }
+        return turns;
+    }
+}
@@ -0,0 +1,75 @@
+package huntingtreasure.benchmarks;
+
+import huntingtreasure.Hunter;
+import huntingtreasure.ItemType;
+import huntingtreasure.RandomSource;
+import huntingtreasure.Shop;
+import huntingtreasure.Town;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the Hunter's inventory: hunting for treasure and buying and selling items.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HunterBenchmark {
+    // instance variables
+    private Shop shop;
+    private RandomSource random;
+    private Hunter hunter;
+
+    @Setup
+    public void setUp() {
+        shop = Shop.of(0.5, false);
+        random = RandomSource.seeded(42);
+        hunter = new Hunter("bench", 1000);
+    }
+
+    /**
+     * A fresh hunter hunts a fresh town, which covers every branch of Search in proportion to the treasure odds.
+     */
+    @Benchmark
+    public boolean searchNewTown() {
+        Hunter searcher = new Hunter("bench", 20);
+        Town town = new Town(shop, 0.4, random);
+        town.hunterArrives(searcher);
+        return searcher.Search(town.getTreasure(), town);
+    }
+
+    /**
+     * Buys an item by name and sells it straight back, so the kit and the gold stay the same between calls.
+     */
+    @Benchmark
+    public boolean buyAndSellByName() {
+        boolean bought = hunter.buyItem("horse", 12);
+        boolean sold = hunter.sellItem("horse", 12);
+        return bought & sold;
+    }
+
+    /**
+     * The same round trip as buyAndSellByName, using ItemType instead of the item's name.
+     */
+    @Benchmark
+    public boolean buyAndSellByType() {
+        boolean bought = hunter.buyItem(ItemType.HORSE, 12);
+        boolean sold = hunter.sellItem(ItemType.HORSE, 12);
+        return bought & sold;
+    }
+
+    @Benchmark
+    public boolean hasItemInKit() {
+        return hunter.hasItemInKit("shovel");
+    }
+}
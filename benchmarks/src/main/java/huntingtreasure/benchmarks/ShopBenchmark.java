@@ -0,0 +1,63 @@
+package huntingtreasure.benchmarks;
+
+import huntingtreasure.ItemType;
+import huntingtreasure.Shop;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the Shop's price lookups and its catalog.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShopBenchmark {
+    @Param({"water", "shovel", "sword", "nothing"})
+    public String item;
+
+    // instance variables
+    private Shop shop;
+    private ItemType itemType;
+
+    @Setup
+    public void setUp() {
+        shop = Shop.of(0.5, true);
+        itemType = ItemType.fromName(item);
+    }
+
+    @Benchmark
+    public int getCostOfItem() {
+        return shop.getCostOfItem(item);
+    }
+
+    @Benchmark
+    public int getCostOfItemType() {
+        return shop.getCostOfItem(itemType);
+    }
+
+    @Benchmark
+    public int getBuyBackCost() {
+        return shop.getBuyBackCost(item);
+    }
+
+    @Benchmark
+    public String inventory() {
+        return shop.inventory();
+    }
+
+    @Benchmark
+    public Shop lookUpSharedShop() {
+        return Shop.of(0.5, true);
+    }
+}
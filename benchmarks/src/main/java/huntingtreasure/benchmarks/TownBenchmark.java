@@ -0,0 +1,107 @@
+package huntingtreasure.benchmarks;
+
+import huntingtreasure.Hunter;
+import huntingtreasure.ItemType;
+import huntingtreasure.RandomSource;
+import huntingtreasure.Shop;
+import huntingtreasure.Town;
+import huntingtreasure.TownFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for building towns and for the things a Hunter does in one.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TownBenchmark {
+    // instance variables
+    private Shop shop;
+    private RandomSource random;
+    private Hunter hunter;
+    private Town town;
+    private TownFactory townFactory;
+    private Town pooledTown;
+
+    @Setup
+    public void setUp() {
+        shop = Shop.of(0.5, false);
+        random = RandomSource.seeded(42);
+        hunter = new Hunter("bench");
+        hunter.buyItem(ItemType.SHOVEL, 8);
+        town = newTown();
+        townFactory = new TownFactory(shop, 0.4, random, 1);
+        pooledTown = townFactory.newTown();
+    }
+
+    private Town newTown() {
+        Town newTown = new Town(shop, 0.4, random);
+        newTown.hunterArrives(hunter);
+        return newTown;
+    }
+
+    @Benchmark
+    public Town construct() {
+        return new Town(shop, 0.4, random);
+    }
+
+    @Benchmark
+    public Town constructAndArrive() {
+        return newTown();
+    }
+
+    /**
+     * Moves to a new town the way the GameEngine does: the old town goes back to the factory and comes out reset.
+     */
+    @Benchmark
+    public Town moveThroughFactory() {
+        townFactory.recycle(pooledTown);
+        pooledTown = townFactory.newTown();
+        pooledTown.hunterArrives(hunter);
+        return pooledTown;
+    }
+
+    @Benchmark
+    public String lookForTrouble() {
+        town.lookForTrouble(false);
+        if (hunter.getGold() < 0) {
+            hunter.changeGold(100);
+        }
+        return town.getLatestNews();
+    }
+
+    /**
+     * A town can only be dug once, so each dig is in a new town.
+     */
+    @Benchmark
+    public String newTownAndDig() {
+        Town digSite = newTown();
+        digSite.digGold();
+        return digSite.getLatestNews();
+    }
+
+    /**
+     * Leaves the town on normal difficulty and puts back whatever broke on the way out.
+     */
+    @Benchmark
+    public boolean leaveTown() {
+        boolean left = town.leaveTown(false);
+        ItemType used = town.getTerrain().getNeededItemType();
+        if (!hunter.hasItemInKit(used)) {
+            hunter.buyItem(used, 1);
+            hunter.changeGold(1);
+        }
+        return left;
+    }
+}
@@ -1,7 +0,0 @@
-public class TreasureHunterRunner {
-    public static void main(String[] args) {
-        TreasureHunter game = new TreasureHunter();
-        //System.out.println(Math.random() * 6);
-        game.play();
-    }
-}
\ No newline at end of file
@@ -0,0 +1,167 @@
+package huntingtreasure;
+
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * An AliasSampler rolls one of a fixed number of outcomes, each with its own whole-number weight, in the same time
+ * however many outcomes there are and however uneven their weights. It uses Vose's alias method.<p>
+ * The outcomes are laid out in columns, one per outcome. Every column holds the same total weight. Column i is filled
+ * with outcome i up to its threshold, and the rest of the column belongs to one other outcome, its alias. A roll picks
+ * a column with one nextInt() and, unless the column is all one outcome, picks a side of the threshold with a second
+ * nextInt().<p>
+ * The table is built with whole numbers, so the odds are exact. Equal weights fill every column to the top, so a roll
+ * is a single nextInt(count) and gives the same outcome it always did. Samplers never change once built, so any
+ * number of threads can share one.<p>
+ * fill() rolls a whole block of outcomes into a buffer, one for each of a set of rollers with random streams of their
+ * own, which is how the BatchSimulator rolls the towns for every hunter that moves on in a turn.
+ */
+
+public final class AliasSampler {
+    // instance variables
+    private final int[] weights;
+    private final int total;
+    private final int[] thresholds;
+    private final int[] aliases;
+
+    /**
+     * Builds the table for a set of weights.
+     *
+     * @param weights How likely each outcome is, relative to the others; zero means never.
+     * @throws IllegalArgumentException if there are no weights, one is negative, or they add up to zero or past what
+     *                                  fits in an int.
+     */
+    public AliasSampler(int... weights) {
+        int count = weights.length;
+        if (count == 0) {
+            throw new IllegalArgumentException("A sampler needs at least one outcome");
+        }
+        long sum = 0;
+        for (int weight : weights) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weights can't be negative: " + weight);
+            }
+            sum += weight;
+        }
+        if (sum == 0 || sum > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Weights must add up to between 1 and " + Integer.MAX_VALUE + ", not " + sum);
+        }
+        this.weights = weights.clone();
+        total = (int) sum;
+        thresholds = new int[count];
+        aliases = new int[count];
+
+        // scaled by count, so each column holds exactly total and every comparison stays in whole numbers; the scaled
+        // weights are longs, so only the total itself has to fit in an int
+        long[] scaled = new long[count];
+        int[] small = new int[count];
+        int[] large = new int[count];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            scaled[i] = (long) weights[i] * count;
+            if (scaled[i] < total) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            thresholds[less] = (int) scaled[less];
+            aliases[less] = more;
+            // the larger outcome tops up the smaller one's column
+            scaled[more] -= total - scaled[less];
+            if (scaled[more] < total) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // what is left adds up to exactly one full column each, so nothing small can be left over
+        while (largeCount > 0) {
+            int full = large[--largeCount];
+            thresholds[full] = total;
+            aliases[full] = full;
+        }
+    }
+
+    /**
+     * @param count The number of outcomes.
+     * @return A sampler where every outcome is as likely as any other; a roll is one nextInt(count).
+     */
+    public static AliasSampler uniform(int count) {
+        int[] weights = new int[count];
+        Arrays.fill(weights, 1);
+        return new AliasSampler(weights);
+    }
+
+    // accessors
+    public int getCount() {
+        return weights.length;
+    }
+
+    public int getWeight(int outcome) {
+        return weights[outcome];
+    }
+
+    public int getTotalWeight() {
+        return total;
+    }
+
+    /**
+     * @return Whether a roll landing in the column is always the column's own outcome, needing no second roll.
+     */
+    boolean isFull(int column) {
+        return thresholds[column] == total;
+    }
+
+    /**
+     * Finishes a roll for callers that make their own random numbers, as the BatchSimulator does.
+     *
+     * @param column The column the first roll picked.
+     * @param roll The second roll, from 0 up to getTotalWeight().
+     * @return The outcome.
+     */
+    int resolve(int column, int roll) {
+        return roll < thresholds[column] ? column : aliases[column];
+    }
+
+    /**
+     * Rolls one outcome.
+     *
+     * @param random Where the roll comes from.
+     * @return The outcome's number, from 0 up to getCount().
+     */
+    public int sample(RandomSource random) {
+        int column = random.nextInt(thresholds.length);
+        int threshold = thresholds[column];
+        if (threshold == total || random.nextInt(total) < threshold) {
+            return column;
+        }
+        return aliases[column];
+    }
+
+    /**
+     * Rolls one outcome for each of a block of rollers into a buffer. Each roller's rolls come from its own stream and
+     * are taken just as sample() takes them, so every roller gets the outcome sample() would have given it.
+     *
+     * @param rolls Makes a roller's next roll: applyAsInt(roller, bound) gives a number from 0 up to bound.
+     * @param rollers The rollers, one per outcome to roll.
+     * @param buffer Where the outcomes go, in the same order as the rollers.
+     * @param count How many outcomes to roll.
+     */
+    public void fill(IntBinaryOperator rolls, int[] rollers, int[] buffer, int count) {
+        int columns = thresholds.length;
+        int[] thresholds = this.thresholds;
+        int[] aliases = this.aliases;
+        int total = this.total;
+        for (int i = 0; i < count; i++) {
+            int roller = rollers[i];
+            int column = rolls.applyAsInt(roller, columns);
+            int threshold = thresholds[column];
+            buffer[i] = threshold == total || rolls.applyAsInt(roller, total) < threshold ? column : aliases[column];
+        }
+    }
+}
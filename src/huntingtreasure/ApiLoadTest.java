@@ -0,0 +1,261 @@
+package huntingtreasure;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The ApiLoadTest plays many games against an ApiServer at once and measures how many requests it answers a second
+ * and how long they take.<p>
+ * Each connection is a virtual thread with a kept-alive socket of its own, playing one game after another: it starts
+ * a game, then plays random turns with the token from each answer until the game is over or MAX_TURNS have gone by.
+ * Its purchases are a shovel or whatever the town's terrain needs. The connection waits for each
+ * answer before sending the next request, so the latencies are what a player would see, with no requests queued up
+ * on the client's side.<p>
+ * Nothing is counted during the warm-up, while the JIT compiles the server; the report covers the rest of the run.
+ */
+
+public class ApiLoadTest {
+    // constants
+    public static final int MAX_TURNS = 100;
+    private static final String[] TURNS = {
+        "{\"command\":\"trouble\",\"token\":\"",
+        "{\"command\":\"dig\",\"token\":\"",
+        "{\"command\":\"hunt\",\"token\":\"",
+        "{\"command\":\"move\",\"token\":\"",
+        "{\"command\":\"explore\",\"token\":\"",
+        "{\"command\":\"buy\",\"item\":\"shovel\",\"token\":\"",
+        // buys whatever the town's terrain needs
+        null
+    };
+    private static final String NEW_GAME = "{\"name\":\"Loader\",\"mode\":\"normal\"}";
+
+    // instance variables
+    private final String host;
+    private final int port;
+    private final int connections;
+    private final LatencyHistogram latencies;
+    private final LongAdder requests;
+    private final LongAdder errors;
+    private final LongAdder games;
+    private volatile boolean counting;
+    private volatile boolean running;
+
+    /**
+     * @param host The server's host.
+     * @param port The server's port.
+     * @param connections How many players play at once.
+     */
+    public ApiLoadTest(String host, int port, int connections) {
+        this.host = host;
+        this.port = port;
+        this.connections = connections;
+        latencies = new LatencyHistogram();
+        requests = new LongAdder();
+        errors = new LongAdder();
+        games = new LongAdder();
+    }
+
+    /**
+     * Runs the load and describes what was measured.
+     *
+     * @param warmUpMillis How long to play before measuring.
+     * @param measureMillis How long to measure for.
+     * @return The report: requests a second, failed requests and latency percentiles.
+     * @throws InterruptedException if the calling thread is interrupted while the load runs.
+     */
+    public String run(long warmUpMillis, long measureMillis) throws InterruptedException {
+        running = true;
+        List<Thread> players = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            players.add(Thread.ofVirtual().name("load-" + i).start(this::play));
+        }
+        Thread.sleep(warmUpMillis);
+        counting = true;
+        long start = System.nanoTime();
+        Thread.sleep(measureMillis);
+        counting = false;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        running = false;
+        for (Thread player : players) {
+            player.join();
+        }
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%d connections, %.1f seconds measured after %.1f seconds of warm-up%n",
+                connections, seconds, warmUpMillis / 1000.0));
+        report.append(String.format("%,d requests (%,.0f a second), %,d games started, %,d failed%n",
+                requests.sum(), requests.sum() / seconds, games.sum(), errors.sum()));
+        report.append(String.format("Latency in ms: mean %.3f, p50 %.3f, p90 %.3f, p99 %.3f, p99.9 %.3f, max %.3f%n",
+                latencies.getMeanMicros() / 1000, latencies.getP50Micros() / 1000, latencies.getP90Micros() / 1000,
+                latencies.getP99Micros() / 1000, latencies.getP999Micros() / 1000, latencies.getMaxMicros() / 1000));
+        return report.toString();
+    }
+
+    /**
+     * One player: plays games over one connection until the run is over, reconnecting if the connection fails.
+     */
+    private void play() {
+        while (running) {
+            try (Socket socket = new Socket(host, port)) {
+                socket.setTcpNoDelay(true);
+                Answers in = new Answers(socket.getInputStream());
+                OutputStream out = socket.getOutputStream();
+                String token = null;
+                String neededItem = null;
+                int turns = 0;
+                while (running) {
+                    String body;
+                    String path;
+                    if (token == null) {
+                        path = "/games";
+                        body = NEW_GAME;
+                    } else {
+                        path = "/turns";
+                        String turn = TURNS[ThreadLocalRandom.current().nextInt(TURNS.length)];
+                        if (turn == null) {
+                            turn = "{\"command\":\"buy\",\"item\":\"" + neededItem + "\",\"token\":\"";
+                        }
+                        body = turn + token + "\"}";
+                    }
+                    long started = System.nanoTime();
+                    String answer = post(in, out, path, body);
+                    long nanos = System.nanoTime() - started;
+                    if (counting) {
+                        latencies.record(nanos);
+                        requests.increment();
+                        if (answer == null) {
+                            errors.increment();
+                        } else if (token == null) {
+                            games.increment();
+                        }
+                    }
+                    turns = token == null ? 0 : turns + 1;
+                    if (answer == null || !answer.contains("\"status\":\"playing\"") || turns == MAX_TURNS) {
+                        token = null;
+                    } else {
+                        token = field(answer, "token");
+                        neededItem = field(answer, "neededItem");
+                    }
+                }
+            } catch (IOException e) {
+                if (counting) {
+                    errors.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends one request and reads the answer.
+     *
+     * @return The answer's body, or null if the answer wasn't a 200.
+     */
+    private String post(Answers in, OutputStream out, String path, String body) throws IOException {
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        String head = "POST " + path + " HTTP/1.1\r\nHost: " + host + "\r\nContent-Type: application/json\r\n"
+                + "Content-Length: " + content.length + "\r\n\r\n";
+        byte[] headBytes = head.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] request = new byte[headBytes.length + content.length];
+        System.arraycopy(headBytes, 0, request, 0, headBytes.length);
+        System.arraycopy(content, 0, request, headBytes.length, content.length);
+        out.write(request);
+        out.flush();
+
+        String statusLine = in.readLine();
+        int length = -1;
+        String line;
+        while (!(line = in.readLine()).isEmpty()) {
+            if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                length = Integer.parseInt(line.substring(15).trim());
+            }
+        }
+        if (length < 0) {
+            throw new IOException("The answer has no Content-Length");
+        }
+        String answer = in.readBody(length);
+        return statusLine.startsWith("HTTP/1.1 200") ? answer : null;
+    }
+
+    /**
+     * Reads a connection's answers through a buffer of its own. Only one thread reads a connection,
+     * so unlike a BufferedInputStream it takes no lock for every byte.
+     */
+    private static final class Answers {
+        // instance variables
+        private final InputStream in;
+        private byte[] buffer;
+        private int position;
+        private int limit;
+
+        Answers(InputStream in) {
+            this.in = in;
+            buffer = new byte[8192];
+        }
+
+        String readLine() throws IOException {
+            int start = position;
+            while (true) {
+                for (int i = start; i < limit; i++) {
+                    if (buffer[i] == '\n') {
+                        int end = i > position && buffer[i - 1] == '\r' ? i - 1 : i;
+                        String line = new String(buffer, position, end - position, StandardCharsets.ISO_8859_1);
+                        position = i + 1;
+                        return line;
+                    }
+                }
+                start = limit - position;
+                fill(limit - position + 1);
+                start += position;
+            }
+        }
+
+        String readBody(int length) throws IOException {
+            fill(length);
+            String body = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return body;
+        }
+
+        /**
+         * Reads until at least the given number of bytes are waiting, moving them to the front of the buffer first.
+         */
+        private void fill(int wanted) throws IOException {
+            if (limit - position >= wanted) {
+                return;
+            }
+            if (wanted > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(wanted, buffer.length * 2));
+            }
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+            while (limit < wanted) {
+                int read = in.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    throw new IOException("The server hung up");
+                }
+                limit += read;
+            }
+        }
+    }
+
+    /**
+     * Picks a string out of an answer; the server never puts quotes inside a token or an item's name.
+     */
+    private static String field(String json, String name) {
+        int start = json.indexOf("\"" + name + "\":\"");
+        if (start < 0) {
+            return null;
+        }
+        start += name.length() + 4;
+        return json.substring(start, json.indexOf('"', start));
+    }
+}
@@ -0,0 +1,500 @@
+package huntingtreasure;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The ApiServer plays Treasure Hunter over HTTP, one turn per request, with JSON going both ways.<p>
+ * POST /games with {"name": ..., "mode": ...} starts a game, and POST /turns with {"token": ..., "command": ...,
+ * "item": ..., "price": ...} plays a turn of one. A buy or sell with a price is called off if the shop's price is no
+ * longer that one, so a player never pays more than they were shown. Every answer describes the hunter and the town and carries a new GameToken with the
+ * whole game in it, which the player sends back with their next turn. Any server sharing the key can take any turn,
+ * with no sticky sessions and no shared store.<p>
+ * All a server remembers is, for each game it has played a turn of, the newest turn it handed out and the request that
+ * played it: a few dozen bytes a game. A token older than that is answered 409, so a player can't go back to an earlier
+ * token and try something else. The newest token can be sent again with the same request, in case its answer was
+ * lost; the seed in the token makes it come out the same. A server that has never seen a game takes it up at the
+ * token's turn, so only the servers that have seen a game's newer tokens can turn its older ones away: a deployment
+ * that wants no way back at all sends each game's turns to the same server.<p>
+ * The server runs on the JDK's own HttpServer with every exchange on a virtual thread of its own. A request that
+ * can't be understood is answered 400, and a token that wasn't sealed with this server's key is answered 401.
+ * Anything else that goes wrong is answered 500 and reported on standard error, so every exchange gets an answer.<p>
+ * Given an EventJournal, the server journals every turn. The token carries the game's journal session and sequence
+ * number, so a game's records carry on in one run whichever server takes its turns, as long as they share the
+ * journal. A token sent again journals its turn again, which the JournalReplayer counts once.
+ */
+
+public class ApiServer {
+    // constants
+    public static final int MAX_BODY_BYTES = 1024;
+    private static final String JSON = "application/json";
+
+    // static variables
+    private static final Command[] COMMANDS = Command.values();
+
+    // instance variables
+    private final int port;
+    private final GameToken tokens;
+    private final EventJournal journal;
+    private final ConcurrentHashMap<Long, Played> played;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Sets up a server; nothing is listening until start() is called.
+     *
+     * @param port The TCP port to listen on, or 0 for any free port.
+     * @param key The secret the game tokens are sealed with.
+     */
+    public ApiServer(int port, byte[] key) {
+        this(port, key, null);
+    }
+
+    /**
+     * Sets up a server that journals every turn; nothing is listening until start() is called.
+     *
+     * @param port The TCP port to listen on, or 0 for any free port.
+     * @param key The secret the game tokens are sealed with.
+     * @param journal Where every turn is journaled, or null to journal nothing.
+     */
+    public ApiServer(int port, byte[] key, EventJournal journal) {
+        this.port = port;
+        this.journal = journal;
+        tokens = new GameToken(key);
+        played = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * The newest turn handed out for a game, and the request that played it.
+     */
+    private static final class Played {
+        private final int turn;
+        private final Command command;
+        private final ItemType item;
+        private final int quotedPrice;
+
+        Played(int turn, Command command, ItemType item, int quotedPrice) {
+            this.turn = turn;
+            this.command = command;
+            this.item = item;
+            this.quotedPrice = quotedPrice;
+        }
+
+        boolean isSameRequest(Played other) {
+            return command == other.command && item == other.item && quotedPrice == other.quotedPrice;
+        }
+    }
+
+    /**
+     * A token older than the newest one handed out for its game.
+     */
+    private static final class StaleTokenException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        StaleTokenException() {
+            super("That token has been played already; carry on from the newest one");
+        }
+    }
+
+    /**
+     * Starts listening.
+     *
+     * @throws IOException if the port can't be opened.
+     */
+    public void start() throws IOException {
+        // the HttpServer writes the headers and the body separately; without this Nagle holds the body back
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/games", exchange -> respond(exchange, true));
+        server.createContext("/turns", exchange -> respond(exchange, false));
+        server.start();
+    }
+
+    /**
+     * @return The port the server is listening on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops taking requests and waits for the ones being answered.
+     *
+     * @param drainSeconds How long to wait for them.
+     */
+    public void shutdown(int drainSeconds) {
+        server.stop(drainSeconds);
+        executor.close();
+    }
+
+    private void respond(HttpExchange exchange, boolean newGame) throws IOException {
+        int code = 200;
+        String body;
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                code = 405;
+                body = error("Use POST");
+            } else if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+                code = 404;
+                body = error("No such resource");
+            } else {
+                Map<String, String> request = parseObject(readBody(exchange.getRequestBody()));
+                body = newGame ? startGame(request) : playTurn(request);
+            }
+        } catch (SecurityException e) {
+            code = 401;
+            body = error(e.getMessage());
+        } catch (StaleTokenException e) {
+            code = 409;
+            body = error(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            code = 400;
+            body = error(e.getMessage());
+        } catch (RuntimeException e) {
+            // the player's request was fine, so they are told nothing more than that it failed
+            code = 500;
+            body = error("The server couldn't answer that request");
+            System.err.println("Failed to answer " + exchange.getRequestURI() + ": " + e);
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String startGame(Map<String, String> request) {
+        String name = request.getOrDefault("name", "Hunter");
+        String modeName = request.getOrDefault("mode", "normal");
+        GameMode mode;
+        try {
+            mode = GameMode.valueOf(modeName.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("No such mode: " + modeName);
+        }
+        GameToken.Opened opened = tokens.start(name, mode, ThreadLocalRandom.current().nextLong());
+        GameEngine game = opened.getGame();
+        if (journal != null) {
+            EventJournal.Session session = journal.open();
+            session.attach(game);
+            opened.setJournal(session.getId(), session.getNextSequence());
+        }
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\"message\":");
+        appendString(json, game.getCurrentTown().getLatestNews());
+        appendGame(json, opened);
+        return json.append('}').toString();
+    }
+
+    private String playTurn(Map<String, String> request) {
+        String token = request.get("token");
+        String commandName = request.get("command");
+        if (token == null || commandName == null) {
+            throw new IllegalArgumentException("A turn needs a token and a command");
+        }
+        Command command = null;
+        for (Command candidate : COMMANDS) {
+            if (candidate.name().equalsIgnoreCase(commandName)) {
+                command = candidate;
+            }
+        }
+        if (command == null) {
+            throw new IllegalArgumentException("No such command: " + commandName);
+        }
+        String itemName = request.get("item");
+        ItemType item = itemName == null ? null : ItemType.fromName(itemName.toLowerCase(Locale.ROOT));
+        String price = request.get("price");
+        int quotedPrice;
+        try {
+            quotedPrice = price == null ? Shop.NO_QUOTE : Integer.parseInt(price);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The price must be a whole number of gold: " + price);
+        }
+        GameToken.Opened opened;
+        try {
+            opened = tokens.open(token);
+        } catch (IllegalArgumentException e) {
+            throw new SecurityException(e.getMessage());
+        }
+        claimTurn(opened, new Played(opened.getTurn() + 1, command, item, quotedPrice));
+        GameEngine game = opened.getGame();
+        EventJournal.Session session = null;
+        if (journal != null) {
+            // a game started by a server without a journal gets a session of its own from here on
+            session = opened.getJournalId() == EventJournal.NO_SESSION ? journal.open()
+                    : journal.resume(opened.getJournalId(), opened.getJournalSequence());
+            session.attach(game);
+        }
+        TurnResult result = game.execute(command, item, quotedPrice);
+        opened.nextTurn();
+        if (session != null) {
+            opened.setJournal(session.getId(), session.getNextSequence());
+        }
+        // the game is put away after every turn, so its counts can't wait for it to end
+        game.flushMetrics();
+
+        StringBuilder json = new StringBuilder(768);
+        json.append("{\"command\":");
+        appendString(json, command.name().toLowerCase(Locale.ROOT));
+        json.append(",\"message\":");
+        appendString(json, result.getMessage());
+        json.append(",\"goldChange\":").append(result.getGoldChange());
+        if (result.getItem() != null) {
+            json.append(",\"item\":");
+            appendString(json, result.getItem().getName());
+        }
+        appendGame(json, opened);
+        return json.append('}').toString();
+    }
+
+    /**
+     * Takes the turn a token is for, unless a newer token has been handed out for its game. The newest token may be
+     * played again with the same request, which comes out the same.
+     *
+     * @param opened The game in the token.
+     * @param next The turn the token is played for, numbered as the token it makes will be.
+     * @throws StaleTokenException if the token is older than that.
+     */
+    private void claimTurn(GameToken.Opened opened, Played next) {
+        long gameId = opened.getGameId();
+        Played seen;
+        while ((seen = played.putIfAbsent(gameId, next)) != null) {
+            if (seen.turn == next.turn && seen.isSameRequest(next)) {
+                return;
+            }
+            if (seen.turn >= next.turn) {
+                throw new StaleTokenException();
+            }
+            // a newer token than this server has seen, from another server
+            if (played.replace(gameId, seen, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the new token and where the game stands, starting with a comma.
+     */
+    private void appendGame(StringBuilder json, GameToken.Opened opened) {
+        GameEngine game = opened.getGame();
+        Hunter hunter = game.getHunter();
+        Town town = game.getCurrentTown();
+        json.append(",\"status\":\"").append(game.getStatus().name().toLowerCase(Locale.ROOT)).append('"');
+        json.append(",\"hunter\":{\"name\":");
+        appendString(json, hunter.getHunterName());
+        json.append(",\"gold\":").append(hunter.getGold());
+        json.append(",\"kit\":");
+        appendItems(json, hunter.getKitBits());
+        json.append(",\"chest\":");
+        appendItems(json, hunter.getChestBits());
+        json.append("},\"town\":{\"terrain\":");
+        appendString(json, town.getTerrain().getTerrainName());
+        json.append(",\"neededItem\":");
+        appendString(json, town.getTerrain().getNeededItem());
+        json.append(",\"tough\":").append(town.isToughTown());
+        json.append(",\"dug\":").append(town.getAlreadyDug());
+        json.append(",\"searched\":").append(town.getSearched());
+        json.append("},\"token\":\"").append(tokens.seal(opened)).append('"');
+    }
+
+    private static void appendItems(StringBuilder json, long items) {
+        json.append('[');
+        boolean first = true;
+        for (ItemType item : ItemType.values()) {
+            if ((items & item.getBit()) != 0) {
+                json.append(first ? "\"" : ",\"").append(item.getName()).append('"');
+                first = false;
+            }
+        }
+        json.append(']');
+    }
+
+    private static String error(String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        return json.append('}').toString();
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) {
+            throw new IllegalArgumentException("The request is longer than " + MAX_BODY_BYTES + " bytes");
+        }
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a JSON string. The game's messages are colored for a terminal, so the color codes are left out.
+     */
+    static void appendString(StringBuilder json, String text) {
+        json.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\033') {
+                // skip the rest of the color code, up to its closing m
+                while (i < text.length() && text.charAt(i) != 'm') {
+                    i++;
+                }
+            } else if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c == '\n') {
+                json.append("\\n");
+            } else if (c < ' ') {
+                json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Reads a JSON object whose values are all strings, numbers, booleans or null, which is all a request ever holds.
+     *
+     * @param text The JSON.
+     * @return The values by name, each as its text; nulls are left out.
+     * @throws IllegalArgumentException if the text isn't such an object.
+     */
+    static Map<String, String> parseObject(String text) {
+        Map<String, String> values = new HashMap<>();
+        int[] at = {skipSpace(text, 0)};
+        expect(text, at, '{');
+        if (peek(text, at) == '}') {
+            at[0]++;
+        } else {
+            while (true) {
+                String name = parseString(text, at);
+                expect(text, at, ':');
+                String value = peek(text, at) == '"' ? parseString(text, at) : parseLiteral(text, at);
+                if (value != null) {
+                    values.put(name, value);
+                }
+                if (peek(text, at) == ',') {
+                    at[0]++;
+                } else {
+                    expect(text, at, '}');
+                    break;
+                }
+            }
+        }
+        if (skipSpace(text, at[0]) != text.length()) {
+            throw new IllegalArgumentException("Unexpected text after the JSON object");
+        }
+        return values;
+    }
+
+    private static String parseString(String text, int[] at) {
+        expect(text, at, '"');
+        StringBuilder value = new StringBuilder();
+        int i = at[0];
+        while (true) {
+            if (i >= text.length()) {
+                throw new IllegalArgumentException("Unterminated JSON string");
+            }
+            char c = text.charAt(i++);
+            if (c == '"') {
+                break;
+            }
+            if (c == '\\') {
+                if (i >= text.length()) {
+                    throw new IllegalArgumentException("Unterminated JSON string");
+                }
+                char escaped = text.charAt(i++);
+                if (escaped == 'u') {
+                    if (i + 4 > text.length()) {
+                        throw new IllegalArgumentException("Bad \\u escape in a JSON string");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(text, i, i + 4, 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Bad \\u escape in a JSON string");
+                    }
+                    i += 4;
+                } else {
+                    value.append(unescape(escaped));
+                }
+            } else {
+                value.append(c);
+            }
+        }
+        at[0] = i;
+        return value.toString();
+    }
+
+    private static char unescape(char escaped) {
+        switch (escaped) {
+            case '"': return '"';
+            case '\\': return '\\';
+            case '/': return '/';
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            default: throw new IllegalArgumentException("Bad escape in a JSON string: \\" + escaped);
+        }
+    }
+
+    private static String parseLiteral(String text, int[] at) {
+        int start = at[0];
+        int end = start;
+        while (end < text.length() && "+-.0123456789eEtrufalsn".indexOf(text.charAt(end)) >= 0) {
+            end++;
+        }
+        String literal = text.substring(start, end);
+        if (literal.isEmpty()) {
+            throw new IllegalArgumentException("Expected a JSON value at character " + start);
+        }
+        at[0] = end;
+        if (literal.equals("null")) {
+            return null;
+        }
+        if (!literal.equals("true") && !literal.equals("false")) {
+            try {
+                Double.parseDouble(literal);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a JSON value: " + literal);
+            }
+        }
+        return literal;
+    }
+
+    private static char peek(String text, int[] at) {
+        at[0] = skipSpace(text, at[0]);
+        if (at[0] >= text.length()) {
+            throw new IllegalArgumentException("The JSON ends too soon");
+        }
+        return text.charAt(at[0]);
+    }
+
+    private static void expect(String text, int[] at, char c) {
+        if (peek(text, at) != c) {
+            throw new IllegalArgumentException("Expected '" + c + "' at character " + at[0] + " of the JSON");
+        }
+        at[0]++;
+    }
+
+    private static int skipSpace(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
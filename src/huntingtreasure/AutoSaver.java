@@ -0,0 +1,528 @@
+package huntingtreasure;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The AutoSaver keeps every game it is given saved in a SessionStore, without a write to disk on any turn.<p>
+ * Every change to a hunter or a town happens inside a turn the GameEngine plays, so a Session listens for turns. After
+ * each one it encodes the game into a slot of its own, which takes a few dozen nanoseconds, and marks itself dirty.
+ * A session already waiting to be written isn't queued again: whatever it holds when its turn comes is what gets
+ * written, so a player who plays fifty turns between writes costs one write, not fifty.<p>
+ * A background thread writes the dirty sessions in batches: sorted by id, sessions with neighbouring ids go out in a
+ * single write, and the whole batch is synced once. It waits up to the save window after a session is marked, to let
+ * others join the batch, and doesn't wait at all once half the queue is full. A change is therefore on disk within
+ * the save window plus the time one batch takes to write, and that is the most a crash can lose.<p>
+ * The queue holds at most maxDirty sessions. When it is full, a game that needs to join it waits for the writer to
+ * take a batch, so a disk that can't keep up slows the games down instead of letting unsaved progress pile up.<p>
+ * A player who leaves in the middle of a hunt can pick it up again with resume() and the session's resume code: its id
+ * and a random key of KEY_BITS bits that is saved with the game, so a code can't be guessed from the ones before it.
+ * A game that
+ * ends is cleared from its slot instead, and once the cleared slot is on disk its id goes to the next new session,
+ * so the store only grows with the number of games in progress. A session can only be played by one player at a time:
+ * its id stays taken until the session is finished and its last change is written. An id is free or taken, never
+ * both, and is only handed back to the free ones by the session that took it, so no two sessions get the same one.<p>
+ * A write that fails stops the saving for good: the failure is reported once to the log, and from then on the games
+ * play on unsaved instead of every turn failing with it. flush() and close() still throw it, for whoever shuts the
+ * saver down.
+ */
+
+public class AutoSaver implements Closeable {
+    // constants
+    public static final int KEY_BITS = SessionStore.KEY_BYTES * 8;
+    private static final char CODE_SEPARATOR = '-';
+    private static final int CODE_RADIX = 36;
+
+    // static variables
+    private static final SecureRandom KEYS = new SecureRandom();
+
+    // instance variables
+    private final SessionStore store;
+    private final PrintStream log;
+    private final long windowNanos;
+    private final TreeSet<Long> freeIds;
+    private final Set<Long> liveIds;
+    private long nextSessionId;
+    private final ReentrantLock lock;
+    private final Condition dirtyWaiting;
+    private final Condition roomFreed;
+    private final Condition batchWritten;
+    private Session[] dirty;
+    private Session[] writing;
+    private int dirtyCount;
+    private long firstDirtyNanos;
+    private boolean writerBusy;
+    private final ByteBuffer batch;
+    private long batches;
+    private long slotsWritten;
+    private IOException failure;
+    private volatile boolean closed;
+    private final Thread writer;
+
+    /**
+     * Starts saving to a store. New sessions take the ids of the store's empty slots first, then ids after the last
+     * one.
+     *
+     * @param store The store.
+     * @param maxDirty How many sessions can wait to be written before games have to wait for the writer.
+     * @param windowMillis The longest a change waits before the writer starts on it.
+     * @throws IOException if the store's size can't be read.
+     */
+    public AutoSaver(SessionStore store, int maxDirty, long windowMillis) throws IOException {
+        this(store, maxDirty, windowMillis, System.err);
+    }
+
+    /**
+     * Starts saving to a store, reporting a failed write to a log. New sessions take the ids of the store's empty
+     * slots first, then ids after the last one.
+     *
+     * @param store The store.
+     * @param maxDirty How many sessions can wait to be written before games have to wait for the writer.
+     * @param windowMillis The longest a change waits before the writer starts on it.
+     * @param log Where a write that stops the saving is reported.
+     * @throws IOException if the store can't be read.
+     */
+    public AutoSaver(SessionStore store, int maxDirty, long windowMillis, PrintStream log) throws IOException {
+        this.store = store;
+        this.log = log;
+        windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        nextSessionId = store.getSlotCount();
+        freeIds = new TreeSet<>();
+        for (long id : store.findEmptySlots()) {
+            freeIds.add(id);
+        }
+        liveIds = new HashSet<>();
+        lock = new ReentrantLock();
+        dirtyWaiting = lock.newCondition();
+        roomFreed = lock.newCondition();
+        batchWritten = lock.newCondition();
+        dirty = new Session[Math.max(2, maxDirty)];
+        writing = new Session[dirty.length];
+        batch = ByteBuffer.allocateDirect(dirty.length * SessionStore.SLOT_BYTES);
+
+        writer = new Thread(this::writeLoop, "autosave-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Starts a new session, with the next free id. Nothing is saved until a game is attached to it.
+     *
+     * @return The session.
+     */
+    public Session open() {
+        long id;
+        synchronized (freeIds) {
+            // the lowest free id first, to keep the store as short as it can be
+            Long free = freeIds.pollFirst();
+            id = free != null ? free : nextSessionId++;
+            liveIds.add(id);
+        }
+        return new Session(id, KEYS.nextLong(), true);
+    }
+
+    /**
+     * Takes up a session that was saved before, to load() its game and carry on saving it. The code isn't checked
+     * against the saved game's key until load().
+     *
+     * @param resumeCode The session's resume code, as getResumeCode() gave it.
+     * @return The session, or null if the code is no session's or someone else is playing it.
+     */
+    public Session resume(String resumeCode) {
+        int separator = resumeCode.indexOf(CODE_SEPARATOR);
+        long sessionId;
+        long key;
+        try {
+            sessionId = Long.parseLong(resumeCode, 0, Math.max(separator, 0), 10);
+            key = Long.parseUnsignedLong(resumeCode, separator + 1, resumeCode.length(), CODE_RADIX);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        boolean empty;
+        synchronized (freeIds) {
+            if (sessionId < 0 || sessionId >= nextSessionId || !liveIds.add(sessionId)) {
+                return null;
+            }
+            // a free id holds no game; taking it here means open() can't hand it out while this session has it
+            empty = freeIds.remove(sessionId);
+        }
+        return new Session(sessionId, key, empty);
+    }
+
+    /**
+     * @return How many batches have been written and synced.
+     */
+    public long getBatchCount() {
+        lock.lock();
+        try {
+            return batches;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return How many session slots have been written; a session that changed many times between batches counts once.
+     */
+    public long getSlotsWritten() {
+        lock.lock();
+        try {
+            return slotsWritten;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return false once the saver has been closed or a write has failed, after which nothing more is saved.
+     */
+    public boolean isSaving() {
+        return !closed;
+    }
+
+    /**
+     * Waits until every turn played so far is on disk.
+     *
+     * @throws IOException if the writer failed.
+     */
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            while ((dirtyCount > 0 || writerBusy) && failure == null) {
+                // there is no point waiting out the window for more sessions
+                firstDirtyNanos = System.nanoTime() - windowNanos;
+                dirtyWaiting.signal();
+                batchWritten.awaitUninterruptibly();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes whatever is still dirty, then stops the writer. The store is left open.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            dirtyWaiting.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Queues a session that has just become dirty, waiting for room if the queue is full. Once the saver has stopped
+     * the session is left alone and stays unqueued, so the game goes on and the session can still be finished.
+     */
+    private void markDirty(Session session) {
+        lock.lock();
+        try {
+            while (!closed && dirtyCount == dirty.length) {
+                // the queue is full: let the writer catch up before taking more
+                dirtyWaiting.signal();
+                roomFreed.awaitUninterruptibly();
+            }
+            if (closed) {
+                return;
+            }
+            if (dirtyCount == 0) {
+                firstDirtyNanos = System.nanoTime();
+            }
+            // the writer needs the lock to take the queue, so it can't see the session before it is marked
+            session.queued();
+            dirty[dirtyCount++] = session;
+            if (dirtyCount == 1 || dirtyCount == dirty.length / 2) {
+                dirtyWaiting.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The writer thread: waits out the window, takes the queue as a batch and writes it, over and over.
+     */
+    private void writeLoop() {
+        while (true) {
+            int count;
+            lock.lock();
+            try {
+                while (dirtyCount == 0 && !closed) {
+                    dirtyWaiting.awaitUninterruptibly();
+                }
+                if (dirtyCount == 0) {
+                    // closed with nothing left to write; wake anyone still waiting so they can see that
+                    batchWritten.signalAll();
+                    return;
+                }
+                long wait;
+                while (!closed && dirtyCount < dirty.length / 2
+                        && (wait = firstDirtyNanos + windowNanos - System.nanoTime()) > 0) {
+                    // give other sessions a moment to join this batch
+                    try {
+                        dirtyWaiting.awaitNanos(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                Session[] full = dirty;
+                dirty = writing;
+                writing = full;
+                count = dirtyCount;
+                dirtyCount = 0;
+                writerBusy = true;
+                roomFreed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                writeBatch(writing, count);
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                for (int i = 0; i < count; i++) {
+                    writing[i].written();
+                }
+                Arrays.fill(writing, 0, count, null);
+            }
+
+            lock.lock();
+            try {
+                writerBusy = false;
+                if (error != null) {
+                    failure = error;
+                    closed = true;
+                    for (int i = 0; i < dirtyCount; i++) {
+                        dirty[i].dropped();
+                    }
+                    Arrays.fill(dirty, 0, dirtyCount, null);
+                    dirtyCount = 0;
+                    log.println("Autosave stopped, the games play on unsaved: " + error);
+                } else {
+                    batches++;
+                    slotsWritten += count;
+                }
+                batchWritten.signalAll();
+                roomFreed.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Copies each session's latest slot into the batch in order of id, writes each run of neighbouring ids at once,
+     * and syncs.
+     */
+    private void writeBatch(Session[] sessions, int count) throws IOException {
+        Arrays.sort(sessions, 0, count, Comparator.comparingLong(Session::getId));
+        batch.clear();
+        for (int i = 0; i < count; i++) {
+            sessions[i].copyTo(batch);
+        }
+        int runStart = 0;
+        for (int i = 1; i <= count; i++) {
+            if (i == count || sessions[i].id != sessions[i - 1].id + 1) {
+                store.saveSlots(sessions[runStart].id, batch.slice(runStart * SessionStore.SLOT_BYTES,
+                        (i - runStart) * SessionStore.SLOT_BYTES));
+                runStart = i;
+            }
+        }
+        store.force();
+    }
+
+    /**
+     * One saved game. It listens to the game it is attached to and holds the game's latest slot until the writer
+     * takes it. A game plays on one thread at a time, but the writer reads the slot from its own, so both sides
+     * hold the session's lock while they touch it.
+     */
+    public final class Session implements GameListener {
+        private final long id;
+        private final long key;
+        private final ByteBuffer slot;
+        private boolean queued;
+        private boolean writing;
+        private boolean empty;
+        private boolean finished;
+
+        Session(long id, long key, boolean empty) {
+            this.id = id;
+            this.key = key;
+            this.empty = empty;
+            slot = ByteBuffer.allocate(SessionStore.SLOT_BYTES);
+        }
+
+        /**
+         * @return The session's id, its slot in the store.
+         */
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * @return The code resume() takes to carry on the game: the id and the key, which only the player is told.
+         */
+        public String getResumeCode() {
+            return id + String.valueOf(CODE_SEPARATOR) + Long.toUnsignedString(key, CODE_RADIX);
+        }
+
+        /**
+         * Reads the game saved in this session.
+         *
+         * @param random Where the game's rolls come from from now on.
+         * @return The game, or null if the session holds no game, it was saved under another key or it can't be read.
+         */
+        public GameEngine load(RandomSource random) {
+            try {
+                return store.load(id, key, random);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Saves a game in this session from now on, starting with how it stands now. A game rebuilt after it was
+         * parked is attached again, to the same session.
+         *
+         * @param game The game; the session is added to its listeners, alongside any others.
+         */
+        public void attach(GameEngine game) {
+            game.addListener(this);
+            update(game);
+        }
+
+        @Override
+        public void turnPlayed(GameEngine game, TurnResult result) {
+            update(game);
+        }
+
+        /**
+         * Lets go of the session once its player is gone. A game still in progress stays saved for resume(); a game
+         * that is over has been cleared, and the id is handed out again once that is on disk.
+         */
+        public void finish() {
+            boolean release;
+            synchronized (this) {
+                finished = true;
+                release = !queued && !writing;
+            }
+            if (release) {
+                release();
+            }
+        }
+
+        private void update(GameEngine game) {
+            if (closed) {
+                return;
+            }
+            boolean newlyDirty;
+            synchronized (this) {
+                slot.clear();
+                if (game.isGameOver()) {
+                    // nothing is left to resume, so the slot is cleared for the next session to use
+                    slot.put(new byte[SessionStore.SLOT_BYTES]);
+                    empty = true;
+                } else {
+                    SessionStore.encodeSlot(game, key, slot);
+                    empty = false;
+                }
+                newlyDirty = !queued;
+            }
+            if (newlyDirty) {
+                markDirty(this);
+            }
+        }
+
+        /**
+         * Hands the latest slot to the writer. Any turn played after this marks the session dirty again.
+         */
+        private synchronized void copyTo(ByteBuffer batch) {
+            queued = false;
+            writing = true;
+            batch.put(slot.array());
+        }
+
+        /**
+         * Called under the saver's lock as the session joins the queue.
+         */
+        private synchronized void queued() {
+            queued = true;
+        }
+
+        /**
+         * Called by the writer once it is done with the slot it took: on disk, or not at all because the write failed
+         * and nothing more is saved.
+         */
+        private void written() {
+            boolean release;
+            synchronized (this) {
+                writing = false;
+                release = finished && !queued;
+            }
+            if (release) {
+                release();
+            }
+        }
+
+        /**
+         * Called by the writer for a session still in the queue when the saving stopped, which will never be written.
+         */
+        private void dropped() {
+            boolean release;
+            synchronized (this) {
+                queued = false;
+                release = finished && !writing;
+            }
+            if (release) {
+                release();
+            }
+        }
+
+        /**
+         * Gives the id up. Whether its slot is empty is known from the saver's own bookkeeping, not from what a load
+         * found there, so a slot holding a game this session couldn't read is never handed out again.
+         */
+        private void release() {
+            boolean free;
+            synchronized (this) {
+                free = empty;
+            }
+            synchronized (freeIds) {
+                liveIds.remove(id);
+                if (free) {
+                    freeIds.add(id);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package huntingtreasure;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * The BatchSimulator plays the same games as a Simulator with the GreedyPolicy, only much faster.<p>
+ * Instead of a GameEngine, a Hunter and a Town per game, it keeps a few thousand hunters as parallel arrays of
+ * primitives (gold, kit and chest bits, terrain and town flags) and steps them all one turn at a time, dropping each
+ * hunter from the batch as their game ends. Nothing is allocated once a batch is under way, and a turn is a handful of
+ * array reads and writes with no messages built.<p>
+ * Each hunter's rolls are made from their own SplittableRandom state, kept as one long per hunter and advanced with
+ * the same arithmetic as java.util.SplittableRandom. The rolls are drawn in the same order the Town and Hunter classes
+ * draw them, so a batch run gives exactly the same statistics as the Simulator with the same seed, and crossCheck()
+ * makes sure of it. The hunters who move on in a turn have their new towns rolled together at the end of it, a block
+ * of AliasSampler.fill() at a time: nothing else is rolled for them after a move, so each one's rolls still come in
+ * the same order.<p>
+ * The games are played by the Rules in force when the simulator is built, or by the Rules it is given, so that a
+ * RulesTuner can try many sets side by side. They don't add to GameMetrics.
+ */
+
+public class BatchSimulator {
+    // constants
+    static final int LANES = 4096;
+    private static final int GOLD_CURVE_LENGTH = 100;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private static final int PLAYING = 0;
+    private static final int WON = 1;
+    private static final int LOST = 2;
+
+    // a town's flags: the treasure's number (crown, trophy, gem, dust) in the low two bits, then the other flags
+    private static final int TREASURE = 3;
+    private static final int DUST = ItemType.DUST.ordinal() - ItemType.CROWN.ordinal();
+    private static final int TOUGH = 4;
+    private static final int SEARCHED = 8;
+    private static final int DUG = 16;
+
+    private static final int FIRST_TREASURE_BIT = ItemType.CROWN.ordinal();
+    private static final long SWORD = ItemType.SWORD.getBit();
+    private static final long SHOVEL = ItemType.SHOVEL.getBit();
+
+    // instance variables
+    private final GameMode mode;
+    private final int maxTurns;
+    private final long seed;
+    private final int startingGold;
+    private final long startingKit;
+    private final boolean easy;
+    private final boolean samurai;
+    private final int swordCost;
+    private final long[] neededBits;
+    private final int[] neededCosts;
+    private final double toughness;
+    private final double toughBrawlChance;
+    private final double brawlChance;
+    private final double dirtChance;
+    private final double itemBreakChance;
+    private final AliasSampler terrains;
+    private final AliasSampler treasures;
+    private final AliasSampler brawlGold;
+    private final AliasSampler digGold;
+
+    /**
+     * Sets up a batch simulator for one difficulty, played by the current rules.
+     *
+     * @param mode The difficulty every game is played on.
+     * @param maxTurns The number of turns after which an unfinished game is abandoned.
+     * @param seed The seed every game's rolls are worked out from; the same seed as a Simulator's plays the same games.
+     */
+    public BatchSimulator(GameMode mode, int maxTurns, long seed) {
+        this(mode, Rules.current(), maxTurns, seed);
+    }
+
+    /**
+     * Sets up a batch simulator for one difficulty, played by the given rules whatever rules are installed.
+     *
+     * @param mode The difficulty every game is played on.
+     * @param rules The rules every game is played by.
+     * @param maxTurns The number of turns after which an unfinished game is abandoned.
+     * @param seed The seed every game's rolls are worked out from.
+     */
+    public BatchSimulator(GameMode mode, Rules rules, int maxTurns, long seed) {
+        this.mode = mode;
+        this.maxTurns = maxTurns;
+        this.seed = seed;
+        Hunter hunter = mode.newHunter("bot");
+        startingGold = hunter.getGold();
+        startingKit = hunter.getKitBits();
+        easy = mode.isEasy();
+        samurai = mode.isSamurai();
+        swordCost = rules.getItemCost(ItemType.SWORD);
+        neededBits = new long[rules.getTerrainCount()];
+        neededCosts = new int[rules.getTerrainCount()];
+        for (int terrain = 0; terrain < neededBits.length; terrain++) {
+            ItemType needed = rules.getTerrain(terrain).getNeededItemType();
+            neededBits[terrain] = needed.getBit();
+            neededCosts[terrain] = rules.getItemCost(needed);
+        }
+        toughness = rules.getToughness(mode);
+        toughBrawlChance = rules.getToughBrawlChance();
+        brawlChance = easy ? rules.getEasyBrawlChance() : rules.getBrawlChance();
+        dirtChance = rules.getDirtChance();
+        itemBreakChance = rules.getItemBreakChance();
+        int[] terrainWeights = new int[rules.getTerrainCount()];
+        for (int terrain = 0; terrain < terrainWeights.length; terrain++) {
+            terrainWeights[terrain] = rules.getTerrainWeight(terrain);
+        }
+        terrains = new AliasSampler(terrainWeights);
+        int[] treasureWeights = new int[DUST + 1];
+        for (int treasure = 0; treasure <= DUST; treasure++) {
+            treasureWeights[treasure] = rules.getTreasureWeight(ItemType.values()[FIRST_TREASURE_BIT + treasure]);
+        }
+        treasures = new AliasSampler(treasureWeights);
+        brawlGold = AliasSampler.uniform(rules.getMaxBrawlGold());
+        digGold = AliasSampler.uniform(rules.getMaxDigGold());
+    }
+
+    /**
+     * Plays the games on the common ForkJoinPool.
+     *
+     * @param games How many games to play.
+     * @return The combined statistics of all the games.
+     */
+    public SimulationStats run(long games) {
+        return run(games, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Plays the games on the given pool, LANES games to a task.
+     *
+     * @param games How many games to play.
+     * @param pool The pool to split the games across.
+     * @return The combined statistics of all the games.
+     */
+    public SimulationStats run(long games, ForkJoinPool pool) {
+        return pool.invoke(new LaneBatch(0, games));
+    }
+
+    /**
+     * Plays a run of games on the calling thread, LANES at a time. Game i is the same game whichever call plays it,
+     * so a run can be played in pieces and the pieces merged.
+     *
+     * @param firstGame The index of the first game.
+     * @param games How many games to play.
+     * @return The statistics of those games.
+     */
+    public SimulationStats play(long firstGame, long games) {
+        SimulationStats stats = new SimulationStats(GOLD_CURVE_LENGTH);
+        for (long from = firstGame; from < firstGame + games; from += LANES) {
+            stats.merge(new Lanes((int) Math.min(LANES, firstGame + games - from)).play(from));
+        }
+        return stats;
+    }
+
+    /**
+     * Plays the same games here and with a Simulator and the GreedyPolicy, and compares the results.
+     * The Simulator plays by the installed rules, so this only means something for a simulator built with them.
+     *
+     * @param games How many games to play.
+     * @return null if both give the same statistics, or both reports if they don't.
+     */
+    public String crossCheck(long games) {
+        String batch = run(games).report();
+        String objects = new Simulator(mode, new GreedyPolicy(), maxTurns, seed).run(games).report();
+        if (batch.equals(objects)) {
+            return null;
+        }
+        return "Batch simulator:\n" + batch + "Simulator:\n" + objects;
+    }
+
+    /**
+     * A range of games that splits itself in half until it fits in one set of lanes.
+     */
+    private class LaneBatch extends RecursiveTask<SimulationStats> {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+
+        LaneBatch(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SimulationStats compute() {
+            if (to - from <= LANES) {
+                return new Lanes((int) (to - from)).play(from);
+            }
+            long middle = (from + to) >>> 1;
+            LaneBatch left = new LaneBatch(from, middle);
+            left.fork();
+            SimulationStats stats = new LaneBatch(middle, to).compute();
+            stats.merge(left.join());
+            return stats;
+        }
+    }
+
+    /**
+     * One batch of hunters, a lane each, with everything the Hunter, Town and SplittableRandom would hold.
+     */
+    private final class Lanes {
+        private final long[] seeds;
+        private final int[] gold;
+        private final long[] kit;
+        private final long[] chest;
+        private final byte[] terrain;
+        private final byte[] flags;
+        private final int[] playing;
+        private final int[] moving;
+        private final int[] rolled;
+        private final IntBinaryOperator rolls;
+        private int movingCount;
+
+        Lanes(int count) {
+            seeds = new long[count];
+            gold = new int[count];
+            kit = new long[count];
+            chest = new long[count];
+            terrain = new byte[count];
+            flags = new byte[count];
+            playing = new int[count];
+            moving = new int[count];
+            rolled = new int[count];
+            rolls = this::nextInt;
+        }
+
+        /**
+         * Plays every lane's game to the end.
+         *
+         * @param firstGame The index of the game in lane 0; the others follow on from it.
+         * @return The lanes' statistics.
+         */
+        SimulationStats play(long firstGame) {
+            SimulationStats stats = new SimulationStats(GOLD_CURVE_LENGTH);
+            int live = seeds.length;
+            for (int lane = 0; lane < live; lane++) {
+                seeds[lane] = SplittableRandomSource.gameSeed(seed, firstGame + lane);
+                gold[lane] = startingGold;
+                kit[lane] = startingKit;
+                moving[movingCount++] = lane;
+                playing[lane] = lane;
+            }
+            arrive();
+            for (int turn = 0; turn < maxTurns && live > 0; turn++) {
+                long totalGold = 0;
+                int stillPlaying = 0;
+                for (int i = 0; i < live; i++) {
+                    int lane = playing[i];
+                    int status = playTurn(lane);
+                    totalGold += gold[lane];
+                    if (status == PLAYING) {
+                        playing[stillPlaying++] = lane;
+                    } else {
+                        stats.recordGame(status == WON ? TurnResult.Status.WON : TurnResult.Status.LOST, turn + 1);
+                    }
+                }
+                arrive();
+                stats.recordGold(turn, totalGold, live);
+                live = stillPlaying;
+            }
+            for (int i = 0; i < live; i++) {
+                stats.recordGame(TurnResult.Status.PLAYING, maxTurns);
+            }
+            return stats;
+        }
+
+        /**
+         * Plays one turn the way the GreedyPolicy would, with the same rules as GameEngine, Town and Hunter.
+         *
+         * @return PLAYING, WON or LOST.
+         */
+        private int playTurn(int lane) {
+            long items = kit[lane];
+            if (samurai && (items & SWORD) == 0) {
+                buy(lane, SWORD, swordCost);
+                return PLAYING;
+            }
+            int town = flags[lane];
+            if ((town & SEARCHED) == 0) {
+                // the policy can't see the treasure before it hunts, so dust and a treasure it has already take a turn
+                flags[lane] = (byte) (town | SEARCHED);
+                int treasure = town & TREASURE;
+                if (treasure == DUST) {
+                    return PLAYING;
+                }
+                long found = chest[lane] | 1L << (FIRST_TREASURE_BIT + treasure);
+                chest[lane] = found;
+                return (found & ItemType.WINNING_CHEST) == ItemType.WINNING_CHEST ? WON : PLAYING;
+            }
+            int here = terrain[lane];
+            long needed = neededBits[here];
+            if ((items & needed) != 0) {
+                if (!easy && nextDouble(lane) < itemBreakChance) {
+                    kit[lane] = items & ~needed;
+                }
+                // the new town is rolled with the others that move on this turn
+                moving[movingCount++] = lane;
+                return PLAYING;
+            }
+            if (gold[lane] >= neededCosts[here]) {
+                buy(lane, needed, neededCosts[here]);
+                return PLAYING;
+            }
+            if ((items & SHOVEL) != 0 && (town & DUG) == 0) {
+                dig(lane, town);
+                return PLAYING;
+            }
+            return lookForTrouble(lane, town, items);
+        }
+
+        /**
+         * Shop.buyItem() and Hunter.buyItem(): a free item other than the sword isn't for sale, and the sword
+         * scares shopkeepers into handing their wares over.
+         */
+        private void buy(int lane, long item, int cost) {
+            long items = kit[lane];
+            if ((cost == 0 && item != SWORD) || gold[lane] < cost || (items & item) != 0) {
+                return;
+            }
+            if ((items & SWORD) == 0) {
+                gold[lane] -= cost;
+            }
+            kit[lane] = items | item;
+        }
+
+        /**
+         * Town.digGold(), including that a roll of exactly the dirt chance digs nothing at all.
+         */
+        private void dig(int lane, int town) {
+            double chance = nextDouble(lane);
+            if (chance > dirtChance) {
+                flags[lane] = (byte) (town | DUG);
+                gold[lane] += sample(lane, digGold) + 1;
+            } else if (chance < dirtChance) {
+                flags[lane] = (byte) (town | DUG);
+            }
+        }
+
+        /**
+         * Town.lookForTrouble(), and the engine's check for going broke.
+         */
+        private int lookForTrouble(int lane, int town, long items) {
+            double chance = (town & TOUGH) != 0 ? toughBrawlChance : brawlChance;
+            if (nextDouble(lane) > chance) {
+                return PLAYING;
+            }
+            int diff = sample(lane, brawlGold) + 1;
+            if (nextDouble(lane) > chance) {
+                gold[lane] += diff;
+            } else if ((items & SWORD) == 0) {
+                int left = gold[lane] - diff;
+                gold[lane] = left;
+                if (left < 0) {
+                    return LOST;
+                }
+            }
+            return PLAYING;
+        }
+
+        /**
+         * Moves every hunter waiting to move into a new town, rolling each one the way TownSite.reroll() does.
+         */
+        private void arrive() {
+            int count = movingCount;
+            terrains.fill(rolls, moving, rolled, count);
+            for (int i = 0; i < count; i++) {
+                terrain[moving[i]] = (byte) rolled[i];
+            }
+            treasures.fill(rolls, moving, rolled, count);
+            for (int i = 0; i < count; i++) {
+                int lane = moving[i];
+                int town = rolled[i];
+                if (nextDouble(lane) < toughness) {
+                    town |= TOUGH;
+                }
+                flags[lane] = (byte) town;
+            }
+            movingCount = 0;
+        }
+
+        /**
+         * AliasSampler.sample() with this lane's rolls.
+         */
+        private int sample(int lane, AliasSampler sampler) {
+            int column = nextInt(lane, sampler.getCount());
+            if (sampler.isFull(column)) {
+                return column;
+            }
+            return sampler.resolve(column, nextInt(lane, sampler.getTotalWeight()));
+        }
+
+        /**
+         * SplittableRandom.nextDouble().
+         */
+        private double nextDouble(int lane) {
+            long z = seeds[lane] += GOLDEN_GAMMA;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return ((z ^ (z >>> 31)) >>> 11) * 0x1.0p-53;
+        }
+
+        /**
+         * SplittableRandom.nextInt(bound), rejecting the same rolls it does.
+         */
+        private int nextInt(int lane, int bound) {
+            int r = nextInt(lane);
+            int m = bound - 1;
+            if ((bound & m) == 0) {
+                return r & m;
+            }
+            for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = nextInt(lane) >>> 1) {
+                // over-represented roll, try again
+            }
+            return r;
+        }
+
+        private int nextInt(int lane) {
+            long z = seeds[lane] += GOLDEN_GAMMA;
+            z = (z ^ (z >>> 33)) * 0x62A9D9ED799705F5L;
+            return (int) (((z ^ (z >>> 28)) * 0xCB24D0A5C88C35B3L) >>> 32);
+        }
+    }
+}
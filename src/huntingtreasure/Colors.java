@@ -1,3 +1,5 @@
+package huntingtreasure;
+
 public class Colors {
 
     public static final String RESET = "\033[0m";      // Reset
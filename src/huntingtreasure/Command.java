@@ -0,0 +1,48 @@
+package huntingtreasure;
+
+/**
+ * The Command enum lists every action a Hunter can take on a turn of the Treasure Hunter game.<p>
+ * Each command carries the menu key the console uses for it.
+ */
+
+public enum Command {
+    BUY("b"),
+    SELL("s"),
+    EXPLORE("e"),
+    DIG("d"),
+    MOVE("m"),
+    TROUBLE("l"),
+    HUNT("h"),
+    EXIT("x");
+
+    // instance variables
+    private final String key;
+
+    Command(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Finds the command that matches a menu key.
+     *
+     * @param key The key typed by the player, already in lower case.
+     * @return The matching command, or null if the key is not a valid option.
+     */
+    public static Command fromKey(String key) {
+        switch (key) {
+            case "b": return BUY;
+            case "s": return SELL;
+            case "e": return EXPLORE;
+            case "d": return DIG;
+            case "m": return MOVE;
+            case "l": return TROUBLE;
+            case "h": return HUNT;
+            case "x": return EXIT;
+            default: return null;
+        }
+    }
+}
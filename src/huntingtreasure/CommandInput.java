@@ -0,0 +1,44 @@
+package huntingtreasure;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A CommandInput supplies the lines a player types, one at a time, to the TreasureHunter.<p>
+ * Everything a game reads (the hunter's name, the menu choices, the shop's questions) comes through the one
+ * CommandInput it was given, so nothing else can buffer ahead and swallow lines meant for it. The console is a
+ * single shared input for the same reason, however many games are started on it in turn.<p>
+ * A script already in memory, such as a mapped file, is read straight from its bytes with no stream in between.
+ */
+
+public interface CommandInput {
+    /**
+     * @return The next line, without its line ending, or null if there are no more.
+     * @throws IOException if the input can't be read.
+     */
+    String readLine() throws IOException;
+
+    /**
+     * @return The input read from System.in, shared by everything that reads the console.
+     */
+    static CommandInput console() {
+        return ReaderInput.CONSOLE;
+    }
+
+    /**
+     * @param reader Where the lines come from, such as a player's connection.
+     * @return An input that reads the lines from it.
+     */
+    static CommandInput of(BufferedReader reader) {
+        return new ReaderInput(reader);
+    }
+
+    /**
+     * @param script The script's bytes in UTF-8, from the buffer's position to its limit.
+     * @return An input that reads the script's lines out of the buffer.
+     */
+    static CommandInput of(ByteBuffer script) {
+        return new ScriptInput(script);
+    }
+}
@@ -0,0 +1,448 @@
+package huntingtreasure;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The EventJournal is an append-only log of everything the games on this machine do, kept for support and crash recovery.<p>
+ * Each turn becomes one fixed-width record of RECORD_BYTES bytes:
+ * <pre>
+ *  0  session id (8)      12 type (1)      16 gold change (4)     24 kit bits (2)     28 terrain (1)
+ *  8  sequence (4)        13 item (1)      20 gold after (4)      26 chest bits (2)   29 treasure (1)
+ *                         14 mode (1)                                                 30 town flags (1)
+ *                         15 status (1)                                               31 unused (1)
+ * </pre>
+ * The type is STARTED for the first record of a session and otherwise one more than the Command's ordinal.
+ * The item is the ItemType's ordinal, or -1, and the town flags are packed as the SessionCodec packs them. A session's id is the number of its STARTED record in the journal, and
+ * its sequence numbers carry on across every game attached to it, so a game that is parked and rebuilt, or carried
+ * in a token from server to server, keeps one unbroken run of records.<p>
+ * Records are appended to segment files named after the journal offset they start at. Appending only copies the record
+ * into an in-memory buffer; a background thread writes whatever has piled up and fsyncs it in one go (group commit),
+ * so the cost of a sync is shared by every turn that arrived while the previous one was running.
+ * awaitDurable() lets a caller wait until its record has reached the disk.<p>
+ * A write that fails stops the journaling for good: the failure is reported once to the log, and from then on the
+ * sessions' turns go unjournaled instead of every turn failing with it, as they do once the journal is closed.
+ * awaitDurable() and close() still throw it, for whoever is waiting on the disk.
+ */
+
+public class EventJournal implements Closeable {
+    // constants
+    public static final int RECORD_BYTES = 32;
+    public static final byte STARTED = 0;
+    public static final long NO_SESSION = -1;
+    public static final long MAX_SEGMENT_BYTES = 1L << 30;
+    static final String SEGMENT_PREFIX = "journal-";
+    static final String SEGMENT_SUFFIX = ".seg";
+    private static final long NOT_APPENDED = -1;
+
+    // instance variables
+    private final Path directory;
+    private final PrintStream log;
+    private final long segmentBytes;
+    private final long maxDelayNanos;
+    private final ReentrantLock lock;
+    private final Condition dataWaiting;
+    private final Condition bufferWritten;
+    private ByteBuffer active;
+    private ByteBuffer writing;
+    private long appendedBytes;
+    private volatile long durableBytes;
+    private FileChannel segment;
+    private long segmentStart;
+    private IOException failure;
+    private volatile boolean closed;
+    private final Thread flusher;
+
+    /**
+     * Opens the journal in a directory, carrying on after whatever is already there.
+     *
+     * @param directory The directory holding the segment files.
+     * @param segmentBytes How big a segment file may grow before a new one is started; rounded down to whole records
+     *                     and capped at MAX_SEGMENT_BYTES.
+     * @param bufferBytes How much can be appended while the previous batch is being written; rounded down to whole records.
+     * @param maxDelayMillis How long the flusher may wait for more records before writing a batch that isn't full.
+     * @throws IOException if the directory or the last segment can't be opened.
+     */
+    public EventJournal(Path directory, long segmentBytes, int bufferBytes, long maxDelayMillis) throws IOException {
+        this(directory, segmentBytes, bufferBytes, maxDelayMillis, System.err);
+    }
+
+    /**
+     * Opens the journal in a directory, carrying on after whatever is already there, and reports a failed write to a log.
+     *
+     * @param directory The directory holding the segment files.
+     * @param segmentBytes How big a segment file may grow before a new one is started; rounded down to whole records
+     *                     and capped at MAX_SEGMENT_BYTES.
+     * @param bufferBytes How much can be appended while the previous batch is being written; rounded down to whole records.
+     * @param maxDelayMillis How long the flusher may wait for more records before writing a batch that isn't full.
+     * @param log Where a write that stops the journaling is reported.
+     * @throws IOException if the directory or the last segment can't be opened.
+     */
+    public EventJournal(Path directory, long segmentBytes, int bufferBytes, long maxDelayMillis, PrintStream log)
+            throws IOException {
+        this.directory = directory;
+        this.log = log;
+        // segments are memory-mapped whole when replayed, so they have to stay under 2 GB
+        long cappedBytes = Math.min(segmentBytes, MAX_SEGMENT_BYTES);
+        this.segmentBytes = Math.max(RECORD_BYTES, cappedBytes - cappedBytes % RECORD_BYTES);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        int wholeRecords = Math.max(RECORD_BYTES, bufferBytes - bufferBytes % RECORD_BYTES);
+        active = ByteBuffer.allocateDirect(wholeRecords);
+        writing = ByteBuffer.allocateDirect(wholeRecords);
+        lock = new ReentrantLock();
+        dataWaiting = lock.newCondition();
+        bufferWritten = lock.newCondition();
+
+        Files.createDirectories(directory);
+        openLastSegment();
+        durableBytes = appendedBytes;
+
+        flusher = new Thread(this::flushLoop, "event-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Starts a new session. Its id is settled when the first game is attached to it: it is the number of the
+     * session's STARTED record in the journal, so no two sessions ever share one, however often the journal is reopened.
+     *
+     * @return The session.
+     */
+    public Session open() {
+        return new Session(NO_SESSION, 0);
+    }
+
+    /**
+     * Carries on a session whose id and sequence number were kept somewhere else, such as in a GameToken.
+     * Attaching a game to it writes no STARTED record, since the session has one already.
+     *
+     * @param sessionId The session's id.
+     * @param nextSequence The sequence number of the session's next record.
+     * @return The session.
+     */
+    public Session resume(long sessionId, int nextSequence) {
+        return new Session(sessionId, nextSequence);
+    }
+
+    /**
+     * Adds one record to the journal.
+     *
+     * @param record A buffer holding exactly RECORD_BYTES bytes between its position and limit.
+     * @return The journal offset just past the record, for awaitDurable().
+     * @throws IllegalStateException if the journal has been closed or has stopped after a failed write.
+     */
+    public long append(ByteBuffer record) {
+        long end = append(record, false);
+        if (end == NOT_APPENDED) {
+            throw new IllegalStateException(failure == null ? "The journal is closed" : "The journal stopped: " + failure);
+        }
+        return end;
+    }
+
+    /**
+     * @return false once the journal has been closed or a write has failed, after which nothing more is journaled.
+     */
+    public boolean isJournaling() {
+        return !closed;
+    }
+
+    /**
+     * Adds a record, first writing into it the number it will have in the journal as its session id if asked to.
+     *
+     * @return The journal offset just past the record, or NOT_APPENDED if the journal has stopped.
+     */
+    private long append(ByteBuffer record, boolean numberSession) {
+        lock.lock();
+        try {
+            while (!closed && active.remaining() < RECORD_BYTES) {
+                // the buffer is full: let the flusher catch up before taking more
+                dataWaiting.signal();
+                bufferWritten.awaitUninterruptibly();
+            }
+            if (closed) {
+                return NOT_APPENDED;
+            }
+            if (numberSession) {
+                record.putLong(record.position(), appendedBytes / RECORD_BYTES);
+            }
+            active.put(record);
+            appendedBytes += RECORD_BYTES;
+            if (active.position() == RECORD_BYTES) {
+                dataWaiting.signal();
+            }
+            return appendedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until everything up to an offset has been written and synced to disk.
+     *
+     * @param offset An offset returned by append().
+     * @throws IOException if the journal failed to write.
+     */
+    public void awaitDurable(long offset) throws IOException {
+        if (durableBytes >= offset) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (durableBytes < offset) {
+                if (failure != null) {
+                    throw failure;
+                }
+                if (closed && !flusher.isAlive()) {
+                    throw new IOException("The journal is closed");
+                }
+                dataWaiting.signal();
+                bufferWritten.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The offset up to which the journal is safely on disk.
+     */
+    public long getDurableOffset() {
+        return durableBytes;
+    }
+
+    /**
+     * Writes and syncs everything appended so far, then stops the flusher and closes the files.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            dataWaiting.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segment.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Lists the journal's segment files in the order they were written.
+     *
+     * @param directory The journal's directory.
+     * @return The segment files, oldest first.
+     * @throws IOException if the directory can't be read.
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().toList();
+        }
+    }
+
+    private void openLastSegment() throws IOException {
+        List<Path> existing = segments(directory);
+        if (existing.isEmpty()) {
+            openSegment(0);
+            appendedBytes = 0;
+            return;
+        }
+        Path last = existing.get(existing.size() - 1);
+        String name = last.getFileName().toString();
+        segmentStart = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        segment = FileChannel.open(last, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        // a crash can leave part of a record at the end; it was never acknowledged, so drop it
+        long size = segment.size();
+        segment.truncate(size - size % RECORD_BYTES);
+        appendedBytes = segmentStart + segment.size();
+    }
+
+    private void openSegment(long start) throws IOException {
+        segmentStart = start;
+        // the segments are found again by name, so the digits mustn't depend on the locale
+        String name = String.format(Locale.ROOT, "%s%020d%s", SEGMENT_PREFIX, start, SEGMENT_SUFFIX);
+        segment = FileChannel.open(directory.resolve(name),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * The flusher thread: swaps the buffers, writes the full one out and syncs it, over and over.
+     */
+    private void flushLoop() {
+        while (true) {
+            long batchEnd;
+            lock.lock();
+            try {
+                while (active.position() == 0 && !closed) {
+                    dataWaiting.awaitUninterruptibly();
+                }
+                if (active.position() == 0) {
+                    // closed with nothing left to write; wake anyone still waiting so they can see that
+                    bufferWritten.signalAll();
+                    return;
+                }
+                if (maxDelayNanos > 0 && !closed && active.hasRemaining()) {
+                    // give other turns a moment to join this batch
+                    try {
+                        dataWaiting.awaitNanos(maxDelayNanos);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                ByteBuffer full = active;
+                active = writing;
+                writing = full;
+                batchEnd = appendedBytes;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                writing.flip();
+                writeBatch(writing);
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                writing.clear();
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                    closed = true;
+                    log.println("Journaling stopped, the games play on unjournaled: " + error);
+                } else {
+                    durableBytes = batchEnd;
+                }
+                bufferWritten.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void writeBatch(ByteBuffer batch) throws IOException {
+        while (batch.hasRemaining()) {
+            long room = segmentBytes - segment.size();
+            if (room <= 0) {
+                segment.force(false);
+                segment.close();
+                openSegment(segmentStart + segmentBytes);
+                continue;
+            }
+            int chunk = (int) Math.min(room, batch.remaining());
+            ByteBuffer slice = batch.slice(batch.position(), chunk);
+            while (slice.hasRemaining()) {
+                segment.write(slice);
+            }
+            batch.position(batch.position() + chunk);
+        }
+        segment.force(false);
+    }
+
+    /**
+     * One player's session in the journal, which turns their game's turns into records. It can be attached again to
+     * a game rebuilt from the same session, such as one unparked from a SessionSlab, and its records carry on the
+     * same sequence. A game plays on one thread at a time, so the record buffer is the session's own.<p>
+     * Once the journal has stopped, the session's turns are let go without a record, so the game goes on.
+     */
+    public final class Session implements GameListener {
+        private final ByteBuffer record;
+        private long sessionId;
+        private int sequence;
+
+        Session(long sessionId, int sequence) {
+            this.sessionId = sessionId;
+            this.sequence = sequence;
+            record = ByteBuffer.allocate(RECORD_BYTES);
+        }
+
+        /**
+         * @return The session's id, or NO_SESSION until a game has been attached to a journal that is still journaling.
+         */
+        public long getId() {
+            return sessionId;
+        }
+
+        /**
+         * @return The sequence number the session's next record will have.
+         */
+        public int getNextSequence() {
+            return sequence;
+        }
+
+        /**
+         * Journals a game's turns from now on. The first game attached to a new session also gets a STARTED record
+         * with its starting state.
+         *
+         * @param game The game; the session is added to its listeners, alongside any others.
+         */
+        public void attach(GameEngine game) {
+            if (sessionId == NO_SESSION) {
+                record(game, STARTED, null, game.getHunter().getGold());
+            }
+            game.addListener(this);
+        }
+
+        @Override
+        public void turnPlayed(GameEngine game, TurnResult result) {
+            Command command = result.getCommand();
+            if (command != null) {
+                record(game, (byte) (command.ordinal() + 1), result.getItem(), result.getGoldChange());
+            }
+        }
+
+        void record(GameEngine game, byte type, ItemType item, int goldChange) {
+            if (closed) {
+                return;
+            }
+            Hunter hunter = game.getHunter();
+            Town town = game.getCurrentTown();
+            record.clear();
+            record.putLong(sessionId);
+            record.putInt(sequence++);
+            record.put(type);
+            record.put((byte) (item == null ? -1 : item.ordinal()));
+            record.put((byte) game.getMode().ordinal());
+            record.put((byte) game.getStatus().ordinal());
+            record.putInt(goldChange);
+            record.putInt(hunter.getGold());
+            record.putShort((short) hunter.getKitBits());
+            record.putShort((short) hunter.getChestBits());
+            record.put((byte) Terrain.indexOf(town.getTerrain()));
+            record.put((byte) town.getTreasureType().ordinal());
+            record.put((byte) SessionCodec.townFlags(town));
+            record.put((byte) 0);
+            record.flip();
+            boolean numberSession = sessionId == NO_SESSION;
+            if (append(record, numberSession) != NOT_APPENDED && numberSession) {
+                sessionId = record.getLong(0);
+            }
+        }
+    }
+}
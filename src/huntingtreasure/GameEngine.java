@@ -0,0 +1,316 @@
+package huntingtreasure;
+
+import java.util.Arrays;
+
+/**
+ * The GameEngine class runs the rules of the Treasure Hunter game without any console input or output.<p>
+ * Each call to execute() carries out one command for the hunter and returns a TurnResult describing it.<p>
+ * The console game in TreasureHunter is built on top of this class, and so can simulators or bots.
+ */
+
+public class GameEngine {
+    // constants
+    private static final String WIN_MESSAGE = Colors.CYAN + "Congratulations, you have found the last of the three treasures, you win!" + Colors.RESET;
+    private static final String LOSE_MESSAGE = Colors.RED + "Looks like your journey has come to an end.\nBetter luck next time" + Colors.RESET;
+    private static final GameListener[] NO_LISTENERS = new GameListener[0];
+
+    // instance variables
+    private final GameMode mode;
+    private final Rules rules;
+    private final Hunter hunter;
+    private final TownFactory townFactory;
+    private Town currentTown;
+    private TurnResult.Status status;
+    private GameListener[] listeners;
+    private final GameMetrics.Tally metrics;
+
+    /**
+     * Starts a new game and puts the hunter in the first town.
+     *
+     * @param hunterName The hunter's name.
+     * @param mode The difficulty of the game.
+     */
+    public GameEngine(String hunterName, GameMode mode) {
+        this(hunterName, mode, RandomSource.threadLocal());
+    }
+
+    /**
+     * Starts a new game whose chance rolls all come from the given RandomSource.
+     * Two games started with equally seeded sources and given the same commands play out the same way.
+     *
+     * @param hunterName The hunter's name.
+     * @param mode The difficulty of the game.
+     * @param random Where the game's rolls come from.
+     */
+    public GameEngine(String hunterName, GameMode mode, RandomSource random) {
+        this(hunterName, mode, random, GameMetrics.ENABLED ? new GameMetrics.Tally(true) : null);
+    }
+
+    /**
+     * Starts a new game in a multiplayer world, where the hunter's towns are shared with everyone else's.
+     *
+     * @param hunterName The hunter's name.
+     * @param mode The difficulty of the game.
+     * @param random Where the game's rolls come from.
+     * @param sharedTowns The world.
+     */
+    public GameEngine(String hunterName, GameMode mode, RandomSource random, SharedTowns sharedTowns) {
+        this(mode, mode.newHunter(hunterName), TurnResult.Status.PLAYING, random,
+                GameMetrics.ENABLED ? new GameMetrics.Tally(true) : null, sharedTowns);
+    }
+
+    /**
+     * Starts a new game that counts its turns into a GameMetrics tally shared with other games on the same thread.
+     *
+     * @param hunterName The hunter's name.
+     * @param mode The difficulty of the game.
+     * @param random Where the game's rolls come from.
+     * @param metrics The tally, which the caller flushes; ignored when metrics are switched off.
+     */
+    GameEngine(String hunterName, GameMode mode, RandomSource random, GameMetrics.Tally metrics) {
+        this(mode, mode.newHunter(hunterName), TurnResult.Status.PLAYING, random, metrics, null);
+    }
+
+    /**
+     * Puts together a game around a hunter that already exists, such as one brought back from a saved game.
+     * The hunter is put in a new town, which the caller may then restore.
+     *
+     * @param mode The difficulty of the game.
+     * @param hunter The hunter.
+     * @param status Where the game stands.
+     * @param rules The rules the game was being played by.
+     * @param random Where the game's rolls come from.
+     */
+    GameEngine(GameMode mode, Hunter hunter, TurnResult.Status status, Rules rules, RandomSource random) {
+        this(mode, hunter, status, rules, random, GameMetrics.ENABLED ? new GameMetrics.Tally(true) : null, null);
+    }
+
+    private GameEngine(GameMode mode, Hunter hunter, TurnResult.Status status, RandomSource random,
+                       GameMetrics.Tally metrics, SharedTowns sharedTowns) {
+        // the rules are read once here; every turn after this uses the ones the towns and shop were built with
+        this(mode, hunter, status, Rules.current(), random, metrics, sharedTowns);
+    }
+
+    private GameEngine(GameMode mode, Hunter hunter, TurnResult.Status status, Rules rules, RandomSource random,
+                       GameMetrics.Tally metrics, SharedTowns sharedTowns) {
+        this.mode = mode;
+        this.rules = rules;
+        Shop shop = Shop.of(rules, rules.getMarkdown(mode), mode.isSamurai());
+        // the game is only ever in one town, so one spare town is all the pool needs
+        if (sharedTowns == null) {
+            townFactory = new TownFactory(shop, rules, rules.getToughness(mode), random, 1);
+        } else {
+            townFactory = new TownFactory(shop, rules, mode, random, 1, sharedTowns);
+        }
+        this.hunter = hunter;
+        this.status = status;
+        listeners = NO_LISTENERS;
+        this.metrics = metrics;
+        enterTown();
+    }
+
+    // accessors
+    public GameMode getMode() {
+        return mode;
+    }
+
+    public Rules getRules() {
+        return rules;
+    }
+
+    public Hunter getHunter() {
+        return hunter;
+    }
+
+    public Town getCurrentTown() {
+        return currentTown;
+    }
+
+    public TurnResult.Status getStatus() {
+        return status;
+    }
+
+    public boolean isGameOver() {
+        return status != TurnResult.Status.PLAYING;
+    }
+
+    /**
+     * Adds someone to be told about every turn the game plays, such as a journal or an autosaver.
+     * Listeners are told in the order they were added.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(GameListener listener) {
+        GameListener[] more = Arrays.copyOf(listeners, listeners.length + 1);
+        more[listeners.length] = listener;
+        listeners = more;
+    }
+
+    /**
+     * Stops telling a listener about turns.
+     *
+     * @param listener The listener; nothing happens if it wasn't listening.
+     */
+    public void removeListener(GameListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                GameListener[] fewer = new GameListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, fewer, 0, i);
+                System.arraycopy(listeners, i + 1, fewer, i, fewer.length - i);
+                listeners = fewer;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Carries out a command that doesn't need an item.
+     *
+     * @param command The command to carry out.
+     * @return What happened.
+     */
+    public TurnResult execute(Command command) {
+        return execute(command, (ItemType) null);
+    }
+
+    /**
+     * Carries out one command for the hunter, naming the item to buy or sell.
+     *
+     * @param command The command to carry out.
+     * @param item The name of the item to buy or sell; ignored by the other commands.
+     * @return What happened.
+     */
+    public TurnResult execute(Command command, String item) {
+        return execute(command, item == null ? null : ItemType.fromName(item));
+    }
+
+    /**
+     * Carries out one command for the hunter.
+     *
+     * @param command The command to carry out.
+     * @param item The item to buy or sell; ignored by the other commands.
+     * @return What happened.
+     */
+    public TurnResult execute(Command command, ItemType item) {
+        return execute(command, item, Shop.NO_QUOTE);
+    }
+
+    /**
+     * Carries out one command for the hunter, buying or selling at the price the shop quoted.
+     * If the price has moved since, the trade is called off.
+     *
+     * @param command The command to carry out.
+     * @param item The item to buy or sell; ignored by the other commands.
+     * @param quotedPrice The price the shop quoted for the item, or Shop.NO_QUOTE to trade at whatever it is now.
+     * @return What happened.
+     */
+    public TurnResult execute(Command command, ItemType item, int quotedPrice) {
+        if (isGameOver()) {
+            return new TurnResult(command, "The hunt is already over.", status, 0);
+        }
+        long started = GameMetrics.ENABLED && metrics.timeNextTurn() ? System.nanoTime() : 0;
+        int goldBefore = hunter.getGold();
+        ItemType involved = null;
+        String message;
+        if (command == Command.BUY) {
+            involved = item;
+            long kitBefore = hunter.getKitBits();
+            currentTown.buyItem(item, quotedPrice);
+            message = currentTown.getLatestNews();
+            if (GameMetrics.ENABLED && hunter.getKitBits() != kitBefore) {
+                metrics.itemBought(goldBefore - hunter.getGold());
+            }
+        } else if (command == Command.SELL) {
+            involved = item;
+            long kitBefore = hunter.getKitBits();
+            currentTown.sellItem(item, quotedPrice);
+            message = currentTown.getLatestNews();
+            if (GameMetrics.ENABLED && hunter.getKitBits() != kitBefore) {
+                metrics.itemSold(hunter.getGold() - goldBefore);
+            }
+        } else if (command == Command.EXPLORE) {
+            message = currentTown.getTerrain().infoString();
+        } else if (command == Command.MOVE) {
+            ItemType neededItem = currentTown.getTerrain().getNeededItemType();
+            if (currentTown.leaveTown(mode.isEasy())) {
+                if (!hunter.hasItemInKit(neededItem)) {
+                    involved = neededItem;
+                    if (GameMetrics.ENABLED) {
+                        metrics.itemBroken();
+                    }
+                }
+                // This town is going away so keep its news ahead of the new town's welcome.
+                message = currentTown.getLatestNews();
+                enterTown();
+                message += "\n" + currentTown.getLatestNews();
+            } else {
+                message = currentTown.getLatestNews();
+            }
+        } else if (command == Command.TROUBLE) {
+            currentTown.lookForTrouble(mode.isEasy());
+            message = currentTown.getLatestNews();
+            if (GameMetrics.ENABLED) {
+                metrics.brawled(hunter.getGold() - goldBefore);
+            }
+            if (hunter.getGold() < 0) {
+                status = TurnResult.Status.LOST;
+                message += "\n" + LOSE_MESSAGE;
+                if (GameMetrics.ENABLED) {
+                    metrics.gameLost();
+                }
+            }
+        } else if (command == Command.DIG) {
+            currentTown.digGold();
+            message = currentTown.getLatestNews();
+            if (GameMetrics.ENABLED) {
+                metrics.dug(hunter.getGold() - goldBefore);
+            }
+        } else if (command == Command.HUNT) {
+            ItemType treasure = currentTown.getTreasureType();
+            involved = treasure;
+            boolean won = hunter.Search(treasure, currentTown);
+            message = currentTown.getLatestNews();
+            if (won) {
+                status = TurnResult.Status.WON;
+                message += "\n" + WIN_MESSAGE;
+                if (GameMetrics.ENABLED) {
+                    metrics.gameWon();
+                }
+            }
+        } else if (command == Command.EXIT) {
+            status = TurnResult.Status.QUIT;
+            message = "Fare thee well, " + hunter.getHunterName() + "!";
+        } else {
+            message = "Yikes! That's an invalid option! Try again.";
+        }
+        TurnResult result = new TurnResult(command, message, status, hunter.getGold() - goldBefore, involved);
+        if (GameMetrics.ENABLED && command != null) {
+            metrics.turnPlayed(command, status, started);
+        }
+        for (GameListener listener : listeners) {
+            listener.turnPlayed(this, result);
+        }
+        return result;
+    }
+
+    /**
+     * Adds this game's counts to the shared GameMetrics now rather than waiting for the game to end,
+     * for games that are abandoned part way through.
+     */
+    void flushMetrics() {
+        if (GameMetrics.ENABLED) {
+            metrics.flush();
+        }
+    }
+
+    /**
+     * Moves the Hunter into a new town; the town being left is handed back to the factory for reuse.
+     */
+    private void enterTown() {
+        if (currentTown != null) {
+            townFactory.recycle(currentTown);
+        }
+        currentTown = townFactory.newTown();
+        currentTown.hunterArrives(hunter);
+    }
+}
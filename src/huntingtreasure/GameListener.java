@@ -0,0 +1,14 @@
+package huntingtreasure;
+
+/**
+ * A GameListener is told about every turn a GameEngine plays, after the turn has been carried out.<p>
+ * It is called on the thread that played the turn, so it should be quick.
+ */
+
+public interface GameListener {
+    /**
+     * @param game The game, already showing the state after the turn.
+     * @param result What happened on the turn.
+     */
+    void turnPlayed(GameEngine game, TurnResult result);
+}
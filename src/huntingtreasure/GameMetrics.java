@@ -0,0 +1,405 @@
+package huntingtreasure;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The GameMetrics class counts what the games in this JVM are doing: the commands played, the gold won and lost in brawls
+ * and digs, the items broken, bought and sold, and the games won and lost, along with a latency histogram per command.<p>
+ * The counters are LongAdders, but a game doesn't touch them every turn: each GameEngine counts into a plain Tally that is
+ * added in every FLUSH_TURNS turns and when the game ends, so the counters can lag a running game by that many turns.
+ * The Simulator gives each batch of games one Tally and adds it in at the end of the batch, as even adding to the
+ * counters once a game costs more than the 1% of a simulated game the metrics are allowed.
+ * Only one turn in getSampleEvery() is timed, which keeps two clock reads off most turns.<p>
+ * Everything can be read through JMX once register() has been called, or printed with getSnapshot().
+ * Starting the JVM with -Dhuntingtreasure.metrics=false switches the whole thing off; the engine's checks then fold away
+ * and nothing is recorded or registered. -Dhuntingtreasure.metrics.sampleEvery=N times one turn in N (rounded up to a
+ * power of two; 1 times every turn).
+ */
+
+public class GameMetrics implements GameMetricsMBean {
+    // constants
+    public static final boolean ENABLED = !"false".equals(System.getProperty("huntingtreasure.metrics"));
+    static final int FLUSH_TURNS = 256;
+    private static final int SAMPLE_EVERY = sampleEvery(Integer.getInteger("huntingtreasure.metrics.sampleEvery", 256));
+    private static final String DOMAIN = "huntingtreasure";
+
+    // static variables
+    private static final GameMetrics INSTANCE = new GameMetrics();
+
+    // instance variables
+    private final LongAdder[] actions;
+    private final LatencyHistogram[] latencies;
+    private final LongAdder brawlsWon;
+    private final LongAdder brawlsLost;
+    private final LongAdder brawlGoldWon;
+    private final LongAdder brawlGoldLost;
+    private final LongAdder digGold;
+    private final LongAdder itemsBroken;
+    private final LongAdder itemsBought;
+    private final LongAdder goldSpent;
+    private final LongAdder itemsSold;
+    private final LongAdder goldReceived;
+    private final LongAdder wins;
+    private final LongAdder losses;
+    private boolean registered;
+    private ScheduledExecutorService reporter;
+
+    private GameMetrics() {
+        Command[] commands = Command.values();
+        actions = new LongAdder[commands.length];
+        latencies = new LatencyHistogram[commands.length];
+        for (int i = 0; i < commands.length; i++) {
+            actions[i] = new LongAdder();
+            latencies[i] = new LatencyHistogram();
+        }
+        brawlsWon = new LongAdder();
+        brawlsLost = new LongAdder();
+        brawlGoldWon = new LongAdder();
+        brawlGoldLost = new LongAdder();
+        digGold = new LongAdder();
+        itemsBroken = new LongAdder();
+        itemsBought = new LongAdder();
+        goldSpent = new LongAdder();
+        itemsSold = new LongAdder();
+        goldReceived = new LongAdder();
+        wins = new LongAdder();
+        losses = new LongAdder();
+    }
+
+    /**
+     * @return The metrics shared by every game in this JVM.
+     */
+    public static GameMetrics get() {
+        return INSTANCE;
+    }
+
+    // accessors
+    public LatencyHistogram getLatency(Command command) {
+        return latencies[command.ordinal()];
+    }
+
+    public long getActions(Command command) {
+        return actions[command.ordinal()].sum();
+    }
+
+    @Override
+    public long getTurns() {
+        long turns = 0;
+        for (LongAdder count : actions) {
+            turns += count.sum();
+        }
+        return turns;
+    }
+
+    @Override
+    public long getBuys() {
+        return getActions(Command.BUY);
+    }
+
+    @Override
+    public long getSells() {
+        return getActions(Command.SELL);
+    }
+
+    @Override
+    public long getExplores() {
+        return getActions(Command.EXPLORE);
+    }
+
+    @Override
+    public long getDigs() {
+        return getActions(Command.DIG);
+    }
+
+    @Override
+    public long getMoves() {
+        return getActions(Command.MOVE);
+    }
+
+    @Override
+    public long getTroubles() {
+        return getActions(Command.TROUBLE);
+    }
+
+    @Override
+    public long getHunts() {
+        return getActions(Command.HUNT);
+    }
+
+    @Override
+    public long getExits() {
+        return getActions(Command.EXIT);
+    }
+
+    @Override
+    public long getBrawlsWon() {
+        return brawlsWon.sum();
+    }
+
+    @Override
+    public long getBrawlsLost() {
+        return brawlsLost.sum();
+    }
+
+    @Override
+    public long getBrawlGoldWon() {
+        return brawlGoldWon.sum();
+    }
+
+    @Override
+    public long getBrawlGoldLost() {
+        return brawlGoldLost.sum();
+    }
+
+    @Override
+    public long getDigGold() {
+        return digGold.sum();
+    }
+
+    @Override
+    public long getItemsBroken() {
+        return itemsBroken.sum();
+    }
+
+    @Override
+    public long getItemsBought() {
+        return itemsBought.sum();
+    }
+
+    @Override
+    public long getGoldSpent() {
+        return goldSpent.sum();
+    }
+
+    @Override
+    public long getItemsSold() {
+        return itemsSold.sum();
+    }
+
+    @Override
+    public long getGoldReceived() {
+        return goldReceived.sum();
+    }
+
+    @Override
+    public long getWins() {
+        return wins.sum();
+    }
+
+    @Override
+    public long getLosses() {
+        return losses.sum();
+    }
+
+    @Override
+    public int getSampleEvery() {
+        return SAMPLE_EVERY;
+    }
+
+    /**
+     * Publishes the counters as huntingtreasure:type=Game and each command's latency as
+     * huntingtreasure:type=Latency,command=NAME on the platform MBean server. Does nothing when metrics are switched off
+     * or already registered.
+     *
+     * @throws IllegalStateException if the MBean server turns the beans down.
+     */
+    public synchronized void register() {
+        if (!ENABLED || registered) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(this, new ObjectName(DOMAIN + ":type=Game"));
+            for (Command command : Command.values()) {
+                server.registerMBean(latencies[command.ordinal()],
+                        new ObjectName(DOMAIN + ":type=Latency,command=" + command.name()));
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Couldn't register the game metrics", e);
+        }
+        registered = true;
+    }
+
+    /**
+     * Prints getSnapshot() on a background thread every so often. Does nothing when metrics are switched off
+     * or a report is already running.
+     *
+     * @param out Where the snapshots are printed.
+     * @param periodSeconds How often.
+     */
+    public synchronized void startReporting(PrintStream out, long periodSeconds) {
+        if (!ENABLED || reporter != null || periodSeconds <= 0) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("game-metrics-reporter").daemon().factory());
+        reporter.scheduleAtFixedRate(() -> out.print(getSnapshot()), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return Every counter and a line per command with its latency percentiles, as text.
+     */
+    @Override
+    public String getSnapshot() {
+        StringBuilder text = new StringBuilder(1024);
+        text.append(String.format("turns %,d, games won %,d, lost %,d%n", getTurns(), getWins(), getLosses()));
+        text.append(String.format("brawls won %,d for %,d gold, lost %,d for %,d gold; digs found %,d gold%n",
+                getBrawlsWon(), getBrawlGoldWon(), getBrawlsLost(), getBrawlGoldLost(), getDigGold()));
+        text.append(String.format("items bought %,d for %,d gold, sold %,d for %,d gold, broken %,d%n",
+                getItemsBought(), getGoldSpent(), getItemsSold(), getGoldReceived(), getItemsBroken()));
+        text.append(String.format("%-8s %12s %10s %9s %9s %9s %9s (us, 1 turn in %d timed)%n",
+                "command", "turns", "timed", "mean", "p50", "p99", "max", SAMPLE_EVERY));
+        for (Command command : Command.values()) {
+            LatencyHistogram latency = latencies[command.ordinal()];
+            text.append(String.format("%-8s %,12d %,10d %9.2f %9.2f %9.2f %9.2f%n", command, getActions(command),
+                    latency.getCount(), latency.getMeanMicros(), latency.getP50Micros(), latency.getP99Micros(),
+                    latency.getMaxMicros()));
+        }
+        return text.toString();
+    }
+
+    private static int sampleEvery(int requested) {
+        return Integer.highestOneBit(Math.max(1, requested) * 2 - 1);
+    }
+
+    /**
+     * One game's counts since they were last added to the shared counters.
+     * A game plays on one thread at a time, so these are plain fields.
+     */
+    static final class Tally {
+        private final GameMetrics metrics;
+        private final boolean flushAtGameEnd;
+        private final long[] actions;
+        private int turns;
+        private long brawlsWon;
+        private long brawlsLost;
+        private long brawlGoldWon;
+        private long brawlGoldLost;
+        private long digGold;
+        private long itemsBroken;
+        private long itemsBought;
+        private long goldSpent;
+        private long itemsSold;
+        private long goldReceived;
+        private long wins;
+        private long losses;
+
+        /**
+         * Starts counting from zero.
+         *
+         * @param flushAtGameEnd True for a tally that belongs to one game and is flushed when the game ends;
+         *                       false for one that a thread shares between the games it plays one after another,
+         *                       which is only flushed every FLUSH_TURNS turns and by its owner when it is done.
+         */
+        Tally(boolean flushAtGameEnd) {
+            this.flushAtGameEnd = flushAtGameEnd;
+            metrics = INSTANCE;
+            actions = new long[Command.values().length];
+            if (flushAtGameEnd) {
+                // most games are shorter than the sampling interval, so each starts at a random point in it
+                turns = ThreadLocalRandom.current().nextInt(SAMPLE_EVERY);
+            }
+        }
+
+        /**
+         * @return Whether the coming turn is one of those that get timed.
+         */
+        boolean timeNextTurn() {
+            return (turns & (SAMPLE_EVERY - 1)) == 0;
+        }
+
+        /**
+         * Counts a turn the game has played. The GameEngine reports what happened during the turn through the
+         * other methods, from the branch that handled the command, so the turns where nothing happens stay cheap.
+         *
+         * @param command The command that was carried out.
+         * @param status Where the game stands after the turn.
+         * @param started When the turn started by System.nanoTime(), or 0 if it isn't being timed.
+         */
+        void turnPlayed(Command command, TurnResult.Status status, long started) {
+            actions[command.ordinal()]++;
+            if (started != 0) {
+                metrics.latencies[command.ordinal()].record(System.nanoTime() - started);
+            }
+            if (++turns % FLUSH_TURNS == 0 || (flushAtGameEnd && status != TurnResult.Status.PLAYING)) {
+                flush();
+            }
+        }
+
+        void brawled(int goldChange) {
+            if (goldChange > 0) {
+                brawlsWon++;
+                brawlGoldWon += goldChange;
+            } else if (goldChange < 0) {
+                brawlsLost++;
+                brawlGoldLost -= goldChange;
+            }
+        }
+
+        void dug(int gold) {
+            digGold += gold;
+        }
+
+        void itemBroken() {
+            itemsBroken++;
+        }
+
+        void itemBought(int cost) {
+            itemsBought++;
+            goldSpent += cost;
+        }
+
+        void itemSold(int price) {
+            itemsSold++;
+            goldReceived += price;
+        }
+
+        void gameWon() {
+            wins++;
+        }
+
+        void gameLost() {
+            losses++;
+        }
+
+        /**
+         * Adds everything counted so far to the shared counters and starts again from zero.
+         */
+        void flush() {
+            for (int i = 0; i < actions.length; i++) {
+                if (actions[i] != 0) {
+                    metrics.actions[i].add(actions[i]);
+                    actions[i] = 0;
+                }
+            }
+            brawlsWon = addTo(metrics.brawlsWon, brawlsWon);
+            brawlsLost = addTo(metrics.brawlsLost, brawlsLost);
+            brawlGoldWon = addTo(metrics.brawlGoldWon, brawlGoldWon);
+            brawlGoldLost = addTo(metrics.brawlGoldLost, brawlGoldLost);
+            digGold = addTo(metrics.digGold, digGold);
+            itemsBroken = addTo(metrics.itemsBroken, itemsBroken);
+            itemsBought = addTo(metrics.itemsBought, itemsBought);
+            goldSpent = addTo(metrics.goldSpent, goldSpent);
+            itemsSold = addTo(metrics.itemsSold, itemsSold);
+            goldReceived = addTo(metrics.goldReceived, goldReceived);
+            wins = addTo(metrics.wins, wins);
+            losses = addTo(metrics.losses, losses);
+        }
+
+        private static long addTo(LongAdder counter, long count) {
+            if (count != 0) {
+                counter.add(count);
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package huntingtreasure;
+
+/**
+ * What JMX shows of the GameMetrics counters.
+ */
+
+public interface GameMetricsMBean {
+    long getTurns();
+
+    long getBuys();
+
+    long getSells();
+
+    long getExplores();
+
+    long getDigs();
+
+    long getMoves();
+
+    long getTroubles();
+
+    long getHunts();
+
+    long getExits();
+
+    long getBrawlsWon();
+
+    long getBrawlsLost();
+
+    long getBrawlGoldWon();
+
+    long getBrawlGoldLost();
+
+    long getDigGold();
+
+    long getItemsBroken();
+
+    long getItemsBought();
+
+    long getGoldSpent();
+
+    long getItemsSold();
+
+    long getGoldReceived();
+
+    long getWins();
+
+    long getLosses();
+
+    int getSampleEvery();
+
+    String getSnapshot();
+}
@@ -0,0 +1,82 @@
+package huntingtreasure;
+
+/**
+ * The GameMode enum holds the settings that change between the difficulties of the Treasure Hunter game.<p>
+ * The markdown is what a shop pays back for an item, and the toughness is the chance that a town is a tough one.
+ */
+
+public enum GameMode {
+    EASY(40, 1.0, 0.4, true, false, false),
+    NORMAL(20, 0.5, 0.4, false, false, false),
+    HARD(20, 0.25, 0.75, false, false, false),
+    SAMURAI(20, 0.5, 0.4, false, true, false),
+    TEST(100, 1.0, 0.4, true, false, true);
+
+    // instance variables
+    private final int startingGold;
+    private final double markdown;
+    private final double toughness;
+    private final boolean easy;
+    private final boolean samurai;
+    private final boolean fullKit;
+
+    GameMode(int startingGold, double markdown, double toughness, boolean easy, boolean samurai, boolean fullKit) {
+        this.startingGold = startingGold;
+        this.markdown = markdown;
+        this.toughness = toughness;
+        this.easy = easy;
+        this.samurai = samurai;
+        this.fullKit = fullKit;
+    }
+
+    // accessors
+    public int getStartingGold() {
+        return startingGold;
+    }
+
+    public double getMarkdown() {
+        return markdown;
+    }
+
+    public double getToughness() {
+        return toughness;
+    }
+
+    public boolean isEasy() {
+        return easy;
+    }
+
+    public boolean isSamurai() {
+        return samurai;
+    }
+
+    /**
+     * Creates the hunter a new game starts with in this mode.
+     *
+     * @param hunterName The hunter's name.
+     * @return A new Hunter with the mode's starting gold and kit.
+     */
+    public Hunter newHunter(String hunterName) {
+        if (fullKit) {
+            return new Hunter(hunterName);
+        }
+        return new Hunter(hunterName, startingGold);
+    }
+
+    /**
+     * Finds the mode that matches what the player typed at the start of the game.
+     * Anything that isn't recognized plays on normal.
+     *
+     * @param key The player's choice, already in lower case.
+     * @return The matching mode.
+     */
+    public static GameMode fromKey(String key) {
+        switch (key) {
+            case "e": return EASY;
+            case "h": return HARD;
+            case "s": return SAMURAI;
+            case "test": return TEST;
+            default: return NORMAL;
+        }
+    }
+}
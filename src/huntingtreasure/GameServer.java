@@ -0,0 +1,220 @@
+package huntingtreasure;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The GameServer lets many players play Treasure Hunter at once over telnet-style TCP connections.<p>
+ * Every connection gets its own TreasureHunter game on its own virtual thread, so a player who is
+ * thinking about their next move holds on to a small stack and no platform thread.<p>
+ * When the server is given SharedTowns, all its players hunt in that one world and race each other for the treasure.
+ * When it is given a SessionSlab instead, every game that is waiting for its player is parked there.<p>
+ * When it is given an AutoSaver, every game is saved in the background after every turn and a player who is cut off
+ * can resume their game from a new connection, and when it is given an
+ * EventJournal, every turn of every game is journaled.<p>
+ * Players who stay quiet longer than the idle timeout are disconnected, and shutdown() lets the games
+ * in progress finish for a while before closing whatever is left.
+ */
+
+public class GameServer {
+    // instance variables
+    private final int port;
+    private final int idleTimeoutMillis;
+    private final Set<Socket> sessions;
+    private final ExecutorService executor;
+    private final SharedTowns sharedTowns;
+    private final SessionSlab slab;
+    private final AutoSaver autoSaver;
+    private final EventJournal journal;
+    private ServerSocket serverSocket;
+    private Thread acceptor;
+    private volatile boolean running;
+
+    /**
+     * Sets up a server; nothing is listening until start() is called.
+     *
+     * @param port The TCP port to listen on, or 0 for any free port.
+     * @param idleTimeoutMillis How long a player may go without sending a line before being disconnected.
+     */
+    public GameServer(int port, int idleTimeoutMillis) {
+        this(port, idleTimeoutMillis, null);
+    }
+
+    /**
+     * Sets up a server whose players share a world; nothing is listening until start() is called.
+     *
+     * @param port The TCP port to listen on, or 0 for any free port.
+     * @param idleTimeoutMillis How long a player may go without sending a line before being disconnected.
+     * @param sharedTowns The world every player hunts in, or null to give each player towns of their own.
+     */
+    public GameServer(int port, int idleTimeoutMillis, SharedTowns sharedTowns) {
+        this(port, idleTimeoutMillis, sharedTowns, null);
+    }
+
+    /**
+     * Sets up a server whose waiting games are parked off the heap; nothing is listening until start() is called.
+     *
+     * @param port The TCP port to listen on, or 0 for any free port.
+     * @param idleTimeoutMillis How long a player may go without sending a line before being disconnected.
+     * @param sharedTowns The world every player hunts in, or null to give each player towns of their own.
+     * @param slab Where games wait for their players, or null to keep them on the heap; ignored in a shared world.
+     */
+    public GameServer(int port, int idleTimeoutMillis, SharedTowns sharedTowns, SessionSlab slab) {
+        this(port, idleTimeoutMillis, sharedTowns, slab, null);
+    }
+
+    /**
+     * Sets up a server that saves every game as it goes; nothing is listening until start() is called.
+     *
+     * @param port The TCP port to listen on, or 0 for any free port.
+     * @param idleTimeoutMillis How long a player may go without sending a line before being disconnected.
+     * @param sharedTowns The world every player hunts in, or null to give each player towns of their own.
+     * @param slab Where games wait for their players, or null to keep them on the heap; ignored in a shared world.
+     * @param autoSaver Where every game is saved, or null to save nothing.
+     */
+    public GameServer(int port, int idleTimeoutMillis, SharedTowns sharedTowns, SessionSlab slab, AutoSaver autoSaver) {
+        this(port, idleTimeoutMillis, sharedTowns, slab, autoSaver, null);
+    }
+
+    /**
+     * Sets up a server that saves and journals every game as it goes; nothing is listening until start() is called.
+     *
+     * @param port The TCP port to listen on, or 0 for any free port.
+     * @param idleTimeoutMillis How long a player may go without sending a line before being disconnected.
+     * @param sharedTowns The world every player hunts in, or null to give each player towns of their own.
+     * @param slab Where games wait for their players, or null to keep them on the heap; ignored in a shared world.
+     * @param autoSaver Where every game is saved, or null to save nothing.
+     * @param journal Where every turn is journaled, or null to journal nothing.
+     */
+    public GameServer(int port, int idleTimeoutMillis, SharedTowns sharedTowns, SessionSlab slab, AutoSaver autoSaver,
+                      EventJournal journal) {
+        this.journal = journal;
+        this.sharedTowns = sharedTowns;
+        this.slab = slab;
+        this.autoSaver = autoSaver;
+        this.port = port;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        sessions = ConcurrentHashMap.newKeySet();
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Starts listening and accepting players.
+     *
+     * @throws IOException if the port can't be opened.
+     */
+    public void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(port), 1024);
+        running = true;
+        acceptor = Thread.ofPlatform().name("game-server-acceptor").start(this::acceptPlayers);
+    }
+
+    /**
+     * @return The port the server is listening on.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return How many players are connected right now.
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Stops taking new players, gives the games in progress time to finish, then disconnects anyone still playing.
+     *
+     * @param drainMillis How long to wait for games to finish on their own.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public void shutdown(long drainMillis) throws InterruptedException {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // the acceptor is stopping either way
+        }
+        acceptor.join();
+        executor.shutdown();
+        if (!executor.awaitTermination(drainMillis, TimeUnit.MILLISECONDS)) {
+            for (Socket socket : sessions) {
+                closeQuietly(socket);
+            }
+            executor.awaitTermination(drainMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void acceptPlayers() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(idleTimeoutMillis);
+                sessions.add(socket);
+                executor.execute(() -> runSession(socket));
+            } catch (SocketException e) {
+                // the server socket was closed by shutdown()
+                return;
+            } catch (IOException e) {
+                System.err.println("Could not accept a player: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Plays one game over a connection, then hangs up.
+     *
+     * @param socket The player's connection.
+     */
+    private void runSession(Socket socket) {
+        PrintWriter out = null;
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            TreasureHunter game = new TreasureHunter(in, out, sharedTowns, slab);
+            game.setAutoSaver(autoSaver);
+            if (journal != null) {
+                game.setJournal(journal.open());
+            }
+            game.play();
+        } catch (UncheckedIOException e) {
+            if (e.getCause() instanceof SocketTimeoutException && out != null) {
+                out.println();
+                out.println("You've been quiet too long, hunter. Come back when you're ready.");
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the player hung up; nothing left to tell them
+        } finally {
+            sessions.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+}
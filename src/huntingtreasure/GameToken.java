@@ -0,0 +1,228 @@
+package huntingtreasure;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A GameToken carries a whole game between the ApiServer and its players, so the server keeps nothing between requests.<p>
+ * Inside a token is the game as the SessionCodec writes it, the seed the game's next rolls come from (8 bytes), the
+ * game's id (8 random bytes), the number of turns it has played (4 bytes), its EventJournal session id (8 bytes,
+ * NO_SESSION when it isn't journaled) and the sequence number of its next record (4 bytes). All of that is encrypted with AES-GCM, and the token is a fresh NONCE_BYTES nonce, the ciphertext
+ * and the TAG_BYTES authentication tag, in URL-safe Base64. A normal game makes a token of about a hundred characters.
+ * The AES key is worked out from the server's key with HMAC-SHA256, so any server holding the same key can open any
+ * token, and nobody without it can read one, make one up or change a byte of one without it being turned away.
+ * The player sees their hunter and town in every answer anyway; what the encryption hides is the treasure in the town
+ * and the seed, which would tell them how every roll is going to come out.<p>
+ * The seed travels with the game so that sending the same token with the same command twice gives the same outcome;
+ * a player can't keep resending a brawl until it goes their way. A token on its own can't know whether it has been
+ * used, so it carries its game's id and turn for the server to check: the ApiServer remembers the newest turn it has
+ * handed out for each game and turns away any older token, so a player can't go back and try something else either.<p>
+ * A GameToken holds nothing that changes, so any number of threads can share one.
+ */
+
+public final class GameToken {
+    // constants
+    public static final int NONCE_BYTES = 12;
+    public static final int TAG_BYTES = 16;
+    public static final int TRAILER_BYTES = 8 + 8 + 4 + 8 + 4;
+    public static final int MAX_TOKEN_CHARS =
+            (NONCE_BYTES + SessionCodec.MAX_RECORD_BYTES + TRAILER_BYTES + TAG_BYTES + 2) / 3 * 4;
+    private static final String KEY_ALGORITHM = "HmacSHA256";
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final byte[] KEY_LABEL = "huntingtreasure game token".getBytes(StandardCharsets.UTF_8);
+
+    // static variables
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final SecureRandom NONCES = new SecureRandom();
+
+    // instance variables
+    private final SecretKeySpec key;
+
+    /**
+     * The game inside a token, ready to play a turn.
+     */
+    public static final class Opened {
+        // instance variables
+        private final GameEngine game;
+        private final SplittableRandomSource random;
+        private final long gameId;
+        private int turn;
+        private long journalId;
+        private int journalSequence;
+
+        private Opened(GameEngine game, SplittableRandomSource random, long gameId, int turn, long journalId,
+                       int journalSequence) {
+            this.game = game;
+            this.random = random;
+            this.gameId = gameId;
+            this.turn = turn;
+            this.journalId = journalId;
+            this.journalSequence = journalSequence;
+        }
+
+        // accessors
+        public GameEngine getGame() {
+            return game;
+        }
+
+        public SplittableRandomSource getRandom() {
+            return random;
+        }
+
+        /**
+         * @return The game's id, the same in every token of the game and chosen at random, so no two games share one.
+         */
+        public long getGameId() {
+            return gameId;
+        }
+
+        /**
+         * @return The number of turns the game had played when the token was sealed.
+         */
+        public int getTurn() {
+            return turn;
+        }
+
+        public long getJournalId() {
+            return journalId;
+        }
+
+        public int getJournalSequence() {
+            return journalSequence;
+        }
+
+        /**
+         * Records where the game's journal stands, for the next token to carry.
+         *
+         * @param journalId The game's EventJournal session id.
+         * @param journalSequence The sequence number of the session's next record.
+         */
+        void setJournal(long journalId, int journalSequence) {
+            this.journalId = journalId;
+            this.journalSequence = journalSequence;
+        }
+
+        /**
+         * Counts a turn played, for the next token to carry.
+         */
+        void nextTurn() {
+            turn++;
+        }
+    }
+
+    /**
+     * @param secret The secret the tokens are sealed with; every server that should accept the same tokens needs the
+     *               same secret.
+     * @throws IllegalArgumentException if the secret is empty.
+     */
+    public GameToken(byte[] secret) {
+        try {
+            Mac mac = Mac.getInstance(KEY_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, KEY_ALGORITHM));
+            // the secret can be any length; AES needs exactly 32 bytes, and a keyed hash gives them
+            key = new SecretKeySpec(mac.doFinal(KEY_LABEL), "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Can't seal tokens with that key", e);
+        }
+    }
+
+    /**
+     * Starts a game whose rolls can be carried in a token.
+     *
+     * @param hunterName The hunter's name.
+     * @param mode The difficulty of the game.
+     * @param seed Where the game's first rolls come from.
+     * @return The new game, with the source of its rolls.
+     */
+    public Opened start(String hunterName, GameMode mode, long seed) {
+        SplittableRandomSource random = new SplittableRandomSource(seed);
+        return new Opened(new GameEngine(hunterName, mode, random), random, NONCES.nextLong(), 0, EventJournal.NO_SESSION, 0);
+    }
+
+    /**
+     * Packs a game into a token. The seed for the game's next rolls is rolled from its own source.
+     *
+     * @param opened The game.
+     * @return The token.
+     */
+    public String seal(Opened opened) {
+        ByteBuffer plain = ByteBuffer.allocate(SessionCodec.MAX_RECORD_BYTES + TRAILER_BYTES);
+        SessionCodec.encode(opened.game, plain);
+        plain.putLong(opened.random.nextSeed());
+        plain.putLong(opened.gameId);
+        plain.putInt(opened.turn);
+        plain.putLong(opened.journalId);
+        plain.putInt(opened.journalSequence);
+
+        byte[] token = new byte[NONCE_BYTES + plain.position() + TAG_BYTES];
+        // a nonce must never repeat under one key; 96 random bits make that vanishingly unlikely
+        byte[] nonce = new byte[NONCE_BYTES];
+        NONCES.nextBytes(nonce);
+        System.arraycopy(nonce, 0, token, 0, NONCE_BYTES);
+        try {
+            cipher(Cipher.ENCRYPT_MODE, nonce).doFinal(plain.array(), 0, plain.position(), token, NONCE_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(CIPHER + " failed to seal a token", e);
+        }
+        return ENCODER.encodeToString(token);
+    }
+
+    /**
+     * Checks a token and unpacks the game in it.
+     *
+     * @param token The token, as seal() made it.
+     * @return The game, with its rolls picking up where the token says.
+     * @throws IllegalArgumentException if the token wasn't made with this key, was changed, or can't be read.
+     */
+    public Opened open(String token) {
+        if (token.length() > MAX_TOKEN_CHARS) {
+            throw new IllegalArgumentException("Not a game token");
+        }
+        byte[] bytes = DECODER.decode(token);
+        if (bytes.length < NONCE_BYTES + SessionCodec.HEADER_BYTES + TRAILER_BYTES + TAG_BYTES) {
+            throw new IllegalArgumentException("Not a game token");
+        }
+        byte[] plain;
+        try {
+            plain = cipher(Cipher.DECRYPT_MODE, Arrays.copyOf(bytes, NONCE_BYTES))
+                    .doFinal(bytes, NONCE_BYTES, bytes.length - NONCE_BYTES);
+        } catch (AEADBadTagException e) {
+            // the tag is checked in constant time, so how long a wrong token takes to turn away gives nothing away
+            throw new IllegalArgumentException("The token's seal doesn't match");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Not a game token", e);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(plain);
+        int trailer = plain.length - TRAILER_BYTES;
+        SplittableRandomSource random = new SplittableRandomSource(buffer.getLong(trailer));
+        long gameId = buffer.getLong(trailer + 8);
+        int turn = buffer.getInt(trailer + 16);
+        long journalId = buffer.getLong(trailer + 20);
+        int journalSequence = buffer.getInt(trailer + 28);
+        GameEngine game = SessionCodec.decode(buffer.limit(trailer), random);
+        if (game == null || buffer.hasRemaining()) {
+            throw new IllegalArgumentException("Not a game token");
+        }
+        return new Opened(game, random, gameId, turn, journalId, journalSequence);
+    }
+
+    /**
+     * A Cipher can't be shared between threads, and a GCM one can't be used twice with the same nonce, so every
+     * token gets its own.
+     */
+    private Cipher cipher(int mode, byte[] nonce) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(mode, key, new GCMParameterSpec(TAG_BYTES * 8, nonce));
+        return cipher;
+    }
+}
@@ -0,0 +1,42 @@
+package huntingtreasure;
+
+/**
+ * The GreedyPolicy plays the way a careful player would.<p>
+ * It picks up the sword whenever the shop has one, hunts each town once, buys the item it needs to cross the terrain as soon as it can afford it,
+ * digs when it has a shovel and otherwise goes looking for trouble to raise gold.<p>
+ * It only goes by what a player can see: its gold, kit and chest, and the town's terrain and whether it has been searched
+ * or dug. What treasure a town holds isn't known until it is hunted, so every town is hunted, even where it turns out
+ * to be dust or a treasure already in the chest; the simulators' win rates are then the ones a real player could reach.
+ */
+
+public class GreedyPolicy implements Policy {
+
+    /**
+     * Picks the next command for the hunter and carries it out on the game.
+     *
+     * @param game The game being played.
+     * @return What happened on the turn.
+     */
+    @Override
+    public TurnResult playTurn(GameEngine game) {
+        Hunter hunter = game.getHunter();
+        Town town = game.getCurrentTown();
+        if (game.getMode().isSamurai() && !hunter.hasItemInKit(ItemType.SWORD)) {
+            return game.execute(Command.BUY, ItemType.SWORD);
+        }
+        if (!town.getSearched()) {
+            return game.execute(Command.HUNT);
+        }
+        ItemType neededItem = town.getTerrain().getNeededItemType();
+        if (hunter.hasItemInKit(neededItem)) {
+            return game.execute(Command.MOVE);
+        }
+        if (hunter.getGold() >= town.getShop().checkMarketPrice(neededItem, true)) {
+            return game.execute(Command.BUY, neededItem);
+        }
+        if (hunter.hasItemInKit(ItemType.SHOVEL) && !town.getAlreadyDug()) {
+            return game.execute(Command.DIG);
+        }
+        return game.execute(Command.TROUBLE);
+    }
+}
@@ -0,0 +1,437 @@
+package huntingtreasure;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The HintSearch works out a good next move for a game in progress, for the hint option on the menu.<p>
+ * It looks ahead with expectimax: the hunter's choices are minimized over, and the town's dice (brawls, digs, broken
+ * items, the next town and what a hunt turns up) are averaged over with the odds from the game's Rules. The search only knows
+ * what the player knows, so a town's treasure stays a mystery until it has been searched. A position is worth the expected
+ * number of turns left before winning, where going broke costs LOSS_PENALTY turns, and positions past the search
+ * horizon get a rough estimate instead.<p>
+ * The search deepens one turn at a time until its time budget runs out, then answers with the deepest search it
+ * finished, so a hint never holds the game up for long. Positions already worked out are kept in a bounded table that
+ * forgets the least recently used ones first. Each game has its own HintSearch, so sessions never wait on each other.
+ */
+
+public class HintSearch {
+    // constants
+    public static final double LOSS_PENALTY = 200;
+    private static final int MAX_DEPTH = 12;
+    private static final int CLOCK_CHECK_NODES = 16;
+    private static final int TREASURES = 4;
+    private static final int DUST = ItemType.DUST.ordinal() - ItemType.CROWN.ordinal();
+    private static final int WINNING_CHEST = 7;
+    private static final int ITEMS = ItemType.SWORD.ordinal() + 1;
+    private static final int MAX_GOLD = 0xFFFF;
+
+    // a position is packed into a long: gold, kit, chest, terrain, then the searched, dug and tough flags
+    private static final int KIT_SHIFT = 16;
+    private static final int CHEST_SHIFT = 24;
+    private static final int TERRAIN_SHIFT = 27;
+    private static final long SEARCHED = 1L << 30;
+    private static final long DUG = 1L << 31;
+    private static final long TOUGH = 1L << 32;
+
+    // below the horizon, a town takes about a hunt and a move
+    private static final double TURNS_PER_TOWN = 2;
+    // fitted to the values StrategySolver finds: the chance a town leads to ruin, and how fast gold in hand cuts it
+    private static final double RUIN_PER_TOWN = 0.09;
+    private static final double RUIN_GOLD_SCALE = 16;
+    private static final double EASY_RUIN_PER_TOWN = 0.03;
+    private static final double EASY_RUIN_GOLD_SCALE = 7;
+
+    // instance variables
+    private final GameMode mode;
+    private final Rules rules;
+    private final long budgetNanos;
+    private final int[] costs;
+    private final int[] buyBackCosts;
+    private final int[] neededBits;
+    private final int[] treasureWeights;
+    private final double averageCrossingCost;
+    private final double townsPerTreasure;
+    private final double goldPerDig;
+    private final double turnsPerGold;
+    private final double ruinPerTown;
+    private final double ruinGoldScale;
+    private final Map<Long, Entry> table;
+    private long deadline;
+    private int nodes;
+    private boolean timedOut;
+    private int lastDepth;
+    private double lastValue;
+
+    /**
+     * Sets up the search for one game played by the current rules.
+     *
+     * @param mode The game's mode, which decides the odds and the prices.
+     * @param budgetNanos How long a hint may take.
+     * @param maxEntries How many positions the table remembers.
+     */
+    public HintSearch(GameMode mode, long budgetNanos, int maxEntries) {
+        this(mode, Rules.current(), budgetNanos, maxEntries);
+    }
+
+    /**
+     * Sets up the search for one game.
+     *
+     * @param mode The game's mode, which decides the odds and the prices.
+     * @param rules The rules the game is played by.
+     * @param budgetNanos How long a hint may take.
+     * @param maxEntries How many positions the table remembers.
+     */
+    public HintSearch(GameMode mode, Rules rules, long budgetNanos, int maxEntries) {
+        this.mode = mode;
+        this.rules = rules;
+        this.budgetNanos = budgetNanos;
+        Shop shop = Shop.of(rules, rules.getMarkdown(mode), mode.isSamurai());
+        costs = new int[ITEMS];
+        buyBackCosts = new int[ITEMS];
+        for (int item = 0; item < ITEMS; item++) {
+            ItemType type = ItemType.values()[item];
+            costs[item] = shop.getCostOfItem(type);
+            buyBackCosts[item] = shop.getBuyBackCost(type);
+        }
+        neededBits = new int[Terrain.count()];
+        double crossingCosts = 0;
+        for (int terrain = 0; terrain < neededBits.length; terrain++) {
+            ItemType needed = rules.getTerrain(terrain).getNeededItemType();
+            neededBits[terrain] = (int) needed.getBit();
+            crossingCosts += rules.getTerrainWeight(terrain) * costs[needed.ordinal()];
+        }
+        averageCrossingCost = crossingCosts / rules.getTotalTerrainWeight();
+        treasureWeights = new int[TREASURES];
+        for (int treasure = 0; treasure < TREASURES; treasure++) {
+            treasureWeights[treasure] = rules.getTreasureWeight(ItemType.values()[ItemType.CROWN.ordinal() + treasure]);
+        }
+        // how many towns it takes to come across a given missing treasure
+        double treasureWeight = (rules.getTotalTreasureWeight() - treasureWeights[DUST]) / (TREASURES - 1.0);
+        townsPerTreasure = rules.getTotalTreasureWeight() / Math.max(treasureWeight, Double.MIN_NORMAL);
+        goldPerDig = (1 - rules.getDirtChance()) * (rules.getMaxDigGold() + 1) / 2.0;
+        // what a turn of brawling in a quiet town earns on average
+        double brawl = mode.isEasy() ? rules.getEasyBrawlChance() : rules.getBrawlChance();
+        double goldPerTurn = brawl * (1 - 2 * brawl) * (rules.getMaxBrawlGold() + 1) / 2.0;
+        turnsPerGold = 1 / Math.max(goldPerTurn, 0.1);
+        ruinPerTown = mode.isEasy() ? EASY_RUIN_PER_TOWN : RUIN_PER_TOWN;
+        ruinGoldScale = mode.isEasy() ? EASY_RUIN_GOLD_SCALE : RUIN_GOLD_SCALE;
+        table = new LinkedHashMap<>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // accessors
+    public int getLastDepth() {
+        return lastDepth;
+    }
+
+    public double getLastValue() {
+        return lastValue;
+    }
+
+    public int getTableSize() {
+        return table.size();
+    }
+
+    /**
+     * Searches for the best move in the game's current position.
+     *
+     * @param game A game that is still being played, in this search's mode.
+     * @return The move, as one of StrategySolver's actions.
+     */
+    public int bestAction(GameEngine game) {
+        long end = System.nanoTime() + budgetNanos;
+        long state = stateOf(game);
+        nodes = 0;
+        timedOut = false;
+        // one turn of lookahead always finishes, so there is always an answer
+        deadline = Long.MAX_VALUE;
+        int best = searchRoot(state, 1);
+        lastDepth = 1;
+        double bestValue = lastValue;
+        deadline = end;
+        for (int depth = 2; depth <= MAX_DEPTH; depth++) {
+            int action = searchRoot(state, depth);
+            if (timedOut) {
+                break;
+            }
+            best = action;
+            bestValue = lastValue;
+            lastDepth = depth;
+        }
+        lastValue = bestValue;
+        return best;
+    }
+
+    /**
+     * Searches for the best move and describes it to the player.
+     *
+     * @param game A game that is still being played, in this search's mode.
+     * @return A line of advice for the news.
+     */
+    public String hint(GameEngine game) {
+        int action = bestAction(game);
+        String advice = switch (StrategySolver.commandOf(action)) {
+            case HUNT -> "hunt for the treasure here";
+            case DIG -> "dig for gold";
+            case TROUBLE -> "go looking for trouble";
+            case MOVE -> "move on to the next town";
+            case BUY -> "buy the " + StrategySolver.itemOf(action).getName().toLowerCase(Locale.ROOT);
+            case SELL -> "sell your " + StrategySolver.itemOf(action).getName().toLowerCase(Locale.ROOT);
+            default -> "keep your head down";
+        };
+        return "An old prospector leans over and whispers: \"If I were you, I'd " + advice + ".\"";
+    }
+
+    /**
+     * Packs what the player can see of a game into a long.
+     */
+    static long stateOf(GameEngine game) {
+        Hunter hunter = game.getHunter();
+        Town town = game.getCurrentTown();
+        int chest = (int) (hunter.getChestBits() >>> ItemType.CROWN.ordinal()) & WINNING_CHEST;
+        long state = pack(Math.max(0, hunter.getGold()), (int) hunter.getKitBits(), chest, Terrain.indexOf(town.getTerrain()));
+        return state | (town.getSearched() ? SEARCHED : 0) | (town.getAlreadyDug() ? DUG : 0)
+                | (town.isToughTown() ? TOUGH : 0);
+    }
+
+    private static long pack(int gold, int kit, int chest, int terrain) {
+        return Math.min(gold, MAX_GOLD) | (long) (kit & 0xFF) << KIT_SHIFT | (long) chest << CHEST_SHIFT
+                | (long) terrain << TERRAIN_SHIFT;
+    }
+
+    private static int gold(long state) {
+        return (int) state & MAX_GOLD;
+    }
+
+    private static int kit(long state) {
+        return (int) (state >>> KIT_SHIFT) & 0xFF;
+    }
+
+    private static int chest(long state) {
+        return (int) (state >>> CHEST_SHIFT) & WINNING_CHEST;
+    }
+
+    private static int terrain(long state) {
+        return (int) (state >>> TERRAIN_SHIFT) & 7;
+    }
+
+    private static long withGold(long state, int gold) {
+        return (state & ~(long) MAX_GOLD) | Math.min(gold, MAX_GOLD);
+    }
+
+    private static long withKit(long state, int kit) {
+        return (state & ~(0xFFL << KIT_SHIFT)) | (long) kit << KIT_SHIFT;
+    }
+
+    private int searchRoot(long state, int depth) {
+        int best = StrategySolver.TROUBLE;
+        double bestValue = Double.MAX_VALUE;
+        for (int action = 0; action < StrategySolver.ACTIONS; action++) {
+            double value = actionValue(state, action, depth);
+            if (value < bestValue) {
+                bestValue = value;
+                best = action;
+            }
+        }
+        lastValue = bestValue;
+        return best;
+    }
+
+    private double value(long state, int depth) {
+        if (depth == 0) {
+            return estimate(state);
+        }
+        Entry entry = table.get(state);
+        if (entry != null && entry.depth >= depth) {
+            return entry.value;
+        }
+        if (++nodes % CLOCK_CHECK_NODES == 0 && System.nanoTime() > deadline) {
+            timedOut = true;
+        }
+        if (timedOut) {
+            return 0;
+        }
+        double best = Double.MAX_VALUE;
+        for (int action = 0; action < StrategySolver.ACTIONS; action++) {
+            double value = actionValue(state, action, depth);
+            if (value < best) {
+                best = value;
+            }
+        }
+        // an unfinished search leaves half-worked-out values behind, which mustn't be remembered
+        if (!timedOut) {
+            table.put(state, new Entry(depth, best));
+        }
+        return best;
+    }
+
+    /**
+     * Averages over everything that can happen when an action is taken.
+     *
+     * @return The expected turns left after taking the action, or NaN if the action would do nothing.
+     */
+    private double actionValue(long state, int action, int depth) {
+        int gold = gold(state);
+        int kit = kit(state);
+        boolean sword = (kit & ItemType.SWORD.getBit()) != 0;
+        // trading is only worth searching when it helps get out of town: buying what the terrain needs, the shovel
+        // or the sword, and selling to afford the needed item; anything else only wastes turns and gold
+        int needed = neededBits[terrain(state)];
+        if (action >= StrategySolver.SELL) {
+            int item = action - StrategySolver.SELL;
+            int bit = 1 << item;
+            int neededCost = costs[Integer.numberOfTrailingZeros(needed)];
+            if ((kit & bit) == 0 || buyBackCosts[item] <= 0 || (kit & needed) != 0 || gold >= neededCost) {
+                return Double.NaN;
+            }
+            return 1 + value(withKit(withGold(state, gold + buyBackCosts[item]), kit & ~bit), depth - 1);
+        }
+        if (action >= StrategySolver.BUY) {
+            int item = action - StrategySolver.BUY;
+            int bit = 1 << item;
+            boolean useful = bit == needed || item == ItemType.SHOVEL.ordinal()
+                    || (item == ItemType.SWORD.ordinal() && mode.isSamurai());
+            if (!useful || (kit & bit) != 0 || gold < costs[item]) {
+                return Double.NaN;
+            }
+            // the sword scares shopkeepers into handing their wares over
+            int newGold = sword ? gold : gold - costs[item];
+            return 1 + value(withKit(withGold(state, newGold), kit | bit), depth - 1);
+        }
+        switch (action) {
+            case StrategySolver.HUNT: {
+                if ((state & SEARCHED) != 0) {
+                    return Double.NaN;
+                }
+                double found = 0;
+                for (int treasure = 0; treasure < TREASURES; treasure++) {
+                    int chest = treasure == DUST ? chest(state) : chest(state) | (1 << treasure);
+                    if (chest != WINNING_CHEST && treasureWeights[treasure] != 0) {
+                        found += treasureWeights[treasure]
+                                * value((state & ~(7L << CHEST_SHIFT)) | (long) chest << CHEST_SHIFT | SEARCHED, depth - 1);
+                    }
+                }
+                return 1 + found / rules.getTotalTreasureWeight();
+            }
+            case StrategySolver.DIG: {
+                if ((state & DUG) != 0 || (kit & ItemType.SHOVEL.getBit()) == 0) {
+                    return Double.NaN;
+                }
+                long dug = state | DUG;
+                int maxDigGold = rules.getMaxDigGold();
+                double found = 0;
+                for (int reward = 1; reward <= maxDigGold; reward++) {
+                    found += value(withGold(dug, gold + reward), depth - 1);
+                }
+                return 1 + rules.getDirtChance() * value(dug, depth - 1)
+                        + (1 - rules.getDirtChance()) * found / maxDigGold;
+            }
+            case StrategySolver.TROUBLE: {
+                // the brawl chance is both the chance of a brawl and, once in one, the chance of losing it
+                double brawl;
+                if ((state & TOUGH) != 0) {
+                    brawl = rules.getToughBrawlChance();
+                } else if (mode.isEasy()) {
+                    brawl = rules.getEasyBrawlChance();
+                } else {
+                    brawl = rules.getBrawlChance();
+                }
+                // turns where nothing changes just repeat the same choice, so only the others are searched
+                double same = 1 - brawl + (sword ? brawl * brawl : 0);
+                int maxBrawlGold = rules.getMaxBrawlGold();
+                double changed = 0;
+                for (int diff = 1; diff <= maxBrawlGold; diff++) {
+                    changed += brawl * (1 - brawl) * value(withGold(state, gold + diff), depth - 1);
+                    if (!sword) {
+                        double lost = gold < diff ? LOSS_PENALTY : value(withGold(state, gold - diff), depth - 1);
+                        changed += brawl * brawl * lost;
+                    }
+                }
+                return (1 + changed / maxBrawlGold) / (1 - same);
+            }
+            case StrategySolver.MOVE: {
+                if ((kit & needed) == 0) {
+                    return Double.NaN;
+                }
+                double kept = arrive(gold, kit, chest(state), depth - 1);
+                if (mode.isEasy()) {
+                    return 1 + kept;
+                }
+                double broke = arrive(gold, kit & ~needed, chest(state), depth - 1);
+                double breakChance = rules.getItemBreakChance();
+                return 1 + (1 - breakChance) * kept + breakChance * broke;
+            }
+            default:
+                return Double.NaN;
+        }
+    }
+
+    /**
+     * Averages over every town the hunter could walk into.
+     */
+    private double arrive(int gold, int kit, int chest, int depth) {
+        double toughness = rules.getToughness(mode);
+        double sum = 0;
+        for (int terrain = 0; terrain < Terrain.count(); terrain++) {
+            int weight = rules.getTerrainWeight(terrain);
+            if (weight != 0) {
+                long town = pack(gold, kit, chest, terrain);
+                sum += weight * (toughness * value(town | TOUGH, depth) + (1 - toughness) * value(town, depth));
+            }
+        }
+        return sum / rules.getTotalTerrainWeight();
+    }
+
+    /**
+     * Guesses the turns left from a position without looking any further ahead: the towns it takes to come across
+     * the missing treasures, plus the turns it takes to raise the gold for the items those towns will need. Digging
+     * once in every town pays for most of that, so a hunter without a shovel is also costed as buying one now.
+     */
+    private double estimate(long state) {
+        int missing = 3 - Integer.bitCount(chest(state));
+        double turns = 0;
+        double towns = 0;
+        for (int left = missing; left > 0; left--) {
+            // a town holds any one of the missing treasures with left times the chance of holding one of them
+            towns += townsPerTreasure / left;
+        }
+        if ((state & SEARCHED) == 0) {
+            // this town is the first of them, and only needs searching
+            towns--;
+            turns++;
+        }
+        int kit = kit(state);
+        double goldNeeded = towns * (mode.isEasy() ? 0 : rules.getItemBreakChance() * averageCrossingCost);
+        int needed = neededBits[terrain(state)];
+        if ((kit & needed) == 0) {
+            turns++;
+            goldNeeded += costs[Integer.numberOfTrailingZeros(needed)];
+        }
+        int gold = gold(state);
+        double withoutDigging = turns + towns * TURNS_PER_TOWN + Math.max(0, goldNeeded - gold) * turnsPerGold;
+        // dig in every town from now on, here too if nobody has yet
+        double digs = towns + ((state & DUG) == 0 ? 1 : 0);
+        int shovelCost = (kit & ItemType.SHOVEL.getBit()) != 0 ? 0 : costs[ItemType.SHOVEL.ordinal()];
+        double withDigging = turns + (shovelCost > 0 ? 1 : 0) + towns * TURNS_PER_TOWN + digs
+                + Math.max(0, goldNeeded + shovelCost - digs * goldPerDig - gold) * turnsPerGold;
+        // a hunter short of gold may have to brawl for it and go broke; the odds shrink with every coin in hand
+        double ruin = (1 - Math.pow(1 - ruinPerTown, towns + 1)) * Math.exp(-gold / ruinGoldScale);
+        return Math.min(withoutDigging, withDigging) + LOSS_PENALTY * ruin;
+    }
+
+    private static final class Entry {
+        private final int depth;
+        private final double value;
+
+        Entry(int depth, double value) {
+            this.depth = depth;
+            this.value = value;
+        }
+    }
+}
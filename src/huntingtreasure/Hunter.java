@@ -0,0 +1,293 @@
+package huntingtreasure;
+
+/**
+ * Hunter Class<br /><br />
+ * This class represents the treasure hunter character (the player) in the Treasure Hunt game.
+ * The kit and the chest are each kept as a set of ItemType bits, so checking for, adding or removing an item is a single bit operation.
+ * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!
+ */
+
+public class Hunter {
+    // static variables
+    private static final ItemType[] ITEM_TYPES = ItemType.values();
+
+    //instance variables
+    private String hunterName;
+    private long kit;
+    private long chest;
+    private int gold;
+
+    /**
+     * The base constructor of a Hunter assigns the name to the hunter and an empty kit.
+     *
+     * @param hunterName The hunter's name.
+     * @param startingGold The gold the hunter starts with.
+     */
+    public Hunter(String hunterName, int startingGold) {
+        this.hunterName = hunterName;
+        kit = 0; // one bit per ItemType the hunter carries
+        chest = 0;
+        gold = startingGold;
+    }
+
+    public Hunter(String hunterName) {
+        this.hunterName = hunterName;
+        kit = ItemType.WATER.getBit() | ItemType.ROPE.getBit() | ItemType.MACHETE.getBit() | ItemType.HORSE.getBit()
+                | ItemType.BOAT.getBit() | ItemType.BOOTS.getBit() | ItemType.SHOVEL.getBit();
+        chest = 0;
+        gold = 100;
+    }
+
+    /**
+     * Brings back a hunter from a saved game.
+     *
+     * @param hunterName The hunter's name.
+     * @param gold The gold the hunter had.
+     * @param kit The kit's item bits.
+     * @param chest The chest's treasure bits.
+     */
+    Hunter(String hunterName, int gold, long kit, long chest) {
+        this.hunterName = hunterName;
+        this.gold = gold;
+        this.kit = kit;
+        this.chest = chest;
+    }
+
+    //Accessor
+    public String getHunterName() {
+        return hunterName;
+    }
+
+    /**
+     * @return The names of the items in the kit.
+     */
+    public String[] getKit() { return toNames(kit); }
+
+    public long getKitBits() { return kit; }
+
+    public long getChestBits() { return chest; }
+
+    public boolean Search(String treasure, Town town){
+        return Search(ItemType.fromName(treasure), town);
+    }
+
+    public boolean Search(ItemType treasure, Town town){
+        if (treasure == null || !treasure.isTreasure()) {
+            // nothing has been claimed yet, so a name that isn't a treasure leaves the town as it was
+            town.setLatestNews("There's no such treasure to hunt for.");
+            return false;
+        }
+        if (treasure == ItemType.DUST) {
+            town.setSearched();
+            town.setLatestNews("You found dust.\nIt's not added to your chest.");
+            return false;
+        }else{
+            if (town.getSearchedHere()){
+                town.setLatestNews("You already searched this town.");
+            }else if (!town.claimTreasure()){
+                town.setLatestNews("Another hunter got here first and took the " + treasure.getName() + ".");
+            }else{
+                String news = "You found a " + treasure.getName() + "!";
+                if (hasItemInChest(treasure)){
+                    news += "\nYou already have this in your chest.";
+                }else{
+                    chest |= treasure.getBit();
+                    if ((chest & ItemType.WINNING_CHEST) == ItemType.WINNING_CHEST){
+                        town.setLatestNews(news);
+                        return true;
+                    }else{
+                        news += "\nIt's added to your chest.";
+                    }
+                }
+                town.setLatestNews(news);
+            }
+        }
+        return false;
+    }
+    /**
+     * Updates the amount of gold the hunter has.
+     *
+     * @param modifier Amount to modify gold by.
+     */
+    public void changeGold(int modifier) {
+        gold += modifier;
+    }
+
+    public int getGold() {
+        return gold;
+    }
+
+
+
+
+    public boolean isZero(){
+        if(gold == 0){
+            return true;
+        }
+        else{
+            return false;
+        }
+    }
+
+    /**
+     * Buys an item from a shop.
+     *
+     * @param item The item the hunter is buying.
+     * @param costOfItem The cost of the item.
+     * @return true if the item is successfully bought.
+     */
+    public boolean buyItem(String item, int costOfItem) {
+        ItemType type = ItemType.fromName(item);
+        return type != null && buyItem(type, costOfItem);
+    }
+
+    public boolean buyItem(ItemType item, int costOfItem) {
+        if ((costOfItem == 0 && item != ItemType.SWORD) || (gold < costOfItem || hasItemInKit(item))) {
+
+            return false;
+        }
+        if(!hasItemInKit(ItemType.SWORD)){
+            gold -= costOfItem;
+        }
+        kit |= item.getBit();
+        return true;
+    }
+
+    /**
+     * The Hunter is selling an item to a shop for gold.<p>
+     * This method checks to make sure that the seller has the item and that the seller is getting more than 0 gold.
+     *
+     * @param item The item being sold.
+     * @param buyBackPrice the amount of gold earned from selling the item
+     * @return true if the item was successfully sold.
+     */
+    public boolean sellItem(String item, int buyBackPrice) {
+        ItemType type = ItemType.fromName(item);
+        return type != null && sellItem(type, buyBackPrice);
+    }
+
+    public boolean sellItem(ItemType item, int buyBackPrice) {
+        if (buyBackPrice <= 0 || !hasItemInKit(item)) {
+            return false;
+        }
+        gold += buyBackPrice;
+        removeItemFromKit(item);
+        return true;
+    }
+
+    /**
+     * Removes an item from the kit by clearing its bit.
+     *
+     * @param item The item to be removed.
+     */
+    public void removeItemFromKit(String item) {
+        ItemType type = ItemType.fromName(item);
+        if (type != null) {
+            removeItemFromKit(type);
+        }
+    }
+
+    public void removeItemFromKit(ItemType item) {
+        kit &= ~item.getBit();
+    }
+
+    /**
+     * Checks if the kit has the specified item.
+     *
+     * @param item The search item
+     * @return true if the item is found.
+     */
+    public boolean hasItemInKit(String item) {
+        ItemType type = ItemType.fromName(item);
+        return type != null && hasItemInKit(type);
+    }
+
+    public boolean hasItemInKit(ItemType item) {
+        return (kit & item.getBit()) != 0;
+    }
+
+    public boolean hasItemInChest(String item) {
+        ItemType type = ItemType.fromName(item);
+        return type != null && hasItemInChest(type);
+    }
+
+    public boolean hasItemInChest(ItemType item) {
+        return (chest & item.getBit()) != 0;
+    }
+
+     /**
+     * Returns a printable representation of the inventory, which
+     * is a list of the items in kit, with a space between each item.
+     *
+     * @return The printable String representation of the inventory.
+     */
+    public String getInventory(String[] list) {
+        StringBuilder printableList = new StringBuilder();
+        for (String item : list) {
+            if (item != null) {
+                printableList.append(Colors.PURPLE).append(item).append(Colors.RESET).append(' ');
+            }
+        }
+        return printableList.toString();
+    }
+
+    /**
+     * Adds the printable list of a set of items to a StringBuilder, without building any Strings along the way.
+     *
+     * @param str Where the list is written.
+     * @param items The item bits to list.
+     */
+    public static void appendInventory(StringBuilder str, long items) {
+        for (ItemType type : ITEM_TYPES) {
+            if ((items & type.getBit()) != 0) {
+                str.append(Colors.PURPLE).append(type.getName()).append(Colors.RESET).append(' ');
+            }
+        }
+    }
+
+    /**
+     * @return A string representation of the hunter.
+     */
+    public String infoString() {
+        StringBuilder str = new StringBuilder();
+        appendInfo(str);
+        return str.toString();
+    }
+
+    /**
+     * Writes the same text as infoString() into a StringBuilder the caller keeps reusing.
+     *
+     * @param str Where the hunter's information is written.
+     */
+    public void appendInfo(StringBuilder str) {
+        str.append(hunterName).append(" has ").append(Colors.YELLOW).append(gold).append(Colors.RESET).append(" gold");
+        if (kit != 0) {
+            str.append("\nKit: ");
+            appendInventory(str, kit);
+        }
+        str.append("\nTreasure found: ");
+        if (chest != 0){
+            str.append(" a ");
+            appendInventory(str, chest);
+        }else{
+            str.append(" none ");
+        }
+    }
+
+    /**
+     * Turns a set of item bits back into the names of the items, in ItemType order.
+     *
+     * @param items The item bits.
+     * @return The names of the items.
+     */
+    private static String[] toNames(long items) {
+        String[] names = new String[Long.bitCount(items)];
+        int idx = 0;
+        for (ItemType type : ITEM_TYPES) {
+            if ((items & type.getBit()) != 0) {
+                names[idx++] = type.getName();
+            }
+        }
+        return names;
+    }
+}
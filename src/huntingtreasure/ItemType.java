@@ -0,0 +1,74 @@
+package huntingtreasure;
+
+/**
+ * The ItemType enum lists everything a Hunter can carry: the items that go in the kit and the treasures that go in the chest.<p>
+ * Each type owns one bit, so a whole kit or chest fits in a single long and checking for an item is one bit test.
+ */
+
+public enum ItemType {
+    WATER("water", false),
+    ROPE("rope", false),
+    MACHETE("machete", false),
+    HORSE("horse", false),
+    BOAT("boat", false),
+    BOOTS("boots", false),
+    SHOVEL("shovel", false),
+    SWORD("sword", false),
+    CROWN("crown", true),
+    TROPHY("trophy", true),
+    GEM("gem", true),
+    DUST("dust", true);
+
+    /**
+     * The chest a Hunter needs in order to win: a crown, a trophy and a gem.
+     */
+    public static final long WINNING_CHEST = CROWN.bit | TROPHY.bit | GEM.bit;
+
+    // instance variables
+    private final String name;
+    private final boolean treasure;
+    private final long bit;
+
+    ItemType(String name, boolean treasure) {
+        this.name = name;
+        this.treasure = treasure;
+        this.bit = 1L << ordinal();
+    }
+
+    // accessors
+    public String getName() {
+        return name;
+    }
+
+    public boolean isTreasure() {
+        return treasure;
+    }
+
+    public long getBit() {
+        return bit;
+    }
+
+    /**
+     * Finds the type that goes by a name.
+     *
+     * @param name The name of the item, in lower case.
+     * @return The matching type, or null if there is no such item.
+     */
+    public static ItemType fromName(String name) {
+        switch (name) {
+            case "water": return WATER;
+            case "rope": return ROPE;
+            case "machete": return MACHETE;
+            case "horse": return HORSE;
+            case "boat": return BOAT;
+            case "boots": return BOOTS;
+            case "shovel": return SHOVEL;
+            case "sword": return SWORD;
+            case "crown": return CROWN;
+            case "trophy": return TROPHY;
+            case "gem": return GEM;
+            case "dust": return DUST;
+            default: return null;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package huntingtreasure;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The JournalReplayer rebuilds sessions from an EventJournal's segment files.<p>
+ * Each segment is memory-mapped and its fixed-width records are read straight out of the mapping,
+ * so replaying costs a few field reads per event and no per-event objects.<p>
+ * Every record holds the whole of the hunter and the town after its turn, so a session stands as its latest record
+ * says. A record whose sequence number isn't past the session's last one was played from an older GameToken, sent
+ * again or gone back to: it replaces the turns from that number on, which are no longer part of the session's history.
+ */
+
+public class JournalReplayer {
+    // static variables
+    private static final GameMode[] MODES = GameMode.values();
+    private static final TurnResult.Status[] STATUSES = TurnResult.Status.values();
+    private static final ItemType[] ITEM_TYPES = ItemType.values();
+
+    /**
+     * The state of one session as rebuilt from its events.
+     */
+    public static class SessionState {
+        private final long sessionId;
+        private int events;
+        private int lastSequence;
+        private byte mode;
+        private byte status;
+        private int gold;
+        private long kit;
+        private long chest;
+        private byte terrain;
+        private byte treasure;
+        private byte townFlags;
+
+        SessionState(long sessionId) {
+            this.sessionId = sessionId;
+            lastSequence = -1;
+        }
+
+        /**
+         * Applies one event to the state.
+         *
+         * @param record The journal, positioned at the start of a record.
+         * @param offset Where the record starts.
+         */
+        void apply(ByteBuffer record, int offset) {
+            int sequence = record.getInt(offset + 8);
+            if (events > 0 && sequence <= lastSequence) {
+                // a turn played again from an older token: what came after it is a branch that was left behind
+                events -= lastSequence - sequence;
+            } else {
+                events++;
+            }
+            lastSequence = sequence;
+            // the gold after the turn, not the change, so a turn that was played twice isn't counted twice
+            gold = record.getInt(offset + 20);
+            mode = record.get(offset + 14);
+            status = record.get(offset + 15);
+            kit = record.getShort(offset + 24) & 0xFFFFL;
+            chest = record.getShort(offset + 26) & 0xFFFFL;
+            terrain = record.get(offset + 28);
+            treasure = record.get(offset + 29);
+            townFlags = record.get(offset + 30);
+        }
+
+        // accessors
+        public long getSessionId() {
+            return sessionId;
+        }
+
+        /**
+         * @return The number of records in the session's history as it stands, leaving out turns a later record
+         * replaced.
+         */
+        public int getEventCount() {
+            return events;
+        }
+
+        /**
+         * @return The sequence number of the session's latest record, to resume() its journal session with one more.
+         */
+        public int getLastSequence() {
+            return lastSequence;
+        }
+
+        public GameMode getMode() {
+            return MODES[mode];
+        }
+
+        public TurnResult.Status getStatus() {
+            return STATUSES[status];
+        }
+
+        public int getGold() {
+            return gold;
+        }
+
+        public long getKitBits() {
+            return kit;
+        }
+
+        public long getChestBits() {
+            return chest;
+        }
+
+        public Terrain getTerrain() {
+            return Terrain.get(terrain);
+        }
+
+        public ItemType getTreasure() {
+            return ITEM_TYPES[treasure];
+        }
+
+        /**
+         * Turns the rebuilt state back into a game that can carry on being played.
+         * The journal doesn't keep names, so the caller supplies it.
+         *
+         * @param hunterName The hunter's name.
+         * @param random Where the game's rolls come from from now on.
+         * @return The game.
+         */
+        public GameEngine toGame(String hunterName, RandomSource random) {
+            return SessionCodec.rebuild(getMode(), getStatus(), hunterName, gold, kit, chest, terrain, getTreasure(),
+                    townFlags, Rules.current(), random);
+        }
+    }
+
+    // instance variables
+    private final Path directory;
+
+    /**
+     * @param directory The journal's directory.
+     */
+    public JournalReplayer(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Rebuilds every session in the journal.
+     *
+     * @return The sessions, by id.
+     * @throws IOException if a segment can't be read.
+     */
+    public Map<Long, SessionState> replayAll() throws IOException {
+        Map<Long, SessionState> sessions = new HashMap<>();
+        SessionState last = null;
+        for (Path path : EventJournal.segments(directory)) {
+            MappedByteBuffer segment = map(path);
+            int end = segment.limit() - segment.limit() % EventJournal.RECORD_BYTES;
+            for (int offset = 0; offset < end; offset += EventJournal.RECORD_BYTES) {
+                long sessionId = segment.getLong(offset);
+                // a session's turns tend to come in runs, so try the last one before the map
+                if (last == null || last.sessionId != sessionId) {
+                    last = sessions.computeIfAbsent(sessionId, SessionState::new);
+                }
+                last.apply(segment, offset);
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Rebuilds one session, skipping every other session's events.
+     *
+     * @param sessionId The session to rebuild.
+     * @return The session, or null if the journal has no events for it.
+     * @throws IOException if a segment can't be read.
+     */
+    public SessionState replay(long sessionId) throws IOException {
+        SessionState state = new SessionState(sessionId);
+        for (Path path : EventJournal.segments(directory)) {
+            MappedByteBuffer segment = map(path);
+            int end = segment.limit() - segment.limit() % EventJournal.RECORD_BYTES;
+            for (int offset = 0; offset < end; offset += EventJournal.RECORD_BYTES) {
+                if (segment.getLong(offset) == sessionId) {
+                    state.apply(segment, offset);
+                }
+            }
+        }
+        return state.events == 0 ? null : state;
+    }
+
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package huntingtreasure;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A KllSketch keeps a summary of a stream of whole numbers that can answer "what value is the median, or the 99th
+ * percentile" to within about 1.7/k of the right rank, however long the stream. It is the KLL sketch of Karnin,
+ * Lang and Liberty.<p>
+ * Values go into the lowest of a stack of levels. When a level fills up it is sorted and every other value moves up
+ * one level, where each value stands for twice as many; which half moves is a coin toss. The top level holds k values
+ * and each level below holds about two thirds of the one above, so the whole sketch stays at a few times k values
+ * whether it has seen a thousand values or a trillion.<p>
+ * Two sketches of the same k merge into one that summarizes both streams as well as either did. The count, sum,
+ * smallest and largest value are kept exactly. A sketch is not thread-safe; give each thread its own and merge them.
+ */
+
+public class KllSketch {
+    // constants
+    public static final int DEFAULT_K = 200;
+    private static final int MIN_LEVEL_CAPACITY = 8;
+    private static final double LEVEL_SHRINK = 2.0 / 3.0;
+
+    // instance variables
+    private final int k;
+    private long[][] levels;
+    private int[] sizes;
+    private int[] capacities;
+    private int levelCount;
+    private long count;
+    private long sum;
+    private long min;
+    private long max;
+    private long coins;
+
+    /**
+     * Creates an empty sketch with the default accuracy.
+     */
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param k How many values the top level holds; the rank error is about 1.7/k.
+     */
+    public KllSketch(int k) {
+        if (k < MIN_LEVEL_CAPACITY) {
+            throw new IllegalArgumentException("k must be at least " + MIN_LEVEL_CAPACITY + ", not " + k);
+        }
+        this.k = k;
+        levels = new long[][] {new long[k]};
+        sizes = new int[1];
+        capacities = new int[] {k};
+        levelCount = 1;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+        coins = 0x9E3779B97F4A7C15L;
+    }
+
+    // accessors
+    public int getK() {
+        return k;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * @return The smallest value seen, or 0 if there were none.
+     */
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * @return The largest value seen, or 0 if there were none.
+     */
+    public long getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * @return How many values the sketch is holding on to.
+     */
+    public int getRetained() {
+        int retained = 0;
+        for (int level = 0; level < levelCount; level++) {
+            retained += sizes[level];
+        }
+        return retained;
+    }
+
+    /**
+     * Adds one value to the stream.
+     *
+     * @param value The value.
+     */
+    public void update(long value) {
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        levels[0][sizes[0]++] = value;
+        if (sizes[0] >= capacities[0]) {
+            compress();
+        }
+    }
+
+    /**
+     * Adds another sketch's stream into this one. The other sketch is left as it was.
+     *
+     * @param other A sketch with the same k.
+     * @throws IllegalArgumentException if the sketches have different k.
+     */
+    public void merge(KllSketch other) {
+        if (other.k != k) {
+            throw new IllegalArgumentException("Can't merge a sketch with k " + other.k + " into one with k " + k);
+        }
+        if (other.count == 0) {
+            return;
+        }
+        while (levelCount < other.levelCount) {
+            addLevel();
+        }
+        for (int level = 0; level < other.levelCount; level++) {
+            append(level, other.levels[level], other.sizes[level]);
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        compress();
+    }
+
+    /**
+     * Estimates the value at a rank.
+     *
+     * @param fraction Between 0 and 1, such as 0.5 for the median or 0.99 for the 99th percentile.
+     * @return The smallest retained value with at least that fraction of the stream at or below it, or 0 if empty.
+     */
+    public long getQuantile(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        if (fraction <= 0) {
+            return min;
+        }
+        if (fraction >= 1) {
+            return max;
+        }
+        int retained = getRetained();
+        long[] values = new long[retained];
+        long[] weights = new long[retained];
+        long total = 0;
+        int n = 0;
+        for (int level = 0; level < levelCount; level++) {
+            for (int i = 0; i < sizes[level]; i++) {
+                values[n] = levels[level][i];
+                weights[n++] = 1L << level;
+            }
+            total += (long) sizes[level] << level;
+        }
+        sortTogether(values, weights);
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < n; i++) {
+            seen += weights[i];
+            if (seen >= rank) {
+                return values[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Writes the sketch in a form read() reads back.
+     *
+     * @param out Where it is written.
+     * @throws IOException if the write fails.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(k);
+        out.writeLong(count);
+        out.writeLong(sum);
+        out.writeLong(min);
+        out.writeLong(max);
+        out.writeByte(levelCount);
+        for (int level = 0; level < levelCount; level++) {
+            out.writeInt(sizes[level]);
+            for (int i = 0; i < sizes[level]; i++) {
+                out.writeLong(levels[level][i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a sketch that write() wrote.
+     *
+     * @param in Where it is read from.
+     * @return The sketch.
+     * @throws IOException if the read fails or the bytes aren't a sketch.
+     */
+    public static KllSketch read(DataInput in) throws IOException {
+        KllSketch sketch;
+        try {
+            sketch = new KllSketch(in.readInt());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Not a sketch: " + e.getMessage());
+        }
+        sketch.count = in.readLong();
+        sketch.sum = in.readLong();
+        sketch.min = in.readLong();
+        sketch.max = in.readLong();
+        int levelCount = in.readUnsignedByte();
+        for (int level = 0; level < levelCount; level++) {
+            if (level > 0) {
+                sketch.addLevel();
+            }
+            int size = in.readInt();
+            if (size < 0 || size > sketch.k * 2) {
+                throw new IOException("Not a sketch: a level holds " + size + " values");
+            }
+            long[] values = new long[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = in.readLong();
+            }
+            sketch.append(level, values, size);
+        }
+        return sketch;
+    }
+
+    /**
+     * Adds an empty level on top. Every level below is one further from the top now, so each may hold fewer values:
+     * the top level holds k, and each one down holds two thirds as many.
+     */
+    private void addLevel() {
+        if (levelCount == levels.length) {
+            levels = Arrays.copyOf(levels, levelCount * 2);
+            sizes = Arrays.copyOf(sizes, levelCount * 2);
+            capacities = Arrays.copyOf(capacities, levelCount * 2);
+        }
+        levels[levelCount] = new long[MIN_LEVEL_CAPACITY];
+        sizes[levelCount] = 0;
+        levelCount++;
+        for (int level = 0; level < levelCount; level++) {
+            int depth = levelCount - 1 - level;
+            capacities[level] = Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(LEVEL_SHRINK, depth)));
+        }
+    }
+
+    private void append(int level, long[] values, int length) {
+        int size = sizes[level];
+        if (size + length > levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(size + length, levels[level].length * 2));
+        }
+        System.arraycopy(values, 0, levels[level], size, length);
+        sizes[level] = size + length;
+    }
+
+    /**
+     * Compacts every level that is over its capacity, from the bottom up, adding a level on top when the top one is full.
+     */
+    private void compress() {
+        for (int level = 0; level < levelCount; level++) {
+            if (sizes[level] >= capacities[level]) {
+                if (level + 1 == levelCount) {
+                    addLevel();
+                }
+                compact(level);
+            }
+        }
+    }
+
+    /**
+     * Sorts a level and moves every other value up a level, where it counts double.
+     * With an odd number of values the smallest stays behind, so that the weights still add up to the count.
+     */
+    private void compact(int level) {
+        long[] values = levels[level];
+        int size = sizes[level];
+        Arrays.sort(values, 0, size);
+        int kept = size & 1;
+        int pairs = size >>> 1;
+        int offset = nextCoin();
+        long[] promoted = new long[pairs];
+        for (int i = 0; i < pairs; i++) {
+            promoted[i] = values[kept + 2 * i + offset];
+        }
+        sizes[level] = kept;
+        append(level + 1, promoted, pairs);
+    }
+
+    private int nextCoin() {
+        // xorshift: cheap, and the same stream of values always makes the same sketch
+        coins ^= coins << 13;
+        coins ^= coins >>> 7;
+        coins ^= coins << 17;
+        return (int) (coins >>> 63);
+    }
+
+    /**
+     * Sorts the values, keeping each weight with its value.
+     */
+    private static void sortTogether(long[] values, long[] weights) {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(values[a], values[b]));
+        long[] sortedValues = new long[values.length];
+        long[] sortedWeights = new long[values.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedValues[i] = values[order[i]];
+            sortedWeights[i] = weights[order[i]];
+        }
+        System.arraycopy(sortedValues, 0, values, 0, values.length);
+        System.arraycopy(sortedWeights, 0, weights, 0, weights.length);
+    }
+}
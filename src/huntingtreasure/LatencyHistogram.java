@@ -0,0 +1,129 @@
+package huntingtreasure;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The LatencyHistogram class counts how long something took, in nanoseconds, in log-linear buckets.<p>
+ * Like HdrHistogram, each power of two is split into SUB_BUCKETS equal buckets, so every recorded value is kept to within
+ * about 3% whatever its size, and the whole range of a long fits in a couple of thousand counters.<p>
+ * Recording is one atomic increment and never blocks, so any number of threads can share a histogram.
+ * Reads walk the counters without stopping the writers, so a percentile may miss the values recorded while it was read.
+ */
+
+public class LatencyHistogram implements LatencyHistogramMBean {
+    // constants
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = indexOf(Long.MAX_VALUE) + 1;
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    // instance variables
+    private final AtomicLongArray counts;
+    private final LongAdder total;
+    private final LongAccumulator max;
+
+    /**
+     * Creates an empty histogram.
+     */
+    public LatencyHistogram() {
+        counts = new AtomicLongArray(BUCKETS);
+        total = new LongAdder();
+        max = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * Counts one measurement.
+     *
+     * @param nanos How long it took; negative values are counted as zero.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return How many measurements have been recorded.
+     */
+    @Override
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Works out the value that a given fraction of the measurements were at or under.
+     *
+     * @param fraction Between 0 and 1, such as 0.99 for the 99th percentile.
+     * @return The top of the bucket holding that measurement, in nanoseconds, or 0 if nothing has been recorded.
+     */
+    public long getPercentile(double fraction) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueAt(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long count = getCount();
+        return count == 0 ? 0 : total.sum() / NANOS_PER_MICRO / count;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return getPercentile(0.50) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP90Micros() {
+        return getPercentile(0.90) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return getPercentile(0.99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return getPercentile(0.999) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return max.get() / NANOS_PER_MICRO;
+    }
+
+    /**
+     * Values under 2 * SUB_BUCKETS get a bucket each; above that, a value keeps only its top SUB_BUCKET_BITS + 1 bits.
+     */
+    static int indexOf(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return SUB_BUCKETS * shift + (int) (value >>> shift);
+    }
+
+    static long highestValueAt(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long top = index - (long) SUB_BUCKETS * shift;
+        return ((top + 1) << shift) - 1;
+    }
+}
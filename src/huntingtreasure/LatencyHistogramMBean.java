@@ -0,0 +1,21 @@
+package huntingtreasure;
+
+/**
+ * What JMX shows of a LatencyHistogram. All times are in microseconds.
+ */
+
+public interface LatencyHistogramMBean {
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
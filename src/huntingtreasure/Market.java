@@ -0,0 +1,139 @@
+package huntingtreasure;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Market lets the prices in every Shop float with what the players are buying and selling.<p>
+ * Each purchase and sale is counted in a LongAdder, so thousands of shoppers can trade at once without fighting over a
+ * counter. Every tick a background thread takes the counts and nudges each item's price by how lopsided its trade was:
+ * more buying than selling pushes the price up, more selling pushes it down, and every tick it drifts a little back
+ * towards the list price, so a quiet item ends up at its list price again. Prices stay within MIN_FACTOR and MAX_FACTOR
+ * of the list price.<p>
+ * The market only keeps the factor each item's price is moved by, not the prices themselves: every shop applies the
+ * factors to the list prices of its own Rules, so games still playing under older rules, or under a tuner's rules, are
+ * charged from their own list, and one market serves them all.<p>
+ * The factors are published as an immutable Prices snapshot through a volatile field, so reading a price is one
+ * volatile read, an array lookup and a multiplication: it never waits and never allocates, however many shoppers are
+ * reading.
+ */
+
+public class Market implements Closeable {
+    // constants
+    static final double MIN_FACTOR = 0.5;
+    static final double MAX_FACTOR = 2.0;
+    private static final double STEP = 0.05;
+    private static final double REVERSION = 0.05;
+    private static final double LIQUIDITY = 8;
+
+    // instance variables
+    private final LongAdder[] purchases;
+    private final LongAdder[] sales;
+    private final double[] logFactors;
+    private final long tickMillis;
+    private final ScheduledExecutorService ticker;
+    private volatile Prices prices;
+
+    /**
+     * Opens a market at the list prices. The prices stay there until start() is called.
+     *
+     * @param tickMillis How often the prices are worked out again.
+     */
+    public Market(long tickMillis) {
+        this.tickMillis = tickMillis;
+        int items = ItemType.values().length;
+        purchases = new LongAdder[items];
+        sales = new LongAdder[items];
+        for (int i = 0; i < items; i++) {
+            purchases[i] = new LongAdder();
+            sales[i] = new LongAdder();
+        }
+        logFactors = new double[items];
+        double[] factors = new double[items];
+        Arrays.fill(factors, 1);
+        prices = new Prices(factors);
+        ticker = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("market-ticker").daemon().factory());
+    }
+
+    /**
+     * Starts the ticker. It is kept out of the constructor so the ticker never sees a market that isn't fully built.
+     */
+    public void start() {
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return The prices right now. They never change; the market publishes new ones instead.
+     */
+    public Prices getPrices() {
+        return prices;
+    }
+
+    public void recordPurchase(ItemType item) {
+        purchases[item.ordinal()].increment();
+    }
+
+    public void recordSale(ItemType item) {
+        sales[item.ordinal()].increment();
+    }
+
+    /**
+     * Stops the ticker; the prices stay where they are.
+     */
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+
+    /**
+     * Takes the trades since the last tick and publishes new prices.
+     * Only the ticker thread calls this, so the price factors need no locking.
+     */
+    void tick() {
+        double[] factors = new double[logFactors.length];
+        for (int i = 0; i < logFactors.length; i++) {
+            double bought = purchases[i].sumThenReset();
+            double sold = sales[i].sumThenReset();
+            // LIQUIDITY trades a tick are taken in stride, so a handful of trades barely move the price
+            double imbalance = (bought - sold) / (bought + sold + LIQUIDITY);
+            logFactors[i] = Math.clamp((1 - REVERSION) * logFactors[i] + STEP * imbalance,
+                    Math.log(MIN_FACTOR), Math.log(MAX_FACTOR));
+            factors[i] = Math.exp(logFactors[i]);
+        }
+        prices = new Prices(factors);
+    }
+
+    /**
+     * One tick's prices.
+     */
+    public static final class Prices {
+        private final double[] factors;
+
+        Prices(double[] factors) {
+            this.factors = factors;
+        }
+
+        /**
+         * @param item An item.
+         * @param listPrice What the shop's rules list it at.
+         * @return Its price, or 0 if the shop doesn't sell it.
+         */
+        public int getBuyPrice(ItemType item, int listPrice) {
+            return listPrice == 0 ? 0 : Math.max(1, (int) Math.round(listPrice * factors[item.ordinal()]));
+        }
+
+        /**
+         * @param item An item.
+         * @param listPrice What the shop's rules list it at.
+         * @param markdown The share of the price a shop pays back.
+         * @return What a shop with that markdown pays for it.
+         */
+        public int getSellPrice(ItemType item, int listPrice, double markdown) {
+            return (int) (getBuyPrice(item, listPrice) * markdown);
+        }
+    }
+}
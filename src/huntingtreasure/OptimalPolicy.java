@@ -0,0 +1,34 @@
+package huntingtreasure;
+
+/**
+ * The OptimalPolicy plays whatever a solved StrategySolver says is best, one table lookup per turn.<p>
+ * Running it through the Simulator checks the solver against the real game.
+ */
+
+public class OptimalPolicy implements Policy {
+    // instance variables
+    private final StrategySolver solver;
+
+    /**
+     * @param solver A solver that has already been solved, for the mode the games are played in.
+     */
+    public OptimalPolicy(StrategySolver solver) {
+        this.solver = solver;
+    }
+
+    /**
+     * Picks the next command for the hunter and carries it out on the game.
+     *
+     * @param game The game being played.
+     * @return What happened on the turn.
+     */
+    @Override
+    public TurnResult playTurn(GameEngine game) {
+        int action = solver.getAction(solver.stateOf(game));
+        ItemType item = StrategySolver.itemOf(action);
+        if (item != null) {
+            return game.execute(StrategySolver.commandOf(action), item);
+        }
+        return game.execute(StrategySolver.commandOf(action));
+    }
+}
@@ -0,0 +1,235 @@
+package huntingtreasure;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * The OutcomeSketches class keeps the spread of simulated games' outcomes, not just their averages: how many turns
+ * a win took, how much gold a hunter ended with, how much they lost brawling and how many items broke under them, each
+ * in a KllSketch, so a report can give percentiles in the same few kilobytes however many games are played.<p>
+ * It also counts which treasure held each game up: the one found last in a game that was won, and the ones still
+ * missing from the chest of a game that wasn't. There are only ever three treasures, so these are exact counts.<p>
+ * Like SimulationStats, each simulator thread fills in its own and they are merged at the end, with no locking.
+ * A summary can be written out as CSV for a spreadsheet or in a compact binary form that read() turns back into
+ * sketches, so that summaries of separate runs can be merged later.
+ */
+
+public class OutcomeSketches {
+    // constants
+    private static final int MAGIC = 0x54485331;
+    private static final double[] QUANTILES = {0.01, 0.05, 0.25, 0.5, 0.75, 0.95, 0.99};
+    private static final String[] NAMES = {"turns_to_win", "final_gold", "gold_lost_brawling", "items_broken"};
+    private static final ItemType[] TREASURES = {ItemType.CROWN, ItemType.TROPHY, ItemType.GEM};
+
+    // instance variables
+    private final KllSketch[] sketches;
+    private final long[] foundLast;
+    private final long[] stillMissing;
+
+    /**
+     * Creates an empty set of sketches.
+     */
+    public OutcomeSketches() {
+        sketches = new KllSketch[NAMES.length];
+        for (int i = 0; i < sketches.length; i++) {
+            sketches[i] = new KllSketch();
+        }
+        foundLast = new long[TREASURES.length];
+        stillMissing = new long[TREASURES.length];
+    }
+
+    /**
+     * Records one finished game.
+     *
+     * @param status Where the game stood when it stopped.
+     * @param turns How many turns were played.
+     * @param finalGold The hunter's gold at the end.
+     * @param goldLostBrawling The gold the hunter paid out for brawls they lost.
+     * @param itemsBroken How many items broke while the hunter was leaving town.
+     * @param lastTreasure The treasure the hunter found last, or null if they found none.
+     * @param chest The hunter's chest bits at the end.
+     */
+    public void recordGame(TurnResult.Status status, int turns, int finalGold, long goldLostBrawling, int itemsBroken,
+                           ItemType lastTreasure, long chest) {
+        if (status == TurnResult.Status.WON) {
+            sketches[0].update(turns);
+            for (int i = 0; i < TREASURES.length; i++) {
+                if (TREASURES[i] == lastTreasure) {
+                    foundLast[i]++;
+                }
+            }
+        } else {
+            for (int i = 0; i < TREASURES.length; i++) {
+                if ((chest & TREASURES[i].getBit()) == 0) {
+                    stillMissing[i]++;
+                }
+            }
+        }
+        sketches[1].update(finalGold);
+        sketches[2].update(goldLostBrawling);
+        sketches[3].update(itemsBroken);
+    }
+
+    /**
+     * Adds another set of sketches into this one.
+     *
+     * @param other The sketches to add in.
+     */
+    public void merge(OutcomeSketches other) {
+        for (int i = 0; i < sketches.length; i++) {
+            sketches[i].merge(other.sketches[i]);
+        }
+        for (int i = 0; i < TREASURES.length; i++) {
+            foundLast[i] += other.foundLast[i];
+            stillMissing[i] += other.stillMissing[i];
+        }
+    }
+
+    // accessors
+    public KllSketch getTurnsToWin() {
+        return sketches[0];
+    }
+
+    public KllSketch getFinalGold() {
+        return sketches[1];
+    }
+
+    public KllSketch getGoldLostBrawling() {
+        return sketches[2];
+    }
+
+    public KllSketch getItemsBroken() {
+        return sketches[3];
+    }
+
+    /**
+     * @return How many won games found this treasure last.
+     */
+    public long getFoundLast(ItemType treasure) {
+        for (int i = 0; i < TREASURES.length; i++) {
+            if (TREASURES[i] == treasure) {
+                return foundLast[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return How many games that weren't won ended without this treasure.
+     */
+    public long getStillMissing(ItemType treasure) {
+        for (int i = 0; i < TREASURES.length; i++) {
+            if (TREASURES[i] == treasure) {
+                return stillMissing[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return A printable report of the percentiles and the treasure counts.
+     */
+    public String report() {
+        StringBuilder str = new StringBuilder();
+        str.append(String.format("%-20s %8s %8s", "Percentiles", "mean", "min"));
+        for (double quantile : QUANTILES) {
+            str.append(String.format(" %6s", "p" + Math.round(quantile * 100)));
+        }
+        str.append(String.format(" %8s%n", "max"));
+        for (int i = 0; i < sketches.length; i++) {
+            KllSketch sketch = sketches[i];
+            str.append(String.format("%-20s %8.2f %8d", NAMES[i], sketch.getMean(), sketch.getMin()));
+            for (double quantile : QUANTILES) {
+                str.append(String.format(" %6d", sketch.getQuantile(quantile)));
+            }
+            str.append(String.format(" %8d%n", sketch.getMax()));
+        }
+        str.append("Found last in a win:");
+        appendShares(str, foundLast);
+        str.append("\nStill missing at the end:");
+        appendShares(str, stillMissing);
+        return str.append('\n').toString();
+    }
+
+    private static void appendShares(StringBuilder str, long[] counts) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        for (int i = 0; i < TREASURES.length; i++) {
+            str.append(String.format(" %s %d (%.1f%%)", TREASURES[i].getName(), counts[i],
+                    total == 0 ? 0 : 100.0 * counts[i] / total));
+        }
+    }
+
+    /**
+     * Writes the summary as CSV: a row per sketch with its count, mean, min, percentiles and max,
+     * then a row per treasure with its counts.
+     *
+     * @param out Where the CSV is written.
+     * @throws IOException if the write fails.
+     */
+    public void writeCsv(Appendable out) throws IOException {
+        out.append("metric,count,mean,min");
+        for (double quantile : QUANTILES) {
+            out.append(",p").append(String.valueOf(Math.round(quantile * 100)));
+        }
+        out.append(",max\n");
+        for (int i = 0; i < sketches.length; i++) {
+            KllSketch sketch = sketches[i];
+            out.append(NAMES[i]).append(',').append(String.valueOf(sketch.getCount()))
+                    .append(',').append(String.format(Locale.ROOT, "%.4f", sketch.getMean()))
+                    .append(',').append(String.valueOf(sketch.getMin()));
+            for (double quantile : QUANTILES) {
+                out.append(',').append(String.valueOf(sketch.getQuantile(quantile)));
+            }
+            out.append(',').append(String.valueOf(sketch.getMax())).append('\n');
+        }
+        out.append("\ntreasure,found_last,still_missing\n");
+        for (int i = 0; i < TREASURES.length; i++) {
+            out.append(TREASURES[i].getName()).append(',').append(String.valueOf(foundLast[i]))
+                    .append(',').append(String.valueOf(stillMissing[i])).append('\n');
+        }
+    }
+
+    /**
+     * Writes the sketches in a form read() reads back.
+     *
+     * @param out Where they are written.
+     * @throws IOException if the write fails.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        for (KllSketch sketch : sketches) {
+            sketch.write(out);
+        }
+        for (int i = 0; i < TREASURES.length; i++) {
+            out.writeLong(foundLast[i]);
+            out.writeLong(stillMissing[i]);
+        }
+    }
+
+    /**
+     * Reads sketches that write() wrote.
+     *
+     * @param in Where they are read from.
+     * @return The sketches.
+     * @throws IOException if the read fails or the bytes aren't outcome sketches.
+     */
+    public static OutcomeSketches read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an outcome summary");
+        }
+        OutcomeSketches outcomes = new OutcomeSketches();
+        for (int i = 0; i < outcomes.sketches.length; i++) {
+            outcomes.sketches[i] = KllSketch.read(in);
+        }
+        for (int i = 0; i < TREASURES.length; i++) {
+            outcomes.foundLast[i] = in.readLong();
+            outcomes.stillMissing[i] = in.readLong();
+        }
+        return outcomes;
+    }
+}
@@ -0,0 +1,16 @@
+package huntingtreasure;
+
+/**
+ * A Policy decides what a scripted player does on each turn of a simulated game.<p>
+ * The Simulator shares one Policy between all of its threads, so implementations should not keep per-game state.
+ */
+
+public interface Policy {
+    /**
+     * Picks the next command for the hunter and carries it out on the game.
+     *
+     * @param game The game being played.
+     * @return What happened on the turn.
+     */
+    TurnResult playTurn(GameEngine game);
+}
@@ -0,0 +1,35 @@
+package huntingtreasure;
+
+/**
+ * A RandomSource supplies the random numbers behind every chance roll in the Treasure Hunter game.<p>
+ * Passing one into the Town (rather than calling Math.random()) lets a game be replayed from its seed,
+ * and lets each simulator thread roll dice without sharing a generator with the others.
+ */
+
+public interface RandomSource {
+    /**
+     * @return a random number from 0 (inclusive) up to 1 (exclusive).
+     */
+    double nextDouble();
+
+    /**
+     * @param bound The upper limit, which must be positive.
+     * @return a random whole number from 0 (inclusive) up to bound (exclusive).
+     */
+    int nextInt(int bound);
+
+    /**
+     * @param seed The seed for the game.
+     * @return a RandomSource that always produces the same rolls for the same seed.
+     */
+    static RandomSource seeded(long seed) {
+        return new SplittableRandomSource(seed);
+    }
+
+    /**
+     * @return an unseeded RandomSource backed by the current thread's generator.
+     */
+    static RandomSource threadLocal() {
+        return ThreadLocalRandomSource.INSTANCE;
+    }
+}
@@ -0,0 +1,27 @@
+package huntingtreasure;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * A CommandInput that reads lines from a BufferedReader.<p>
+ * This is what the console and every connection to the GameServer use.
+ */
+
+public class ReaderInput implements CommandInput {
+    // static variables
+    static final ReaderInput CONSOLE = new ReaderInput(new BufferedReader(new InputStreamReader(System.in)));
+
+    // instance variables
+    private final BufferedReader reader;
+
+    ReaderInput(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        return reader.readLine();
+    }
+}
@@ -0,0 +1,396 @@
+package huntingtreasure;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The Rules class holds the numbers that balance the game: what the items cost, which item crosses each terrain and
+ * how often each terrain and treasure comes up, the odds of brawls, digs and broken items, and each mode's markdown
+ * and toughness.<p>
+ * A rules file is a properties file (see rules.properties for every key and its default); keys it leaves out keep
+ * their defaults. It is compiled once into flat arrays indexed by ItemType, terrain and GameMode ordinals, and the
+ * result never changes. install() swaps a new set in through a single volatile reference.<p>
+ * A game takes the current rules once, when it starts, and its towns and shop read plain fields from them from then on,
+ * so a reload only ever reaches new games and no turn pays for a lookup.<p>
+ * Every roll with more than two outcomes (the terrain, the treasure and the gold from brawls and digs) is made by an
+ * AliasSampler built with the rules, so it costs the same whatever the weights.<p>
+ * The six terrains keep their names and order, so saved games and journals stay readable whatever the rules say.
+ */
+
+public class Rules {
+    // constants
+    private static final ItemType[] ITEM_TYPES = ItemType.values();
+    private static final ItemType[] TREASURES = {ItemType.CROWN, ItemType.TROPHY, ItemType.GEM, ItemType.DUST};
+    private static final Terrain[] DEFAULT_TERRAINS = {Terrain.MOUNTAINS, Terrain.OCEAN, Terrain.PLAINS, Terrain.DESERT,
+            Terrain.JUNGLE, Terrain.MARSH};
+    public static final Rules DEFAULTS = compile(new Properties(), "defaults");
+
+    // static variables
+    private static volatile Rules current = DEFAULTS;
+
+    // instance variables
+    private final String source;
+    private final int[] itemCosts;
+    private final Terrain[] terrains;
+    private final AliasSampler terrainSampler;
+    private final AliasSampler treasureSampler;
+    private final AliasSampler brawlGoldSampler;
+    private final AliasSampler digGoldSampler;
+    private final double toughBrawlChance;
+    private final double easyBrawlChance;
+    private final double brawlChance;
+    private final int maxBrawlGold;
+    private final double dirtChance;
+    private final int maxDigGold;
+    private final double itemBreakChance;
+    private final double[] markdowns;
+    private final double[] toughnesses;
+
+    private Rules(String source, int[] itemCosts, Terrain[] terrains, int[] terrainWeights, int[] treasureWeights,
+                  double toughBrawlChance, double easyBrawlChance, double brawlChance, int maxBrawlGold,
+                  double dirtChance, int maxDigGold, double itemBreakChance, double[] markdowns, double[] toughnesses) {
+        this.source = source;
+        this.itemCosts = itemCosts;
+        this.terrains = terrains;
+        terrainSampler = new AliasSampler(terrainWeights);
+        treasureSampler = new AliasSampler(treasureWeights);
+        this.toughBrawlChance = toughBrawlChance;
+        this.easyBrawlChance = easyBrawlChance;
+        this.brawlChance = brawlChance;
+        this.maxBrawlGold = maxBrawlGold;
+        brawlGoldSampler = AliasSampler.uniform(maxBrawlGold);
+        this.dirtChance = dirtChance;
+        this.maxDigGold = maxDigGold;
+        digGoldSampler = AliasSampler.uniform(maxDigGold);
+        this.itemBreakChance = itemBreakChance;
+        this.markdowns = markdowns;
+        this.toughnesses = toughnesses;
+    }
+
+    /**
+     * @return The rules new games are played by.
+     */
+    public static Rules current() {
+        return current;
+    }
+
+    /**
+     * Makes a set of rules the one new games are played by. Games already going keep the rules they started with.
+     *
+     * @param rules The new rules.
+     */
+    public static void install(Rules rules) {
+        current = rules;
+    }
+
+    /**
+     * Reads and compiles a rules file.
+     *
+     * @param file The file.
+     * @return The rules it describes.
+     * @throws IOException if the file can't be read.
+     * @throws IllegalArgumentException if the file has a key this class doesn't know or a value out of range.
+     */
+    public static Rules load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        }
+        return compile(properties, file.toString());
+    }
+
+    /**
+     * Compiles rules from properties, filling in the defaults for any keys that are missing.
+     *
+     * @param properties The settings.
+     * @param source Where they came from, for messages.
+     * @return The rules.
+     * @throws IllegalArgumentException if there is a key this class doesn't know or a value out of range.
+     */
+    public static Rules compile(Properties properties, String source) {
+        Set<String> unused = new HashSet<>(properties.stringPropertyNames());
+
+        int[] itemCosts = new int[ITEM_TYPES.length];
+        for (ItemType type : ITEM_TYPES) {
+            if (!type.isTreasure()) {
+                itemCosts[type.ordinal()] = readInt(properties, unused, "item." + type.getName() + ".cost",
+                        defaultCost(type), 0, Integer.MAX_VALUE);
+            }
+        }
+
+        Terrain[] terrains = new Terrain[DEFAULT_TERRAINS.length];
+        int[] terrainWeights = new int[DEFAULT_TERRAINS.length];
+        int terrainTotal = 0;
+        for (int i = 0; i < terrains.length; i++) {
+            Terrain terrain = DEFAULT_TERRAINS[i];
+            String prefix = "terrain." + terrain.getTerrainName().toLowerCase(Locale.ROOT);
+            String itemKey = prefix + ".item";
+            unused.remove(itemKey);
+            String item = properties.getProperty(itemKey, terrain.getNeededItem()).trim();
+            ItemType needed = ItemType.fromName(item);
+            if (needed == null || needed.isTreasure()) {
+                throw new IllegalArgumentException(source + ": " + itemKey + " must be an item, not " + item);
+            }
+            terrains[i] = needed == terrain.getNeededItemType() ? terrain : new Terrain(terrain.getTerrainName(), item);
+            terrainWeights[i] = readInt(properties, unused, prefix + ".weight", 1, 0, 1 << 20);
+            terrainTotal += terrainWeights[i];
+        }
+        if (terrainTotal == 0) {
+            throw new IllegalArgumentException(source + ": at least one terrain needs a weight above 0");
+        }
+
+        int[] treasureWeights = new int[TREASURES.length];
+        int treasureTotal = 0;
+        for (int i = 0; i < TREASURES.length; i++) {
+            treasureWeights[i] = readInt(properties, unused, "treasure." + TREASURES[i].getName() + ".weight", 1, 0, 1 << 20);
+            treasureTotal += treasureWeights[i];
+        }
+        if (treasureTotal == 0) {
+            throw new IllegalArgumentException(source + ": at least one treasure needs a weight above 0");
+        }
+
+        double toughBrawlChance = readChance(properties, unused, "brawl.chance.tough", 0.66);
+        double easyBrawlChance = readChance(properties, unused, "brawl.chance.easy", 0.1);
+        double brawlChance = readChance(properties, unused, "brawl.chance", 0.33);
+        int maxBrawlGold = readInt(properties, unused, "brawl.maxGold", 10, 1, 1 << 20);
+        double dirtChance = readChance(properties, unused, "dig.dirtChance", 0.49);
+        int maxDigGold = readInt(properties, unused, "dig.maxGold", 20, 1, 1 << 20);
+        double itemBreakChance = readChance(properties, unused, "item.breakChance", 0.5);
+
+        GameMode[] modes = GameMode.values();
+        double[] markdowns = new double[modes.length];
+        double[] toughnesses = new double[modes.length];
+        for (GameMode mode : modes) {
+            String prefix = "mode." + mode.name().toLowerCase(Locale.ROOT);
+            markdowns[mode.ordinal()] = readChance(properties, unused, prefix + ".markdown", mode.getMarkdown());
+            toughnesses[mode.ordinal()] = readChance(properties, unused, prefix + ".toughness", mode.getToughness());
+        }
+
+        if (!unused.isEmpty()) {
+            throw new IllegalArgumentException(source + ": unknown rules " + unused);
+        }
+        return new Rules(source, itemCosts, terrains, terrainWeights, treasureWeights, toughBrawlChance, easyBrawlChance,
+                brawlChance, maxBrawlGold, dirtChance, maxDigGold, itemBreakChance, markdowns, toughnesses);
+    }
+
+    /**
+     * Writes the rules back out as properties, every key included, so that compile() gives the same rules again.
+     *
+     * @return The settings.
+     */
+    public Properties toProperties() {
+        Properties properties = new Properties();
+        for (ItemType type : ITEM_TYPES) {
+            if (!type.isTreasure()) {
+                properties.setProperty("item." + type.getName() + ".cost", String.valueOf(itemCosts[type.ordinal()]));
+            }
+        }
+        for (int i = 0; i < terrains.length; i++) {
+            String prefix = "terrain." + terrains[i].getTerrainName().toLowerCase(Locale.ROOT);
+            properties.setProperty(prefix + ".item", terrains[i].getNeededItem());
+            properties.setProperty(prefix + ".weight", String.valueOf(getTerrainWeight(i)));
+        }
+        for (int i = 0; i < TREASURES.length; i++) {
+            properties.setProperty("treasure." + TREASURES[i].getName() + ".weight",
+                    String.valueOf(treasureSampler.getWeight(i)));
+        }
+        properties.setProperty("brawl.chance.tough", String.valueOf(toughBrawlChance));
+        properties.setProperty("brawl.chance.easy", String.valueOf(easyBrawlChance));
+        properties.setProperty("brawl.chance", String.valueOf(brawlChance));
+        properties.setProperty("brawl.maxGold", String.valueOf(maxBrawlGold));
+        properties.setProperty("dig.dirtChance", String.valueOf(dirtChance));
+        properties.setProperty("dig.maxGold", String.valueOf(maxDigGold));
+        properties.setProperty("item.breakChance", String.valueOf(itemBreakChance));
+        for (GameMode mode : GameMode.values()) {
+            String prefix = "mode." + mode.name().toLowerCase(Locale.ROOT);
+            properties.setProperty(prefix + ".markdown", String.valueOf(markdowns[mode.ordinal()]));
+            properties.setProperty(prefix + ".toughness", String.valueOf(toughnesses[mode.ordinal()]));
+        }
+        return properties;
+    }
+
+    // accessors
+    public String getSource() {
+        return source;
+    }
+
+    public int getItemCost(ItemType item) {
+        return itemCosts[item.ordinal()];
+    }
+
+    /**
+     * @return A copy of the item costs, indexed by ItemType ordinal.
+     */
+    public int[] getItemCosts() {
+        return itemCosts.clone();
+    }
+
+    public int getTerrainCount() {
+        return terrains.length;
+    }
+
+    public Terrain getTerrain(int index) {
+        return terrains[index];
+    }
+
+    /**
+     * @return The chance of finding a fight in a tough town, which is also the chance of losing it.
+     */
+    public double getToughBrawlChance() {
+        return toughBrawlChance;
+    }
+
+    /**
+     * @return The chance of finding a fight in an easy game, which is also the chance of losing it.
+     */
+    public double getEasyBrawlChance() {
+        return easyBrawlChance;
+    }
+
+    /**
+     * @return The chance of finding a fight anywhere else, which is also the chance of losing it.
+     */
+    public double getBrawlChance() {
+        return brawlChance;
+    }
+
+    public int getMaxBrawlGold() {
+        return maxBrawlGold;
+    }
+
+    public double getDirtChance() {
+        return dirtChance;
+    }
+
+    public int getMaxDigGold() {
+        return maxDigGold;
+    }
+
+    public double getItemBreakChance() {
+        return itemBreakChance;
+    }
+
+    public double getMarkdown(GameMode mode) {
+        return markdowns[mode.ordinal()];
+    }
+
+    public double getToughness(GameMode mode) {
+        return toughnesses[mode.ordinal()];
+    }
+
+    /**
+     * @param terrain A terrain's index.
+     * @return How often new towns are surrounded by it, against getTotalTerrainWeight().
+     */
+    public int getTerrainWeight(int terrain) {
+        return terrainSampler.getWeight(terrain);
+    }
+
+    public int getTotalTerrainWeight() {
+        return terrainSampler.getTotalWeight();
+    }
+
+    /**
+     * @param treasure One of the crown, trophy, gem or dust.
+     * @return How often new towns hide it, against getTotalTreasureWeight().
+     */
+    public int getTreasureWeight(ItemType treasure) {
+        for (int i = 0; i < TREASURES.length; i++) {
+            if (TREASURES[i] == treasure) {
+                return treasureSampler.getWeight(i);
+            }
+        }
+        return 0;
+    }
+
+    public int getTotalTreasureWeight() {
+        return treasureSampler.getTotalWeight();
+    }
+
+    /**
+     * Rolls the terrain around a new town.
+     */
+    Terrain rollTerrain(RandomSource random) {
+        return terrains[terrainSampler.sample(random)];
+    }
+
+    /**
+     * Rolls the treasure hidden in a new town.
+     */
+    ItemType rollTreasure(RandomSource random) {
+        return TREASURES[treasureSampler.sample(random)];
+    }
+
+    /**
+     * Rolls the gold won or lost in a brawl, from 1 to getMaxBrawlGold().
+     */
+    int rollBrawlGold(RandomSource random) {
+        return brawlGoldSampler.sample(random) + 1;
+    }
+
+    /**
+     * Rolls the gold a dig turns up, from 1 to getMaxDigGold().
+     */
+    int rollDigGold(RandomSource random) {
+        return digGoldSampler.sample(random) + 1;
+    }
+
+    private static int defaultCost(ItemType type) {
+        switch (type) {
+            case WATER: return 2;
+            case ROPE: return 4;
+            case MACHETE: return 6;
+            case HORSE: return 12;
+            case BOAT: return 20;
+            case BOOTS: return 24;
+            case SHOVEL: return 8;
+            default: return 0;
+        }
+    }
+
+    private static int readInt(Properties properties, Set<String> unused, String key, int fallback, int min, int max) {
+        unused.remove(key);
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            int number = Integer.parseInt(value.trim());
+            if (number >= min && number <= max) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException(key + " must be a whole number from " + min + " to " + max + ", not " + value);
+    }
+
+    private static double readChance(Properties properties, Set<String> unused, String key, double fallback) {
+        unused.remove(key);
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            double number = Double.parseDouble(value.trim());
+            if (number >= 0 && number <= 1) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException(key + " must be a number from 0 to 1, not " + value);
+    }
+
+    @Override
+    public String toString() {
+        return "Rules from " + source + ": costs " + Arrays.toString(itemCosts);
+    }
+}
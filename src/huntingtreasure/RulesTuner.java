@@ -0,0 +1,437 @@
+package huntingtreasure;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The RulesTuner searches a grid of rules for the sets that give each mode the win rate it should have.<p>
+ * A grid file is a properties file whose values are comma-separated lists, such as "brawl.chance = 0.25, 0.3, 0.33";
+ * every combination of the listed values is a point, played by the rules in force with those keys changed. Each
+ * point is played once for every mode with a target, by a BatchSimulator and the GreedyPolicy's moves, and the points
+ * are spread over every core.<p>
+ * A point is not played for a fixed number of games. It is played in rounds, the first of CHUNK games and each one as
+ * long as all the rounds before it, and after each round the Wilson interval around its win rate is worked out. As
+ * soon as the interval lies wholly outside the target's tolerance the point is off target and is dropped, and as soon
+ * as it lies wholly inside the point is on target; only points near the edge are played to maxGames. The interval is
+ * wider than a one-look interval would be (z is 3 by default) because it is looked at again after every round.<p>
+ * Game i of a seed is the same game however it is reached, so what a point's games came to is kept in a cache file,
+ * keyed by a hash of the whole rules set, the mode, the turn limit and the seed. A later sweep picks up where the
+ * cached games left off, whatever its targets and tolerance, and a point nobody changed costs nothing.
+ */
+
+public class RulesTuner {
+    // constants
+    public static final int CHUNK = BatchSimulator.LANES;
+    public static final double DEFAULT_Z = 3.0;
+    private static final int REPORTED_POINTS = 20;
+
+    enum Verdict { ON_TARGET, OFF_TARGET, UNDECIDED }
+
+    // instance variables
+    private final List<Point> points;
+    private final Map<GameMode, Double> targets;
+    private final double tolerance;
+    private final long maxGames;
+    private final int maxTurns;
+    private final long seed;
+    private final double z;
+    private final Path cacheFile;
+    private final Map<String, long[]> cache;
+    private final AtomicLong gamesPlayed;
+    private final AtomicLong gamesCached;
+
+    /**
+     * Sets up a sweep. Every point's rules are compiled here, so a bad value in the grid is reported before any game
+     * is played.
+     *
+     * @param base The rules the grid's keys are changed in.
+     * @param grid Each key to sweep, with the values it takes.
+     * @param targets The win rate each mode should have, from 0 to 1.
+     * @param tolerance How far from its target a win rate may be and still count as on target.
+     * @param maxGames The most games a point is played for in each mode.
+     * @param maxTurns The number of turns after which an unfinished game is abandoned.
+     * @param seed The seed every point's games are worked out from.
+     * @param z How many standard errors wide the interval is on each side.
+     * @param cacheFile Where finished points are kept between sweeps, or null to keep nothing.
+     * @throws IOException if the cache file can't be read.
+     * @throws IllegalArgumentException if a point's rules don't compile.
+     */
+    public RulesTuner(Rules base, Map<String, List<String>> grid, Map<GameMode, Double> targets, double tolerance,
+                      long maxGames, int maxTurns, long seed, double z, Path cacheFile) throws IOException {
+        this.targets = new EnumMap<>(targets);
+        this.tolerance = tolerance;
+        this.maxGames = maxGames;
+        this.maxTurns = maxTurns;
+        this.seed = seed;
+        this.z = z;
+        this.cacheFile = cacheFile;
+        cache = new ConcurrentHashMap<>();
+        gamesPlayed = new AtomicLong();
+        gamesCached = new AtomicLong();
+        points = new ArrayList<>();
+        addPoints(base, new ArrayList<>(new TreeMap<>(grid).entrySet()), 0, new TreeMap<>());
+        if (cacheFile != null && Files.exists(cacheFile)) {
+            loadCache();
+        }
+    }
+
+    /**
+     * Reads a grid file: a properties file with a comma-separated list of values for every key.
+     *
+     * @param file The file.
+     * @return Each key with its values.
+     * @throws IOException if the file can't be read.
+     */
+    public static Map<String, List<String>> readGrid(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        }
+        Map<String, List<String>> grid = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            List<String> values = new ArrayList<>();
+            for (String value : properties.getProperty(key).split(",")) {
+                if (!value.isBlank()) {
+                    values.add(value.trim());
+                }
+            }
+            if (values.isEmpty()) {
+                throw new IllegalArgumentException(file + ": " + key + " has no values");
+            }
+            grid.put(key, values);
+        }
+        return grid;
+    }
+
+    /**
+     * Reads targets such as "normal=0.3,hard=0.15".
+     *
+     * @param text The targets.
+     * @return The win rate each mode should have.
+     */
+    public static Map<GameMode, Double> parseTargets(String text) {
+        Map<GameMode, Double> targets = new EnumMap<>(GameMode.class);
+        for (String target : text.split(",")) {
+            String[] parts = target.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("A target looks like normal=0.3, not " + target);
+            }
+            targets.put(GameMode.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)), Double.parseDouble(parts[1].trim()));
+        }
+        return targets;
+    }
+
+    private void addPoints(Rules base, List<Map.Entry<String, List<String>>> keys, int depth,
+                           TreeMap<String, String> settings) {
+        if (depth == keys.size()) {
+            Properties properties = base.toProperties();
+            properties.putAll(settings);
+            String label = settings.toString();
+            points.add(new Point(label, Rules.compile(properties, "grid point " + label), targets.keySet()));
+            return;
+        }
+        Map.Entry<String, List<String>> key = keys.get(depth);
+        for (String value : key.getValue()) {
+            settings.put(key.getKey(), value);
+            addPoints(base, keys, depth + 1, settings);
+        }
+        settings.remove(key.getKey());
+    }
+
+    // accessors
+    public int getPointCount() {
+        return points.size();
+    }
+
+    public long getGamesPlayed() {
+        return gamesPlayed.get();
+    }
+
+    public long getGamesCached() {
+        return gamesCached.get();
+    }
+
+    /**
+     * Plays every point in every mode with a target, on the common ForkJoinPool.
+     *
+     * @return The points, closest to their targets first: those on target in the most modes, then those whose worst
+     *         mode is nearest its target.
+     */
+    public List<Point> run() {
+        // a task for each point in each mode, so a core that finishes its points early can take on someone else's
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Point point : points) {
+            for (Result result : point.results.values()) {
+                tasks.add(ForkJoinTask.adapt(() -> evaluate(result)));
+            }
+        }
+        ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        for (Point point : points) {
+            point.worstMiss = 0;
+            for (Result result : point.results.values()) {
+                double miss = Math.abs(result.getWinRate() - targets.get(result.mode));
+                point.worstMiss = Math.max(point.worstMiss, miss);
+            }
+        }
+        List<Point> ranked = new ArrayList<>(points);
+        ranked.sort(Comparator.comparingInt(Point::getModesOffTarget).thenComparingDouble(Point::getWorstMiss));
+        return ranked;
+    }
+
+    /**
+     * Plays one point in one mode in growing rounds until its interval settles the question or maxGames is reached,
+     * starting from whatever the cache already has.
+     */
+    private void evaluate(Result result) {
+        String key = cacheKey(result.rules, result.mode);
+        long[] cached = cache.get(key);
+        long games = cached == null ? 0 : cached[0];
+        long wins = cached == null ? 0 : cached[1];
+        gamesCached.addAndGet(games);
+        long playedBefore = games;
+        BatchSimulator simulator = null;
+        while (judge(result.mode, games, wins) == Verdict.UNDECIDED && games < maxGames) {
+            if (simulator == null) {
+                simulator = new BatchSimulator(result.mode, result.rules, maxTurns, seed);
+            }
+            long round = Math.min(Math.max(CHUNK, games), maxGames - games);
+            SimulationStats stats = simulator.play(games, round);
+            games += stats.getGames();
+            wins += stats.getWins();
+        }
+        result.games = games;
+        result.wins = wins;
+        result.verdict = judge(result.mode, games, wins);
+        gamesPlayed.addAndGet(games - playedBefore);
+        if (games > playedBefore) {
+            cache.put(key, new long[] {games, wins});
+            saveToCache(key, games, wins);
+        }
+    }
+
+    private Verdict judge(GameMode mode, long games, long wins) {
+        if (games == 0) {
+            return Verdict.UNDECIDED;
+        }
+        double target = targets.get(mode);
+        double low = lowerBound(games, wins, z);
+        double high = upperBound(games, wins, z);
+        if (low > target + tolerance || high < target - tolerance) {
+            return Verdict.OFF_TARGET;
+        }
+        if (low >= target - tolerance && high <= target + tolerance) {
+            return Verdict.ON_TARGET;
+        }
+        return Verdict.UNDECIDED;
+    }
+
+    /**
+     * @return The bottom of the Wilson score interval around wins out of games.
+     */
+    static double lowerBound(long games, long wins, double z) {
+        return wilson(games, wins, z, -1);
+    }
+
+    /**
+     * @return The top of the Wilson score interval around wins out of games.
+     */
+    static double upperBound(long games, long wins, double z) {
+        return wilson(games, wins, z, 1);
+    }
+
+    private static double wilson(long games, long wins, double z, int side) {
+        if (games == 0) {
+            return side < 0 ? 0 : 1;
+        }
+        double n = games;
+        double p = wins / n;
+        double zz = z * z;
+        double centre = p + zz / (2 * n);
+        double spread = z * Math.sqrt(p * (1 - p) / n + zz / (4 * n * n));
+        return Math.min(1, Math.max(0, (centre + side * spread) / (1 + zz / n)));
+    }
+
+    /**
+     * A hash of everything that decides a point's games: every rule, written out in order, the mode, the turn limit
+     * and the seed. The targets, tolerance and maxGames only decide how many of those games are played.
+     */
+    private String cacheKey(Rules rules, GameMode mode) {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, String> setting : sorted(rules.toProperties()).entrySet()) {
+            text.append(setting.getKey()).append('=').append(setting.getValue()).append('\n');
+        }
+        text.append("mode=").append(mode).append("\nmaxTurns=").append(maxTurns).append("\nseed=").append(seed);
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every JVM has SHA-256", e);
+        }
+    }
+
+    /**
+     * Reads the cache: a line per finished point with its hash, games and wins. A point may have several lines, from
+     * sweeps that played it further each time; the one with the most games wins.
+     */
+    private void loadCache() throws IOException {
+        for (String line : Files.readAllLines(cacheFile)) {
+            String[] fields = line.split("\t");
+            if (fields.length != 3) {
+                continue;
+            }
+            long games = Long.parseLong(fields[1]);
+            long[] cached = cache.get(fields[0]);
+            if (cached == null || cached[0] < games) {
+                cache.put(fields[0], new long[] {games, Long.parseLong(fields[2])});
+            }
+        }
+    }
+
+    /**
+     * Adds a point to the cache file as soon as it is finished, so an interrupted sweep loses only the points under way.
+     */
+    private synchronized void saveToCache(String key, long games, long wins) {
+        if (cacheFile == null) {
+            return;
+        }
+        try {
+            Files.writeString(cacheFile, key + "\t" + games + "\t" + wins + "\n", StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Couldn't write to the tuner's cache " + cacheFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param ranked The points, as run() returns them.
+     * @return A printable table of the best points, with each mode's win rate, interval, games and verdict.
+     */
+    public String report(List<Point> ranked) {
+        StringBuilder str = new StringBuilder();
+        for (Map.Entry<GameMode, Double> target : targets.entrySet()) {
+            str.append(String.format("Target %s: %.2f%% +/- %.2f%%%n", target.getKey(), target.getValue() * 100,
+                    tolerance * 100));
+        }
+        int shown = Math.min(REPORTED_POINTS, ranked.size());
+        str.append(String.format("Best %d of %d points:%n", shown, ranked.size()));
+        for (int i = 0; i < shown; i++) {
+            Point point = ranked.get(i);
+            str.append(point.label).append('\n');
+            for (Result result : point.results.values()) {
+                str.append(String.format("    %-8s %6.2f%% [%6.2f%%, %6.2f%%] %,12d games  %s%n", result.mode,
+                        result.getWinRate() * 100, lowerBound(result.games, result.wins, z) * 100,
+                        upperBound(result.games, result.wins, z) * 100, result.games,
+                        result.verdict.name().toLowerCase(Locale.ROOT).replace('_', ' ')));
+            }
+        }
+        str.append(String.format("%,d games played, %,d taken from the cache%n", getGamesPlayed(), getGamesCached()));
+        return str.toString();
+    }
+
+    /**
+     * One combination of the grid's values, with how it did in each mode.
+     */
+    public static final class Point {
+        private final String label;
+        private final Rules rules;
+        private final Map<GameMode, Result> results;
+        private double worstMiss;
+
+        Point(String label, Rules rules, Iterable<GameMode> modes) {
+            this.label = label;
+            this.rules = rules;
+            results = new EnumMap<>(GameMode.class);
+            for (GameMode mode : modes) {
+                results.put(mode, new Result(mode, rules));
+            }
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public Rules getRules() {
+            return rules;
+        }
+
+        public int getModesOffTarget() {
+            int off = 0;
+            for (Result result : results.values()) {
+                if (result.verdict != Verdict.ON_TARGET) {
+                    off++;
+                }
+            }
+            return off;
+        }
+
+        /**
+         * @return How far the win rate of the mode furthest from its target is from it.
+         */
+        public double getWorstMiss() {
+            return worstMiss;
+        }
+    }
+
+    /**
+     * How one point did in one mode.
+     */
+    private static final class Result {
+        private final GameMode mode;
+        private final Rules rules;
+        private long games;
+        private long wins;
+        private Verdict verdict;
+
+        Result(GameMode mode, Rules rules) {
+            this.mode = mode;
+            this.rules = rules;
+            verdict = Verdict.UNDECIDED;
+        }
+
+        double getWinRate() {
+            return games == 0 ? 0 : (double) wins / games;
+        }
+    }
+
+    /**
+     * Writes a rules file for a point, with every key, that -Dhuntingtreasure.rules can play by.
+     *
+     * @param point The point.
+     * @param out Where the file goes.
+     * @throws IOException if the write fails.
+     */
+    public static void writeRules(Point point, Writer out) throws IOException {
+        out.write("# Found by the rules tuner: " + point.label + "\n");
+        for (Map.Entry<String, String> setting : sorted(point.rules.toProperties()).entrySet()) {
+            out.write(setting.getKey() + " = " + setting.getValue() + "\n");
+        }
+    }
+
+    private static Map<String, String> sorted(Properties properties) {
+        Map<String, String> strings = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            strings.put(key, properties.getProperty(key));
+        }
+        return strings;
+    }
+}
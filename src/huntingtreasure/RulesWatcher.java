@@ -0,0 +1,119 @@
+package huntingtreasure;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * The RulesWatcher keeps the game's Rules in step with a rules file: it loads the file when it starts and again
+ * whenever the file is written or replaced, and installs the result with Rules.install().<p>
+ * A file that can't be read or has a mistake in it is reported and otherwise ignored, so the rules already in force
+ * stay in force until the file is fixed. Editors often save in several steps, so after a change the watcher waits
+ * SETTLE_MILLIS for the file to settle before reading it.<p>
+ * The watching is done on a daemon thread, so it never keeps the JVM running.
+ */
+
+public class RulesWatcher implements Closeable {
+    // constants
+    static final long SETTLE_MILLIS = 100;
+
+    // instance variables
+    private final Path file;
+    private final PrintStream log;
+    private final WatchService watchService;
+    private Thread thread;
+
+    /**
+     * Loads the rules file and installs it. Changes to it are picked up once start() is called.
+     *
+     * @param file The rules file.
+     * @param log Where reloads and rejected files are reported.
+     * @throws IOException if the file can't be read or watched.
+     * @throws IllegalArgumentException if the file has a mistake in it; nothing is installed then.
+     */
+    public RulesWatcher(Path file, PrintStream log) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.log = log;
+        Rules.install(Rules.load(this.file));
+        watchService = this.file.getFileSystem().newWatchService();
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Starts watching the file. It is kept out of the constructor so the watching thread never sees a watcher that
+     * isn't fully built.
+     *
+     * @return This watcher.
+     */
+    public synchronized RulesWatcher start() {
+        if (thread == null) {
+            thread = Thread.ofPlatform().name("rules-watcher").daemon().start(this::watch);
+        }
+        return this;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Reads the file again and installs it if it is good.
+     *
+     * @return true if the new rules were installed, false if the old ones were kept.
+     */
+    public boolean reload() {
+        try {
+            Rules rules = Rules.load(file);
+            Rules.install(rules);
+            log.println("Loaded the rules in " + file);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            log.println("Kept the rules in force; " + file + " was not loaded: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Stops watching. The rules in force stay as they are.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        watchService.close();
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void watch() {
+        Path name = file.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                do {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        changed |= name.equals(event.context()) || event.kind() == StandardWatchEventKinds.OVERFLOW;
+                    }
+                    key.reset();
+                    if (changed) {
+                        // let the editor finish writing; whatever it does meanwhile is taken in by this one reload
+                        Thread.sleep(SETTLE_MILLIS);
+                    }
+                    key = watchService.poll();
+                } while (key != null);
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+}
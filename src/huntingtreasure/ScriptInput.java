@@ -0,0 +1,54 @@
+package huntingtreasure;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A CommandInput that reads a script's lines straight out of a ByteBuffer, such as a memory-mapped file.<p>
+ * Each line is found by scanning the buffer for the next newline, and only that line's bytes are copied out to
+ * make its String; there is no stream, reader or lock in between. A line may end in "\n" or "\r\n", and the last line
+ * needn't end at all.<p>
+ * An input reads its own view of the buffer, so one buffer can be played by several inputs, but a single input
+ * belongs to one game at a time.
+ */
+
+public class ScriptInput implements CommandInput {
+    // instance variables
+    private final ByteBuffer script;
+    private byte[] line;
+    private long linesRead;
+
+    ScriptInput(ByteBuffer script) {
+        this.script = script.slice();
+        line = new byte[64];
+    }
+
+    // accessors
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    @Override
+    public String readLine() {
+        int start = script.position();
+        int limit = script.limit();
+        if (start == limit) {
+            return null;
+        }
+        int end = start;
+        while (end < limit && script.get(end) != '\n') {
+            end++;
+        }
+        script.position(end < limit ? end + 1 : end);
+        if (end > start && script.get(end - 1) == '\r') {
+            end--;
+        }
+        int length = end - start;
+        if (line.length < length) {
+            line = new byte[Math.max(length, line.length * 2)];
+        }
+        script.get(start, line, 0, length);
+        linesRead++;
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+}
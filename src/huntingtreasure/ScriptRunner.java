@@ -0,0 +1,141 @@
+package huntingtreasure;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * The ScriptRunner plays every command script in a directory through the TreasureHunter, all at once, and reports
+ * where each game ended up.<p>
+ * A script is exactly what a player would type at the console, a line at a time: the hunter's name, the mode, then
+ * menu choices and the shop's questions. Each file is mapped into memory and read by a ScriptInput straight from the
+ * mapping, and the game's screens are thrown away, so a script plays at the speed of the game itself.<p>
+ * Every script gets a virtual thread of its own, and its dice are seeded from the run's seed and the script's file
+ * name, so a script plays out the same way every time and adding or removing other scripts doesn't change it.
+ * That makes the report a regression test: run the same directory with the same seed and compare.
+ */
+
+public class ScriptRunner {
+    // instance variables
+    private final List<Path> scripts;
+    private final long seed;
+    private final LongAdder linesRead;
+    private final LongAdder failures;
+
+    /**
+     * Finds the scripts: every regular file in the directory, in order of name.
+     *
+     * @param directory The directory.
+     * @param seed The seed the scripts' dice are worked out from.
+     * @throws IOException if the directory can't be listed.
+     */
+    public ScriptRunner(Path directory, long seed) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            scripts = files.filter(Files::isRegularFile).sorted().toList();
+        }
+        this.seed = seed;
+        linesRead = new LongAdder();
+        failures = new LongAdder();
+    }
+
+    // accessors
+    public int getScriptCount() {
+        return scripts.size();
+    }
+
+    public long getLinesRead() {
+        return linesRead.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * Plays every script and reports how each one ended, one tab-separated line per script in order of name:
+     * the script, the mode, the game's status, the hunter's gold, kit and chest, the terrain around the last town,
+     * and how many lines of the script were read. A script that breaks the game reports the error instead.
+     *
+     * @return The report, with a header line.
+     * @throws InterruptedException if the calling thread is interrupted while the scripts run.
+     */
+    public String run() throws InterruptedException {
+        List<Future<String>> endings = new ArrayList<>(scripts.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path script : scripts) {
+                endings.add(executor.submit(() -> play(script)));
+            }
+        }
+        StringBuilder report = new StringBuilder("script\tmode\tstatus\tgold\tkit\tchest\tterrain\tlines\n");
+        for (int i = 0; i < scripts.size(); i++) {
+            report.append(scripts.get(i).getFileName()).append('\t');
+            try {
+                report.append(endings.get(i).get());
+            } catch (ExecutionException e) {
+                failures.increment();
+                report.append("failed: ").append(e.getCause());
+            }
+            report.append('\n');
+        }
+        return report.toString();
+    }
+
+    /**
+     * Maps a script and plays it to the end.
+     *
+     * @return The script's line of the report, without its name.
+     */
+    private String play(Path script) throws IOException {
+        MappedByteBuffer commands;
+        try (FileChannel channel = FileChannel.open(script, StandardOpenOption.READ)) {
+            // the mapping stays valid once the channel is closed
+            commands = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ScriptInput input = new ScriptInput(commands);
+        RandomSource random = SplittableRandomSource.forGame(seed, script.getFileName().toString().hashCode());
+        TreasureHunter hunter = new TreasureHunter(input, new PrintWriter(Writer.nullWriter()), random);
+        hunter.play();
+        linesRead.add(input.getLinesRead());
+
+        GameEngine game = hunter.getGame();
+        Hunter player = game.getHunter();
+        StringBuilder line = new StringBuilder();
+        line.append(game.getMode()).append('\t').append(game.getStatus()).append('\t').append(player.getGold());
+        appendItems(line.append('\t'), player.getKitBits());
+        appendItems(line.append('\t'), player.getChestBits());
+        line.append('\t').append(game.getCurrentTown().getTerrain().getTerrainName());
+        line.append('\t').append(input.getLinesRead());
+        return line.toString();
+    }
+
+    /**
+     * Lists items by name with a + between them, or - for none; the report has no room for colours.
+     */
+    private static void appendItems(StringBuilder str, long items) {
+        int length = str.length();
+        for (ItemType type : ItemType.values()) {
+            if ((items & type.getBit()) != 0) {
+                if (str.length() > length) {
+                    str.append('+');
+                }
+                str.append(type.getName());
+            }
+        }
+        if (str.length() == length) {
+            str.append('-');
+        }
+    }
+}
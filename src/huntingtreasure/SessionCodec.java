@@ -0,0 +1,142 @@
+package huntingtreasure;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The SessionCodec writes the whole state of a game into a few dozen bytes and reads it back.<p>
+ * The layout (version 1) is, in order: the version, the mode, the game status, the hunter's gold (4 bytes),
+ * the kit bits (2 bytes), the chest bits (2 bytes), the terrain number, the treasure, the town's flags,
+ * and finally the hunter's name as a length byte followed by UTF-8.
+ * A version byte of 0 never starts a record, so an all-zero block of bytes reads as "no game saved here".
+ */
+
+public class SessionCodec {
+    // constants
+    public static final byte VERSION = 1;
+    public static final int HEADER_BYTES = 15;
+    public static final int MAX_NAME_BYTES = 48;
+    public static final int MAX_RECORD_BYTES = HEADER_BYTES + MAX_NAME_BYTES;
+
+    private static final int TOUGH_TOWN = 1;
+    private static final int ALREADY_DUG = 2;
+    private static final int SEARCHED = 4;
+
+    // static variables
+    private static final GameMode[] MODES = GameMode.values();
+    private static final TurnResult.Status[] STATUSES = TurnResult.Status.values();
+    private static final ItemType[] ITEM_TYPES = ItemType.values();
+
+    private SessionCodec() {
+    }
+
+    /**
+     * Writes a game at the buffer's position.
+     *
+     * @param game The game to save.
+     * @param buffer Where it is written; needs room for MAX_RECORD_BYTES.
+     * @return The number of bytes written.
+     */
+    public static int encode(GameEngine game, ByteBuffer buffer) {
+        Hunter hunter = game.getHunter();
+        Town town = game.getCurrentTown();
+        byte[] name = nameBytes(hunter.getHunterName());
+        int flags = townFlags(town);
+
+        buffer.put(VERSION);
+        buffer.put((byte) game.getMode().ordinal());
+        buffer.put((byte) game.getStatus().ordinal());
+        buffer.putInt(hunter.getGold());
+        buffer.putShort((short) hunter.getKitBits());
+        buffer.putShort((short) hunter.getChestBits());
+        buffer.put((byte) Terrain.indexOf(town.getTerrain()));
+        buffer.put((byte) town.getTreasureType().ordinal());
+        buffer.put((byte) flags);
+        buffer.put((byte) name.length);
+        buffer.put(name);
+        return HEADER_BYTES + name.length;
+    }
+
+    /**
+     * Reads a game back from the buffer's position.
+     *
+     * @param buffer Where the game was written.
+     * @param random Where the restored game's rolls come from from now on.
+     * @return The restored game, or null if no game was saved there.
+     * @throws IllegalArgumentException if the bytes are not a game this version can read.
+     */
+    public static GameEngine decode(ByteBuffer buffer, RandomSource random) {
+        try {
+            byte version = buffer.get();
+            if (version == 0) {
+                return null;
+            }
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unknown save format version " + version);
+            }
+            GameMode mode = MODES[buffer.get()];
+            TurnResult.Status status = STATUSES[buffer.get()];
+            int gold = buffer.getInt();
+            long kit = buffer.getShort() & 0xFFFFL;
+            long chest = buffer.getShort() & 0xFFFFL;
+            int terrain = buffer.get();
+            ItemType treasure = ITEM_TYPES[buffer.get()];
+            int flags = buffer.get();
+            byte[] name = new byte[buffer.get() & 0xFF];
+            buffer.get(name);
+
+            return rebuild(mode, status, new String(name, StandardCharsets.UTF_8), gold, kit, chest, terrain, treasure, flags,
+                    Rules.current(), random);
+        } catch (ArrayIndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IllegalArgumentException("Corrupt saved game", e);
+        }
+    }
+
+    /**
+     * @return The town's flags, as encode() writes them.
+     */
+    static int townFlags(Town town) {
+        return (town.isToughTown() ? TOUGH_TOWN : 0)
+                | (town.getAlreadyDug() ? ALREADY_DUG : 0)
+                | (town.getSearched() ? SEARCHED : 0);
+    }
+
+    /**
+     * Puts a game back together from the fields of a record, for this class and anything else that saves games
+     * the same way, such as the SessionSlab.
+     *
+     * @param terrain The terrain's number in the rules.
+     * @param flags The town's flags, as townFlags() makes them.
+     * @param rules The rules the game is played by from now on.
+     * @return The game, with the hunter in the restored town.
+     */
+    static GameEngine rebuild(GameMode mode, TurnResult.Status status, String name, int gold, long kit, long chest,
+                              int terrain, ItemType treasure, int flags, Rules rules, RandomSource random) {
+        Hunter hunter = new Hunter(name, gold, kit, chest);
+        GameEngine game = new GameEngine(mode, hunter, status, rules, random);
+        Town town = game.getCurrentTown();
+        // the terrain is saved by number, and the game's rules say what it takes to cross
+        town.restore(game.getRules().getTerrain(terrain), treasure, (flags & TOUGH_TOWN) != 0, (flags & ALREADY_DUG) != 0, (flags & SEARCHED) != 0);
+        town.hunterArrives(hunter);
+        return game;
+    }
+
+    /**
+     * Encodes a name, cutting it short (on a character boundary) if it doesn't fit in a record.
+     */
+    static byte[] nameBytes(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_NAME_BYTES) {
+            return bytes;
+        }
+        int length = MAX_NAME_BYTES;
+        // don't leave half of a multi-byte character at the end
+        while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        byte[] cut = new byte[length];
+        System.arraycopy(bytes, 0, cut, 0, length);
+        return cut;
+    }
+}
@@ -0,0 +1,304 @@
+package huntingtreasure;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The SessionSlab holds games that are waiting for their player, packed into memory outside the Java heap, so that
+ * a game nobody is playing right now costs the heap nothing.<p>
+ * park() writes a game into a SLOT_BYTES slot: the gold (4 bytes), the kit and chest bits (2 bytes each), the terrain
+ * number, the treasure, the town's flags, the mode and game status, and the number of the first name block (4 bytes).
+ * The hunter's name goes in one to four NAME_BLOCK_BYTES blocks of its own, as a length byte followed by UTF-8.
+ * unpark() builds the game again, exactly as the SessionCodec does, and frees its space. The slot has no room for the
+ * game's Rules, so the caller keeps them, which costs one reference to a Rules object every game shares, and hands
+ * them back to unpark(); a game parked before the rules were reloaded carries on by the rules it started with.<p>
+ * Free slots and free name blocks are kept in lists threaded through the free space itself, so the heap holds the
+ * same few fields however many games are parked. The slab can live in direct buffers or be mapped from a file, which
+ * lets the operating system page out games that have been waiting a long time. Either way it is scratch space:
+ * nothing in it is meant to survive a restart, which is what the SessionStore is for.<p>
+ * Handing out and freeing space takes a lock; reading and writing a slot doesn't, since only the game that parked
+ * in a slot ever touches it.
+ */
+
+public class SessionSlab implements Closeable {
+    // constants
+    public static final int SLOT_BYTES = 16;
+    public static final int NAME_BLOCK_BYTES = 16;
+    public static final int NAME_BLOCKS_PER_SLOT = 2;
+    public static final int NO_SLOT = -1;
+    private static final int MAX_NAME_BLOCKS = (SessionCodec.MAX_NAME_BYTES + NAME_BLOCK_BYTES) / NAME_BLOCK_BYTES;
+    private static final int PAGE_SHIFT = 30;
+    private static final long PAGE_MASK = (1L << PAGE_SHIFT) - 1;
+
+    private static final int GOLD = 0;
+    private static final int KIT = 4;
+    private static final int CHEST = 6;
+    private static final int TERRAIN = 8;
+    private static final int TREASURE = 9;
+    private static final int FLAGS = 10;
+    private static final int MODE = 11;
+    private static final int NAME = 12;
+
+    // static variables
+    private static final GameMode[] MODES = GameMode.values();
+    private static final TurnResult.Status[] STATUSES = TurnResult.Status.values();
+    private static final ItemType[] ITEM_TYPES = ItemType.values();
+
+    // instance variables
+    private final int capacity;
+    private final int nameBlocks;
+    private final long namesStart;
+    private final ByteBuffer[] pages;
+    private final FileChannel channel;
+    private final ReentrantLock lock;
+    private final int[] freeNames;
+    private int freeSlot;
+    private int unusedSlot;
+    private int unusedNameBlock;
+    private volatile int parked;
+
+    /**
+     * Makes a slab in direct buffers, which come out of the JVM's direct memory allowance (-XX:MaxDirectMemorySize).
+     *
+     * @param capacity How many games can be parked at once.
+     */
+    public SessionSlab(int capacity) {
+        this.capacity = capacity;
+        nameBlocks = nameBlocksFor(capacity);
+        namesStart = (long) capacity * SLOT_BYTES;
+        pages = new ByteBuffer[pageCount()];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = ByteBuffer.allocateDirect(pageBytes(i));
+        }
+        channel = null;
+        lock = new ReentrantLock();
+        freeNames = new int[MAX_NAME_BLOCKS + 1];
+        clearLists();
+    }
+
+    /**
+     * Makes a slab mapped from a file, which is emptied first.
+     *
+     * @param file The file.
+     * @param capacity How many games can be parked at once.
+     * @throws IOException if the file can't be opened or mapped.
+     */
+    public SessionSlab(Path file, int capacity) throws IOException {
+        this.capacity = capacity;
+        nameBlocks = nameBlocksFor(capacity);
+        namesStart = (long) capacity * SLOT_BYTES;
+        pages = new ByteBuffer[pageCount()];
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i << PAGE_SHIFT, pageBytes(i));
+        }
+        lock = new ReentrantLock();
+        freeNames = new int[MAX_NAME_BLOCKS + 1];
+        clearLists();
+    }
+
+    private static int nameBlocksFor(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("A slab needs room for at least one game, not " + capacity);
+        }
+        // most names fit in one block, so two a slot leaves room for plenty of long ones
+        return (int) Math.min(Integer.MAX_VALUE, (long) capacity * NAME_BLOCKS_PER_SLOT);
+    }
+
+    private void clearLists() {
+        freeSlot = NO_SLOT;
+        unusedSlot = 0;
+        unusedNameBlock = 0;
+        for (int i = 0; i < freeNames.length; i++) {
+            freeNames[i] = NO_SLOT;
+        }
+    }
+
+    private long totalBytes() {
+        return namesStart + (long) nameBlocks * NAME_BLOCK_BYTES;
+    }
+
+    private int pageCount() {
+        return (int) ((totalBytes() + PAGE_MASK) >>> PAGE_SHIFT);
+    }
+
+    private int pageBytes(int page) {
+        return (int) Math.min(1L << PAGE_SHIFT, totalBytes() - ((long) page << PAGE_SHIFT));
+    }
+
+    // accessors
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getParkedCount() {
+        return parked;
+    }
+
+    /**
+     * @return How much memory the slab takes outside the heap, parked games or not.
+     */
+    public long getOffHeapBytes() {
+        return totalBytes();
+    }
+
+    /**
+     * Parks a game. The caller should drop the game afterwards, and unpark() it when its player is back.
+     *
+     * @param game The game.
+     * @return The slot the game is in, or NO_SLOT if the slab is full, in which case the game should be kept as it is.
+     */
+    public int park(GameEngine game) {
+        Hunter hunter = game.getHunter();
+        Town town = game.getCurrentTown();
+        byte[] name = SessionCodec.nameBytes(hunter.getHunterName());
+        int blocks = (name.length + NAME_BLOCK_BYTES) / NAME_BLOCK_BYTES;
+        int slot;
+        int nameBlock;
+        lock.lock();
+        try {
+            slot = allocateSlot();
+            if (slot == NO_SLOT) {
+                return NO_SLOT;
+            }
+            nameBlock = allocateName(blocks);
+            if (nameBlock == NO_SLOT) {
+                freeSlot(slot);
+                return NO_SLOT;
+            }
+            parked++;
+        } finally {
+            lock.unlock();
+        }
+
+        long at = (long) slot * SLOT_BYTES;
+        ByteBuffer page = pages[(int) (at >>> PAGE_SHIFT)];
+        int i = (int) (at & PAGE_MASK);
+        page.putInt(i + GOLD, hunter.getGold());
+        page.putShort(i + KIT, (short) hunter.getKitBits());
+        page.putShort(i + CHEST, (short) hunter.getChestBits());
+        page.put(i + TERRAIN, (byte) Terrain.indexOf(town.getTerrain()));
+        page.put(i + TREASURE, (byte) town.getTreasureType().ordinal());
+        page.put(i + FLAGS, (byte) SessionCodec.townFlags(town));
+        page.put(i + MODE, (byte) (game.getMode().ordinal() | game.getStatus().ordinal() << 4));
+        page.putInt(i + NAME, nameBlock);
+
+        long nameAt = nameOffset(nameBlock);
+        ByteBuffer namePage = pages[(int) (nameAt >>> PAGE_SHIFT)];
+        int n = (int) (nameAt & PAGE_MASK);
+        namePage.put(n, (byte) name.length);
+        namePage.put(n + 1, name);
+        return slot;
+    }
+
+    /**
+     * Takes a game out of the slab and builds it again; its slot is free once this returns.
+     *
+     * @param slot The slot park() gave.
+     * @param rules The game's rules, as getRules() gave them when it was parked.
+     * @param random Where the game's rolls come from from now on.
+     * @return The game, just as it was parked.
+     */
+    public GameEngine unpark(int slot, Rules rules, RandomSource random) {
+        long at = (long) slot * SLOT_BYTES;
+        ByteBuffer page = pages[(int) (at >>> PAGE_SHIFT)];
+        int i = (int) (at & PAGE_MASK);
+        int gold = page.getInt(i + GOLD);
+        long kit = page.getShort(i + KIT) & 0xFFFFL;
+        long chest = page.getShort(i + CHEST) & 0xFFFFL;
+        int terrain = page.get(i + TERRAIN);
+        ItemType treasure = ITEM_TYPES[page.get(i + TREASURE)];
+        int flags = page.get(i + FLAGS);
+        int mode = page.get(i + MODE);
+        int nameBlock = page.getInt(i + NAME);
+
+        long nameAt = nameOffset(nameBlock);
+        ByteBuffer namePage = pages[(int) (nameAt >>> PAGE_SHIFT)];
+        int n = (int) (nameAt & PAGE_MASK);
+        byte[] name = new byte[namePage.get(n) & 0xFF];
+        namePage.get(n + 1, name);
+
+        lock.lock();
+        try {
+            freeName(nameBlock, (name.length + NAME_BLOCK_BYTES) / NAME_BLOCK_BYTES);
+            freeSlot(slot);
+            parked--;
+        } finally {
+            lock.unlock();
+        }
+        return SessionCodec.rebuild(MODES[mode & 0xF], STATUSES[mode >>> 4], new String(name, StandardCharsets.UTF_8),
+                gold, kit, chest, terrain, treasure, flags, rules, random);
+    }
+
+    /**
+     * Lets go of the slab. A mapped slab's file is left as it is.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeSlot != NO_SLOT) {
+            int slot = freeSlot;
+            freeSlot = readInt((long) slot * SLOT_BYTES);
+            return slot;
+        }
+        return unusedSlot < capacity ? unusedSlot++ : NO_SLOT;
+    }
+
+    private void freeSlot(int slot) {
+        // a free slot's gold holds the next free slot
+        writeInt((long) slot * SLOT_BYTES, freeSlot);
+        freeSlot = slot;
+    }
+
+    /**
+     * Hands out a run of name blocks, reusing a freed run of the same length if there is one.
+     */
+    private int allocateName(int blocks) {
+        int block = freeNames[blocks];
+        if (block != NO_SLOT) {
+            freeNames[blocks] = readInt(nameOffset(block));
+            return block;
+        }
+        block = unusedNameBlock;
+        // runs never straddle two pages, so a name can always be read and written in one go
+        long first = nameOffset(block);
+        long last = nameOffset(block + blocks) - 1;
+        if (first >>> PAGE_SHIFT != last >>> PAGE_SHIFT) {
+            block += (int) ((((last >>> PAGE_SHIFT) << PAGE_SHIFT) - first) / NAME_BLOCK_BYTES);
+        }
+        if ((long) block + blocks > nameBlocks) {
+            return NO_SLOT;
+        }
+        unusedNameBlock = block + blocks;
+        return block;
+    }
+
+    private void freeName(int block, int blocks) {
+        writeInt(nameOffset(block), freeNames[blocks]);
+        freeNames[blocks] = block;
+    }
+
+    private long nameOffset(int block) {
+        return namesStart + (long) block * NAME_BLOCK_BYTES;
+    }
+
+    private int readInt(long at) {
+        return pages[(int) (at >>> PAGE_SHIFT)].getInt((int) (at & PAGE_MASK));
+    }
+
+    private void writeInt(long at, int value) {
+        pages[(int) (at >>> PAGE_SHIFT)].putInt((int) (at & PAGE_MASK), value);
+    }
+}
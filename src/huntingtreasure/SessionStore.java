@@ -0,0 +1,201 @@
+package huntingtreasure;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The SessionStore keeps saved games in a single file inside a directory, one fixed-size slot per session id.<p>
+ * Every save and load is one positional read or write on a FileChannel, with no seeking and no locking, so many threads
+ * can save and load different sessions at the same time. A slot that was never written reads back as no game.<p>
+ * Each slot holds the game as the SessionCodec writes it and, in its last KEY_BYTES bytes, the key it was saved with.
+ * Session ids are handed out in order, so anyone could guess one; a game only loads for whoever also has its key.<p>
+ * Writes reach the operating system straight away; force() makes them survive a power cut as well.
+ */
+
+public class SessionStore implements Closeable {
+    // constants
+    public static final int KEY_BYTES = 8;
+    public static final int SLOT_BYTES = 72;
+    private static final int KEY_OFFSET = SLOT_BYTES - KEY_BYTES;
+    private static final String FILE_NAME = "sessions.dat";
+
+    // static variables
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(SLOT_BYTES));
+
+    // instance variables
+    private final FileChannel channel;
+
+    /**
+     * Opens (or creates) the store in a directory.
+     *
+     * @param directory The directory that holds the store's file.
+     * @throws IOException if the file can't be opened.
+     */
+    public SessionStore(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        channel = FileChannel.open(directory.resolve(FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Saves a game in its session's slot, replacing whatever was there.
+     *
+     * @param sessionId The session's id, from 0 up.
+     * @param key The key the game will only load with.
+     * @param game The game to save.
+     * @throws IOException if the write fails.
+     */
+    public void save(long sessionId, long key, GameEngine game) throws IOException {
+        ByteBuffer buffer = BUFFERS.get();
+        buffer.clear();
+        encodeSlot(game, key, buffer);
+        buffer.flip();
+        writeFully(buffer, slotPosition(sessionId));
+    }
+
+    /**
+     * Writes a game as a whole slot at the buffer's position.
+     *
+     * @param game The game.
+     * @param key The key the game will only load with.
+     * @param buffer Where it is written; needs room for SLOT_BYTES.
+     */
+    static void encodeSlot(GameEngine game, long key, ByteBuffer buffer) {
+        int start = buffer.position();
+        SessionCodec.encode(game, buffer);
+        // zero the rest of the slot so a shorter name doesn't leave the end of a longer one behind
+        while (buffer.position() < start + KEY_OFFSET) {
+            buffer.put((byte) 0);
+        }
+        buffer.putLong(key);
+    }
+
+    /**
+     * Writes slots already encoded by encodeSlot() for a run of sessions with consecutive ids, in one write.
+     *
+     * @param firstSessionId The id of the session in the first slot.
+     * @param slots The slots, between the buffer's position and limit.
+     * @throws IOException if the write fails.
+     */
+    void saveSlots(long firstSessionId, ByteBuffer slots) throws IOException {
+        writeFully(slots.slice(), slotPosition(firstSessionId));
+    }
+
+    /**
+     * @return One more than the highest session id ever saved, so new sessions can start there.
+     * @throws IOException if the file's size can't be read.
+     */
+    public long getSlotCount() throws IOException {
+        return (channel.size() + SLOT_BYTES - 1) / SLOT_BYTES;
+    }
+
+    /**
+     * Finds the slots that hold no game, because they were never written or have been cleared.
+     *
+     * @return Their session ids, in order.
+     * @throws IOException if the file can't be read.
+     */
+    public long[] findEmptySlots() throws IOException {
+        long slots = getSlotCount();
+        long[] empty = new long[16];
+        int count = 0;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * SLOT_BYTES);
+        for (long first = 0; first < slots; first += buffer.capacity() / SLOT_BYTES) {
+            buffer.clear();
+            long position = first * SLOT_BYTES;
+            while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+                // keep reading until the buffer is full or the file ends
+            }
+            buffer.flip();
+            for (int offset = 0; offset < buffer.limit(); offset += SLOT_BYTES) {
+                // a saved game starts with its format version, which is never 0
+                if (buffer.get(offset) == 0) {
+                    if (count == empty.length) {
+                        empty = Arrays.copyOf(empty, count * 2);
+                    }
+                    empty[count++] = first + offset / SLOT_BYTES;
+                }
+            }
+        }
+        return Arrays.copyOf(empty, count);
+    }
+
+    /**
+     * Loads a game from its session's slot.
+     *
+     * @param sessionId The session's id.
+     * @param key The key the game was saved with.
+     * @param random Where the restored game's rolls come from from now on.
+     * @return The game, or null if nothing was saved for the session or it was saved with another key.
+     * @throws IOException if the read fails or the slot doesn't hold a readable game.
+     */
+    public GameEngine load(long sessionId, long key, RandomSource random) throws IOException {
+        long position = slotPosition(sessionId);
+        if (position >= channel.size()) {
+            return null;
+        }
+        ByteBuffer buffer = BUFFERS.get();
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        if (buffer.limit() < SLOT_BYTES || buffer.getLong(KEY_OFFSET) != key) {
+            return null;
+        }
+        try {
+            return SessionCodec.decode(buffer, random);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Session " + sessionId + " could not be read", e);
+        }
+    }
+
+    /**
+     * Clears a session's slot.
+     *
+     * @param sessionId The session's id.
+     * @throws IOException if the write fails.
+     */
+    public void delete(long sessionId) throws IOException {
+        long position = slotPosition(sessionId);
+        if (position < channel.size()) {
+            writeFully(ByteBuffer.allocate(SLOT_BYTES), position);
+        }
+    }
+
+    /**
+     * Makes every save so far durable on disk.
+     *
+     * @throws IOException if the sync fails.
+     */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static long slotPosition(long sessionId) {
+        if (sessionId < 0) {
+            throw new IllegalArgumentException("Session ids start at 0: " + sessionId);
+        }
+        return sessionId * SLOT_BYTES;
+    }
+}
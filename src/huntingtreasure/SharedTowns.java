@@ -0,0 +1,76 @@
+package huntingtreasure;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * SharedTowns is the map of a multiplayer world: a fixed number of TownSites per GameMode that every hunter
+ * on that mode moves between, so hunters run into each other and race for the same treasure and dig spots.<p>
+ * Moving picks a slot at random. A slot starts out empty and is filled with a new site by whoever gets there first;
+ * once a site has no treasure left to race for, the next hunter to arrive swaps a fresh site in, dig spot and all.
+ * Both are a compare-and-set on the slot, so there are no locks anywhere and hunters only ever contend on the one slot
+ * they are moving into. Hunters already standing on a site that is swapped out keep their Town until they move on.
+ */
+
+public class SharedTowns {
+    // instance variables
+    private final AtomicReferenceArray<TownSite>[] sites;
+
+    /**
+     * Sets up an empty world.
+     *
+     * @param townsPerMode How many towns each mode's hunters share; fewer towns means more hunters in each.
+     */
+    public SharedTowns(int townsPerMode) {
+        if (townsPerMode < 1) {
+            throw new IllegalArgumentException("A world needs at least one town, not " + townsPerMode);
+        }
+        GameMode[] modes = GameMode.values();
+        // Java can't make an array of a generic type, so it is made raw; every element put in it holds TownSites
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        AtomicReferenceArray<TownSite>[] perMode = new AtomicReferenceArray[modes.length];
+        sites = perMode;
+        for (int i = 0; i < modes.length; i++) {
+            sites[i] = new AtomicReferenceArray<>(townsPerMode);
+        }
+    }
+
+    public int getTownsPerMode() {
+        return sites[0].length();
+    }
+
+    /**
+     * Picks the site a hunter moves to.
+     *
+     * @param mode The hunter's difficulty; it decides the toughness of new sites.
+     * @param rules The hunter's rules, used to roll a new site.
+     * @param random The hunter's rolls, used to pick the slot and to roll a new site.
+     * @return The site, which may already have other hunters in it.
+     */
+    public TownSite visit(GameMode mode, Rules rules, RandomSource random) {
+        AtomicReferenceArray<TownSite> slots = sites[mode.ordinal()];
+        int slot = random.nextInt(slots.length());
+        TownSite site = slots.get(slot);
+        if (site == null || site.isExhausted()) {
+            TownSite fresh = new TownSite(rules, rules.getToughness(mode), random);
+            TownSite witness = slots.compareAndExchange(slot, site, fresh);
+            // if another hunter swapped first, theirs is just as new
+            site = witness == site ? fresh : witness;
+        }
+        return site;
+    }
+
+    /**
+     * @param mode A difficulty.
+     * @return How many of that mode's slots have a site in them.
+     */
+    public int getSettledTowns(GameMode mode) {
+        AtomicReferenceArray<TownSite> slots = sites[mode.ordinal()];
+        int settled = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                settled++;
+            }
+        }
+        return settled;
+    }
+}
@@ -0,0 +1,327 @@
+package huntingtreasure;
+
+import java.util.Arrays;
+
+/**
+ * The Shop class controls the cost of the items in the Treasure Hunt game. <p>
+ * The Shop class also acts as a go between for the Hunter's buyItem() method. <p>
+ * The Shop doesn't talk to the player itself; it hands back a message describing each sale. <p>
+ * Prices are looked up in tables indexed by ItemType, and each shop works out its buy-back prices and its catalog once,
+ * when it is built, from the list prices in its Rules. Shops hold no per-customer state, so Shop.of() hands out one
+ * shared shop per set of rules, markdown and mode. <p>
+ * Once openMarket() has been called, every shop charges its list prices moved by the Market's current factors,
+ * and tells the market about every sale so the prices can follow supply and demand. The price a player is quoted can
+ * then move before they agree to it, so a trade can carry the price it was quoted at, and the shop calls it off instead
+ * of charging a different one. <p>
+ * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!
+ */
+
+public class Shop {
+    // constants
+    public static final int NO_QUOTE = -1;
+    private static final ItemType[] CATALOG_ITEMS = {ItemType.WATER, ItemType.ROPE, ItemType.MACHETE, ItemType.HORSE,
+            ItemType.BOAT, ItemType.BOOTS, ItemType.SHOVEL};
+
+    // static variables
+    private static final ItemType[] ITEM_TYPES = ItemType.values();
+    private static final String[] BOUGHT_MESSAGES = new String[ITEM_TYPES.length];
+    private static volatile Shop[] registry = new Shop[0];
+    private static volatile Market market;
+
+    static {
+        for (ItemType type : ITEM_TYPES) {
+            BOUGHT_MESSAGES[type.ordinal()] = "Ye' got yerself a " + type.getName() + ". Come again soon.";
+        }
+    }
+
+    // instance variables
+    private final Rules rules;
+    private final int[] costs;
+    private final double markdown;
+    private final boolean samuraiMode;
+    private final int[] buyBackCosts;
+    private final String catalog;
+
+    /**
+     * The Shop constructor takes in a markdown value and whether the sword is for sale.
+     *
+     * @param markdown Percentage of markdown for selling items in decimal format.
+     * @param samuraiMode true if the shop sells the sword.
+     */
+    public Shop(double markdown, boolean samuraiMode) {
+        this(Rules.current(), markdown, samuraiMode);
+    }
+
+    /**
+     * Builds a shop that charges the list prices of the given rules.
+     *
+     * @param rules Where the list prices come from.
+     * @param markdown Percentage of markdown for selling items in decimal format.
+     * @param samuraiMode true if the shop sells the sword.
+     */
+    public Shop(Rules rules, double markdown, boolean samuraiMode) {
+        this.rules = rules;
+        this.samuraiMode = samuraiMode;
+        this.markdown = markdown;
+        costs = rules.getItemCosts();
+        buyBackCosts = new int[ITEM_TYPES.length];
+        for (int i = 0; i < buyBackCosts.length; i++) {
+            buyBackCosts[i] = (int) (costs[i] * markdown);
+        }
+        catalog = buildCatalog(null);
+    }
+
+    /**
+     * Finds the shared shop for a markdown and mode under the current rules, building it the first time it is asked for.
+     *
+     * @param markdown Percentage of markdown for selling items in decimal format.
+     * @param samuraiMode true if the shop sells the sword.
+     * @return The shop.
+     */
+    public static Shop of(double markdown, boolean samuraiMode) {
+        return of(Rules.current(), markdown, samuraiMode);
+    }
+
+    /**
+     * Finds the shared shop for a set of rules, a markdown and a mode, building it the first time it is asked for.
+     * Shops for rules that have since been replaced are dropped from the registry then, though games still using
+     * them keep them.
+     *
+     * @param rules Where the list prices come from.
+     * @param markdown Percentage of markdown for selling items in decimal format.
+     * @param samuraiMode true if the shop sells the sword.
+     * @return The shop.
+     */
+    public static Shop of(Rules rules, double markdown, boolean samuraiMode) {
+        Shop shop = findRegistered(registry, rules, markdown, samuraiMode);
+        if (shop != null) {
+            return shop;
+        }
+        synchronized (Shop.class) {
+            Shop[] shops = registry;
+            shop = findRegistered(shops, rules, markdown, samuraiMode);
+            if (shop == null) {
+                shop = new Shop(rules, markdown, samuraiMode);
+                Shop[] grown = new Shop[shops.length + 1];
+                int kept = 0;
+                for (Shop old : shops) {
+                    if (old.rules == rules) {
+                        grown[kept++] = old;
+                    }
+                }
+                grown[kept++] = shop;
+                registry = Arrays.copyOf(grown, kept);
+            }
+            return shop;
+        }
+    }
+
+    /**
+     * Starts pricing every shop by supply and demand, starting from the list prices of the current rules.
+     *
+     * @param tickMillis How often the market works out new prices.
+     * @return The market, which is also kept until closeMarket().
+     */
+    public static synchronized Market openMarket(long tickMillis) {
+        if (market == null) {
+            market = new Market(tickMillis);
+            market.start();
+        }
+        return market;
+    }
+
+    /**
+     * Goes back to the list prices.
+     */
+    public static synchronized void closeMarket() {
+        if (market != null) {
+            market.close();
+            market = null;
+        }
+    }
+
+    private static Shop findRegistered(Shop[] shops, Rules rules, double markdown, boolean samuraiMode) {
+        for (Shop shop : shops) {
+            if (shop.rules == rules && shop.markdown == markdown && shop.samuraiMode == samuraiMode) {
+                return shop;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A method that returns a string showing the items available in the shop
+     * (all shops sell the same items).
+     *
+     * @return the string representing the shop's items available for purchase and their prices.
+     */
+    public String inventory() {
+        Market current = market;
+        return current == null ? catalog : buildCatalog(current.getPrices());
+    }
+
+    /**
+     * @param prices The market's prices, or null for this shop's list prices.
+     */
+    private String buildCatalog(Market.Prices prices) {
+        StringBuilder str = new StringBuilder();
+        for (ItemType item : CATALOG_ITEMS) {
+            appendPrice(str, item, prices);
+        }
+        if(samuraiMode) {
+            appendPrice(str, ItemType.SWORD, prices);
+        }
+        return str.toString();
+    }
+
+    private void appendPrice(StringBuilder str, ItemType item, Market.Prices prices) {
+        String name = item.getName();
+        int listPrice = costs[item.ordinal()];
+        int price = prices == null ? listPrice : prices.getBuyPrice(item, listPrice);
+        str.append(Character.toUpperCase(name.charAt(0))).append(name, 1, name.length())
+                .append(": ").append(price).append(" gold\n");
+    }
+
+    /**
+     * A method that lets a Hunter buy an item.
+     *
+     * @param customer The Hunter doing the buying.
+     * @param item The item being bought.
+     * @return a String to be used for printing in the latest news
+     */
+    public String buyItem(Hunter customer, String item) {
+        return buyItem(customer, ItemType.fromName(item));
+    }
+
+    public String buyItem(Hunter customer, ItemType item) {
+        return buyItem(customer, item, NO_QUOTE);
+    }
+
+    /**
+     * Lets a Hunter buy an item at the price they were quoted.
+     *
+     * @param customer The Hunter doing the buying.
+     * @param item The item being bought.
+     * @param quotedPrice What checkMarketPrice() said it would cost, or NO_QUOTE to pay whatever it costs now.
+     * @return a String to be used for printing in the latest news
+     */
+    public String buyItem(Hunter customer, ItemType item, int quotedPrice) {
+        int costOfItem = checkMarketPrice(item, true);
+        if (costOfItem == 0 && item != ItemType.SWORD) {
+            return "We ain't got none of those.";
+        }
+        if (quotedPrice != NO_QUOTE && quotedPrice != costOfItem) {
+            return "Prices have moved, friend. That'll be " + costOfItem + " gold now; have another think.";
+        }
+        if (!customer.buyItem(item, costOfItem)) {
+            return "Hmm, either you don't have enough gold or you've already got one of those!";
+        }
+        Market current = market;
+        if (current != null) {
+            current.recordPurchase(item);
+        }
+        if (customer.hasItemInKit(ItemType.SWORD) && item != ItemType.SWORD) {
+            return "The sword intimidates the shopkeeper and he gives you the item freely";
+        }
+        return BOUGHT_MESSAGES[item.ordinal()];
+    }
+
+    /**
+     * A pathway method that lets a Hunter sell an item.
+     *
+     * @param customer The Hunter doing the selling.
+     * @param item The item being sold.
+     * @return a String to be used for printing in the latest news
+     */
+    public String sellItem(Hunter customer, String item) {
+        return sellItem(customer, ItemType.fromName(item));
+    }
+
+    public String sellItem(Hunter customer, ItemType item) {
+        return sellItem(customer, item, NO_QUOTE);
+    }
+
+    /**
+     * Lets a Hunter sell an item at the price they were quoted.
+     *
+     * @param customer The Hunter doing the selling.
+     * @param item The item being sold.
+     * @param quotedPrice What checkMarketPrice() said it would fetch, or NO_QUOTE to take whatever it fetches now.
+     * @return a String to be used for printing in the latest news
+     */
+    public String sellItem(Hunter customer, ItemType item, int quotedPrice) {
+        int buyBackPrice = checkMarketPrice(item, false);
+        if (buyBackPrice == 0) {
+            return "We don't want none of those.";
+        }
+        if (quotedPrice != NO_QUOTE && quotedPrice != buyBackPrice) {
+            return "Prices have moved, friend. I'll give you " + buyBackPrice + " gold now; have another think.";
+        }
+        if (customer.sellItem(item, buyBackPrice)) {
+            Market current = market;
+            if (current != null) {
+                current.recordSale(item);
+            }
+            return "Pleasure doin' business with you.";
+        }
+        return "Stop stringin' me along!";
+    }
+
+    /**
+     * Determines and returns the cost of buying or selling an item.
+     *
+     * @param item The item in question.
+     * @param isBuying Whether the item is being bought or sold.
+     * @return The cost of buying or selling the item based on the isBuying parameter.
+     */
+    public int checkMarketPrice(String item, boolean isBuying) {
+        return checkMarketPrice(ItemType.fromName(item), isBuying);
+    }
+
+    public int checkMarketPrice(ItemType item, boolean isBuying) {
+        if (isBuying) {
+            return getCostOfItem(item);
+        } else {
+            return getBuyBackCost(item);
+        }
+    }
+
+    /**
+     * Looks up the cost of the item in the price table, or at the market if one is open.
+     *
+     * @param item The item being checked for cost.
+     * @return The cost of the item or 0 if the item is not found.
+     */
+    public int getCostOfItem(String item) {
+        return getCostOfItem(ItemType.fromName(item));
+    }
+
+    public int getCostOfItem(ItemType item) {
+        if (item == null) {
+            return 0;
+        }
+        Market current = market;
+        int listPrice = costs[item.ordinal()];
+        return current == null ? listPrice : current.getPrices().getBuyPrice(item, listPrice);
+    }
+
+    /**
+     * Looks up the sell price of an item, which already has the markdown applied; with a market open it is
+     * the markdown of the market's current price for this shop's list price.
+     *
+     * @param item The item being sold.
+     * @return The sell price of the item.
+     */
+    public int getBuyBackCost(String item) {
+        return getBuyBackCost(ItemType.fromName(item));
+    }
+
+    public int getBuyBackCost(ItemType item) {
+        if (item == null) {
+            return 0;
+        }
+        Market current = market;
+        return current == null ? buyBackCosts[item.ordinal()]
+                : current.getPrices().getSellPrice(item, costs[item.ordinal()], markdown);
+    }
+}
@@ -0,0 +1,191 @@
+package huntingtreasure;
+
+/**
+ * The SimulationStats class adds up the outcomes of simulated games.<p>
+ * Each simulator thread fills in its own SimulationStats and they are merged at the end,
+ * so this class does no locking of its own.<p>
+ * Statistics made with OutcomeSketches also keep the spread of each game's outcome, for percentiles.
+ */
+
+public class SimulationStats {
+    // instance variables
+    private long games;
+    private long wins;
+    private long bankruptcies;
+    private long quits;
+    private long unfinished;
+    private long turnsToWin;
+    private int fewestTurnsToWin;
+    private int mostTurnsToWin;
+    private long[] goldAtTurn;
+    private long[] gamesAtTurn;
+    private final OutcomeSketches outcomes;
+
+    /**
+     * Creates an empty set of statistics.
+     *
+     * @param curveLength How many turns of the gold curve to keep track of.
+     */
+    public SimulationStats(int curveLength) {
+        this(curveLength, null);
+    }
+
+    /**
+     * Creates an empty set of statistics that also sketches the games' outcomes.
+     *
+     * @param curveLength How many turns of the gold curve to keep track of.
+     * @param outcomes Where the outcomes go, or null to keep only the totals.
+     */
+    public SimulationStats(int curveLength, OutcomeSketches outcomes) {
+        this.outcomes = outcomes;
+        fewestTurnsToWin = Integer.MAX_VALUE;
+        mostTurnsToWin = 0;
+        goldAtTurn = new long[curveLength];
+        gamesAtTurn = new long[curveLength];
+    }
+
+    /**
+     * Records the hunter's gold after a turn so it can be added to the gold curve.
+     *
+     * @param turn The turn that was just played, starting at 0.
+     * @param gold The hunter's gold after the turn.
+     */
+    public void recordGold(int turn, int gold) {
+        if (turn < goldAtTurn.length) {
+            goldAtTurn[turn] += gold;
+            gamesAtTurn[turn]++;
+        }
+    }
+
+    /**
+     * Records the gold of many hunters after the same turn at once.
+     *
+     * @param turn The turn that was just played, starting at 0.
+     * @param totalGold The hunters' gold after the turn, added up.
+     * @param hunters How many hunters played the turn.
+     */
+    public void recordGold(int turn, long totalGold, long hunters) {
+        if (turn < goldAtTurn.length) {
+            goldAtTurn[turn] += totalGold;
+            gamesAtTurn[turn] += hunters;
+        }
+    }
+
+    /**
+     * Records how a game ended.
+     *
+     * @param status Where the game stood when it stopped.
+     * @param turns How many turns were played.
+     */
+    public void recordGame(TurnResult.Status status, int turns) {
+        games++;
+        if (status == TurnResult.Status.WON) {
+            wins++;
+            turnsToWin += turns;
+            fewestTurnsToWin = Math.min(fewestTurnsToWin, turns);
+            mostTurnsToWin = Math.max(mostTurnsToWin, turns);
+        } else if (status == TurnResult.Status.LOST) {
+            bankruptcies++;
+        } else if (status == TurnResult.Status.QUIT) {
+            quits++;
+        } else {
+            unfinished++;
+        }
+    }
+
+    /**
+     * Adds another set of statistics into this one.
+     *
+     * @param other The statistics to add in.
+     */
+    public void merge(SimulationStats other) {
+        games += other.games;
+        wins += other.wins;
+        bankruptcies += other.bankruptcies;
+        quits += other.quits;
+        unfinished += other.unfinished;
+        turnsToWin += other.turnsToWin;
+        fewestTurnsToWin = Math.min(fewestTurnsToWin, other.fewestTurnsToWin);
+        mostTurnsToWin = Math.max(mostTurnsToWin, other.mostTurnsToWin);
+        for (int i = 0; i < goldAtTurn.length && i < other.goldAtTurn.length; i++) {
+            goldAtTurn[i] += other.goldAtTurn[i];
+            gamesAtTurn[i] += other.gamesAtTurn[i];
+        }
+        if (outcomes != null && other.outcomes != null) {
+            outcomes.merge(other.outcomes);
+        }
+    }
+
+    // accessors
+    public long getGames() {
+        return games;
+    }
+
+    public long getWins() {
+        return wins;
+    }
+
+    public long getBankruptcies() {
+        return bankruptcies;
+    }
+
+    public long getUnfinished() {
+        return unfinished;
+    }
+
+    /**
+     * @return The sketches of the games' outcomes, or null if these statistics don't keep them.
+     */
+    public OutcomeSketches getOutcomes() {
+        return outcomes;
+    }
+
+    public double getWinRate() {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    public double getAverageTurnsToWin() {
+        return wins == 0 ? 0 : (double) turnsToWin / wins;
+    }
+
+    /**
+     * Finds the average gold of the hunters still playing after a turn.
+     *
+     * @param turn The turn, starting at 0.
+     * @return The average gold, or 0 if no game lasted that long.
+     */
+    public double getAverageGoldAtTurn(int turn) {
+        if (turn >= goldAtTurn.length || gamesAtTurn[turn] == 0) {
+            return 0;
+        }
+        return (double) goldAtTurn[turn] / gamesAtTurn[turn];
+    }
+
+    /**
+     * @return A printable report of the statistics.
+     */
+    public String report() {
+        StringBuilder str = new StringBuilder();
+        str.append("Games played: ").append(games).append('\n');
+        str.append(String.format("Win rate: %.2f%%%n", getWinRate() * 100));
+        if (wins > 0) {
+            str.append(String.format("Turns to win: average %.1f, fewest %d, most %d%n",
+                    getAverageTurnsToWin(), fewestTurnsToWin, mostTurnsToWin));
+        }
+        str.append("Bankruptcies: ").append(bankruptcies).append('\n');
+        str.append("Gave up: ").append(quits).append('\n');
+        str.append("Ran out of turns: ").append(unfinished).append('\n');
+        str.append("Average gold by turn:");
+        int step = Math.max(1, goldAtTurn.length / 10);
+        for (int turn = 0; turn < goldAtTurn.length; turn += step) {
+            if (gamesAtTurn[turn] > 0) {
+                str.append(String.format(" %d:%.1f", turn + 1, getAverageGoldAtTurn(turn)));
+            }
+        }
+        str.append('\n');
+        if (outcomes != null) {
+            str.append(outcomes.report());
+        }
+        return str.toString();
+    }
+}
@@ -0,0 +1,151 @@
+package huntingtreasure;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The Simulator plays many complete games of Treasure Hunter without a player, using a scripted Policy.<p>
+ * The games are split across a ForkJoinPool so every core gets a share of them,
+ * and the per-thread statistics are merged into one SimulationStats at the end.<p>
+ * Every game is seeded from the batch seed and its own index, so a run can be repeated exactly.<p>
+ * A simulator that sketches outcomes also follows each game's brawls, broken items and treasures,
+ * and gives percentiles of them in OutcomeSketches.
+ */
+
+public class Simulator {
+    // constants
+    private static final int GAMES_PER_TASK = 2048;
+    private static final int GOLD_CURVE_LENGTH = 100;
+
+    // instance variables
+    private final GameMode mode;
+    private final Policy policy;
+    private final int maxTurns;
+    private final long seed;
+    private final boolean sketchOutcomes;
+
+    /**
+     * Sets up a simulator for one difficulty.
+     *
+     * @param mode The difficulty every game is played on.
+     * @param policy The scripted player; shared by all threads.
+     * @param maxTurns The number of turns after which an unfinished game is abandoned.
+     * @param seed The seed every game's rolls are worked out from.
+     */
+    public Simulator(GameMode mode, Policy policy, int maxTurns, long seed) {
+        this(mode, policy, maxTurns, seed, false);
+    }
+
+    /**
+     * Sets up a simulator for one difficulty that may also sketch the outcome of every game.
+     *
+     * @param mode The difficulty every game is played on.
+     * @param policy The scripted player; shared by all threads.
+     * @param maxTurns The number of turns after which an unfinished game is abandoned.
+     * @param seed The seed every game's rolls are worked out from.
+     * @param sketchOutcomes Whether the statistics should include OutcomeSketches.
+     */
+    public Simulator(GameMode mode, Policy policy, int maxTurns, long seed, boolean sketchOutcomes) {
+        this.mode = mode;
+        this.policy = policy;
+        this.maxTurns = maxTurns;
+        this.seed = seed;
+        this.sketchOutcomes = sketchOutcomes;
+    }
+
+    /**
+     * Plays the games on the common ForkJoinPool.
+     *
+     * @param games How many games to play.
+     * @return The combined statistics of all the games.
+     */
+    public SimulationStats run(long games) {
+        return run(games, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Plays the games on the given pool.
+     *
+     * @param games How many games to play.
+     * @param pool The pool to split the games across.
+     * @return The combined statistics of all the games.
+     */
+    public SimulationStats run(long games, ForkJoinPool pool) {
+        return pool.invoke(new GameBatch(0, games));
+    }
+
+    /**
+     * Plays one complete game and adds it to the statistics.
+     *
+     * @param gameIndex The position of the game in the batch.
+     * @param stats Where the outcome is recorded.
+     * @param metrics The GameMetrics tally of the batch, or null when metrics are switched off.
+     */
+    private void playGame(long gameIndex, SimulationStats stats, GameMetrics.Tally metrics) {
+        GameEngine game = new GameEngine("bot", mode, SplittableRandomSource.forGame(seed, gameIndex), metrics);
+        OutcomeSketches outcomes = stats.getOutcomes();
+        Hunter hunter = game.getHunter();
+        int turns = 0;
+        long goldLost = 0;
+        int itemsBroken = 0;
+        ItemType lastTreasure = null;
+        long chest = hunter.getChestBits();
+        while (!game.isGameOver() && turns < maxTurns) {
+            TurnResult result = policy.playTurn(game);
+            stats.recordGold(turns, hunter.getGold());
+            turns++;
+            if (outcomes != null) {
+                Command command = result.getCommand();
+                if (command == Command.TROUBLE && result.getGoldChange() < 0) {
+                    goldLost -= result.getGoldChange();
+                } else if (command == Command.MOVE && result.getItem() != null) {
+                    // a move only names an item when the item broke
+                    itemsBroken++;
+                } else if (command == Command.HUNT && hunter.getChestBits() != chest) {
+                    lastTreasure = result.getItem();
+                    chest = hunter.getChestBits();
+                }
+            }
+        }
+        stats.recordGame(game.getStatus(), turns);
+        if (outcomes != null) {
+            outcomes.recordGame(game.getStatus(), turns, hunter.getGold(), goldLost, itemsBroken, lastTreasure, chest);
+        }
+    }
+
+    /**
+     * A range of games that splits itself in half until it is small enough to play on one thread.
+     */
+    private class GameBatch extends RecursiveTask<SimulationStats> {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+
+        GameBatch(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SimulationStats compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                SimulationStats stats = new SimulationStats(GOLD_CURVE_LENGTH, sketchOutcomes ? new OutcomeSketches() : null);
+                GameMetrics.Tally metrics = GameMetrics.ENABLED ? new GameMetrics.Tally(false) : null;
+                for (long i = from; i < to; i++) {
+                    playGame(i, stats, metrics);
+                }
+                if (GameMetrics.ENABLED) {
+                    metrics.flush();
+                }
+                return stats;
+            }
+            long middle = (from + to) >>> 1;
+            GameBatch left = new GameBatch(from, middle);
+            left.fork();
+            SimulationStats stats = new GameBatch(middle, to).compute();
+            stats.merge(left.join());
+            return stats;
+        }
+    }
+}
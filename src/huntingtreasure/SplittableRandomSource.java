@@ -0,0 +1,62 @@
+package huntingtreasure;
+
+import java.util.SplittableRandom;
+
+/**
+ * A seeded RandomSource backed by a SplittableRandom.<p>
+ * Each game gets its own instance, so it is never shared between threads and needs no synchronization.
+ */
+
+public class SplittableRandomSource implements RandomSource {
+    // instance variables
+    private final SplittableRandom random;
+
+    /**
+     * @param seed The seed for the game.
+     */
+    public SplittableRandomSource(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Works out the seed of one game in a batch, so that the same game always gets the same rolls
+     * no matter which thread ends up playing it.
+     *
+     * @param baseSeed The seed of the whole batch.
+     * @param gameIndex The position of the game in the batch.
+     * @return A RandomSource for that game.
+     */
+    public static SplittableRandomSource forGame(long baseSeed, long gameIndex) {
+        return new SplittableRandomSource(gameSeed(baseSeed, gameIndex));
+    }
+
+    /**
+     * @return The seed forGame() gives the game's SplittableRandom.
+     */
+    static long gameSeed(long baseSeed, long gameIndex) {
+        // scramble the index so that neighbouring games don't get neighbouring seeds
+        long z = baseSeed + (gameIndex + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Rolls a seed for a new source, for a game that is put away and picks up its rolls later, as the ApiServer's are.
+     *
+     * @return The seed.
+     */
+    long nextSeed() {
+        return random.nextLong();
+    }
+
+    @Override
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+}
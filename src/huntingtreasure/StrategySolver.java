@@ -0,0 +1,621 @@
+package huntingtreasure;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * The StrategySolver works out how to play a mode perfectly, by treating the game as a Markov decision process and
+ * solving it with value iteration.<p>
+ * A state is the hunter's gold (capped at goldCap), kit and chest plus the current town's terrain, what is left to
+ * find there and its dug/tough flags. A town's dust, a treasure already in the chest and a town already searched all
+ * leave nothing to find, so they share a state. Every state gets a slot in flat primitive arrays, laid out as
+ * <pre>
+ *  kit bits, chest bits, terrain, find (crown, trophy, gem, nothing), flags (DUG | TOUGH), gold
+ * </pre>
+ * with the gold changing fastest, so the brawls and digs that move gold up and down read neighbouring slots.<p>
+ * The odds and the prices come from the solver's Rules, the same ones the engine reads, so it plays exactly the game
+ * the engine runs, with two simplifications: gold above the cap counts as the cap, and the sword can only be bought in
+ * samurai mode, as the shop's catalog says.<p>
+ * The value of a state is the expected number of turns left before winning, where going broke costs lossPenalty turns.
+ * Each sweep updates the values in place, split across cores by kit.
+ */
+
+public class StrategySolver {
+    // constants
+    public static final int HUNT = 0;
+    public static final int DIG = 1;
+    public static final int TROUBLE = 2;
+    public static final int MOVE = 3;
+    public static final int BUY = 4;
+    public static final int SELL = BUY + ItemType.SWORD.ordinal() + 1;
+    public static final int ACTIONS = SELL + ItemType.SWORD.ordinal() + 1;
+    public static final int NONE = -1;
+
+    public static final int DUG = 1;
+    public static final int TOUGH = 2;
+
+    static final int CHESTS = 8;
+    static final int TREASURES = 4;
+    static final int FLAGS = 4;
+    private static final int ITEMS = ItemType.SWORD.ordinal() + 1;
+    private static final int WINNING_CHEST = CHESTS - 1;
+    private static final int NOTHING = ItemType.DUST.ordinal() - ItemType.CROWN.ordinal();
+    private static final int TOWNS = Terrain.count() * TREASURES;
+    private static final int TOWN_STATES = TOWNS * FLAGS;
+    private static final int VALUES_MAGIC = 0x48545646;
+    private static final int POLICY_MAGIC = 0x48545050;
+    private static final int FILE_VERSION = 1;
+
+    // instance variables
+    private final GameMode mode;
+    private final Rules rules;
+    private final int goldCap;
+    private final double lossPenalty;
+    private final int kitStates;
+    private final int golds;
+    private final double toughness;
+    private final boolean easy;
+    private final int[] costs;
+    private final int[] buyBackCosts;
+    private final int[] neededBits;
+    private final int[] townWeights;
+    private final int totalTownWeight;
+    private final float[] values;
+    private final float[] winChances;
+    private final float[] arrivals;
+    private final byte[] policy;
+    private int sweeps;
+
+    /**
+     * Sets up the state space for a mode under the current rules. Nothing is solved until solve() is called.
+     *
+     * @param mode The mode whose rules and prices are used.
+     * @param goldCap The most gold the solver tells apart; more than this counts as this much.
+     * @param lossPenalty How many turns going broke is worth.
+     */
+    public StrategySolver(GameMode mode, int goldCap, double lossPenalty) {
+        this(mode, Rules.current(), goldCap, lossPenalty);
+    }
+
+    /**
+     * Sets up the state space for a mode. Nothing is solved until solve() is called.
+     *
+     * @param mode The mode whose rules and prices are used.
+     * @param rules The odds, prices and terrains to solve for.
+     * @param goldCap The most gold the solver tells apart; more than this counts as this much.
+     * @param lossPenalty How many turns going broke is worth.
+     */
+    public StrategySolver(GameMode mode, Rules rules, int goldCap, double lossPenalty) {
+        this.mode = mode;
+        this.rules = rules;
+        this.goldCap = goldCap;
+        this.lossPenalty = lossPenalty;
+        easy = mode.isEasy();
+        toughness = rules.getToughness(mode);
+        // without the sword the kit only ever holds the first seven items
+        kitStates = 1 << (mode.isSamurai() ? ITEMS : ITEMS - 1);
+        golds = goldCap + 1;
+
+        Shop shop = Shop.of(rules, rules.getMarkdown(mode), mode.isSamurai());
+        costs = new int[ITEMS];
+        buyBackCosts = new int[ITEMS];
+        for (int item = 0; item < ITEMS; item++) {
+            ItemType type = ItemType.values()[item];
+            costs[item] = shop.getCostOfItem(type);
+            buyBackCosts[item] = shop.getBuyBackCost(type);
+        }
+        neededBits = new int[Terrain.count()];
+        for (int terrain = 0; terrain < neededBits.length; terrain++) {
+            neededBits[terrain] = (int) rules.getTerrain(terrain).getNeededItemType().getBit();
+        }
+        townWeights = new int[TOWNS];
+        for (int town = 0; town < TOWNS; town++) {
+            ItemType treasure = ItemType.values()[ItemType.CROWN.ordinal() + town % TREASURES];
+            townWeights[town] = rules.getTerrainWeight(town / TREASURES) * rules.getTreasureWeight(treasure);
+        }
+        totalTownWeight = rules.getTotalTerrainWeight() * rules.getTotalTreasureWeight();
+
+        int states = Math.multiplyExact(kitStates * CHESTS * TOWN_STATES, golds);
+        values = new float[states];
+        winChances = new float[states];
+        policy = new byte[states];
+        arrivals = new float[kitStates * CHESTS * golds];
+    }
+
+    /**
+     * Runs value iteration until no value moves by more than the tolerance, then fills in the policy and the chance of
+     * winning when it is followed.
+     *
+     * @param tolerance The largest change in expected turns a sweep may make and still count as converged.
+     * @param maxSweeps The most sweeps to run before giving up on converging.
+     * @return The number of sweeps it took.
+     */
+    public int solve(double tolerance, int maxSweeps) {
+        sweeps = 0;
+        Arrays.fill(values, (float) lossPenalty);
+        Arrays.fill(policy, (byte) NONE);
+        fillArrivals(values);
+        double delta = Double.MAX_VALUE;
+        while (delta > tolerance && sweeps < maxSweeps) {
+            delta = IntStream.range(0, kitStates).parallel().mapToDouble(kit -> improve(kit, false)).max().orElse(0);
+            sweeps++;
+        }
+        IntStream.range(0, kitStates).parallel().forEach(kit -> improve(kit, true));
+
+        // evaluate the finished policy a second time, counting wins instead of turns
+        fillArrivals(winChances);
+        delta = Double.MAX_VALUE;
+        for (int sweep = 0; delta > tolerance / lossPenalty && sweep < maxSweeps; sweep++) {
+            delta = IntStream.range(0, kitStates).parallel().mapToDouble(this::evaluateWins).max().orElse(0);
+        }
+        fillArrivals(values);
+        return sweeps;
+    }
+
+    // accessors
+    public GameMode getMode() {
+        return mode;
+    }
+
+    public int getGoldCap() {
+        return goldCap;
+    }
+
+    public int getStateCount() {
+        return values.length;
+    }
+
+    public int getSweeps() {
+        return sweeps;
+    }
+
+    /**
+     * @return The expected turns a new game takes when played perfectly, before its first town is known.
+     */
+    public double getStartingTurns() {
+        Hunter hunter = mode.newHunter("solver");
+        return arrivals[arrivalIndex(Math.min(hunter.getGold(), goldCap), kitIndex(hunter), 0)];
+    }
+
+    /**
+     * @return The chance a new game is won when played perfectly.
+     */
+    public double getStartingWinChance() {
+        Hunter hunter = mode.newHunter("solver");
+        int gold = Math.min(hunter.getGold(), goldCap);
+        int kit = kitIndex(hunter);
+        double chance = 0;
+        for (int town = 0; town < TOWNS; town++) {
+            int state = index(gold, kit, 0, town * FLAGS);
+            // the first town is drawn with the same weights as every other
+            chance += townWeights[town]
+                    * (toughness * winChances[state + TOUGH * golds] + (1 - toughness) * winChances[state]);
+        }
+        return chance / totalTownWeight;
+    }
+
+    /**
+     * Finds the state a game in progress is in.
+     *
+     * @param game A game of this solver's mode that is still being played.
+     * @return The state's index into the value and policy tables.
+     */
+    public int stateOf(GameEngine game) {
+        Hunter hunter = game.getHunter();
+        Town town = game.getCurrentTown();
+        int chest = (int) (hunter.getChestBits() >>> ItemType.CROWN.ordinal()) & WINNING_CHEST;
+        int flags = (town.getAlreadyDug() ? DUG : 0) | (town.isToughTown() ? TOUGH : 0);
+        int find = town.getTreasureType().ordinal() - ItemType.CROWN.ordinal();
+        if (town.getSearched() || hunter.hasItemInChest(town.getTreasureType())) {
+            find = NOTHING;
+        }
+        int townIndex = (Terrain.indexOf(town.getTerrain()) * TREASURES + find) * FLAGS + flags;
+        return index(Math.max(0, Math.min(hunter.getGold(), goldCap)), kitIndex(hunter), chest, townIndex);
+    }
+
+    /**
+     * @param state A state index.
+     * @return The expected turns left from the state when playing perfectly.
+     */
+    public double getExpectedTurns(int state) {
+        return values[state];
+    }
+
+    /**
+     * @param state A state index.
+     * @return The best action in the state: one of HUNT, DIG, TROUBLE, MOVE, BUY + item ordinal, SELL + item ordinal.
+     */
+    public int getAction(int state) {
+        return policy[state];
+    }
+
+    /**
+     * Turns an action from the policy table into the command and item that play it.
+     *
+     * @param action An action from getAction().
+     * @return The command a player would type.
+     */
+    public static Command commandOf(int action) {
+        if (action >= SELL) {
+            return Command.SELL;
+        }
+        if (action >= BUY) {
+            return Command.BUY;
+        }
+        return switch (action) {
+            case HUNT -> Command.HUNT;
+            case DIG -> Command.DIG;
+            case TROUBLE -> Command.TROUBLE;
+            case MOVE -> Command.MOVE;
+            default -> null;
+        };
+    }
+
+    /**
+     * @param action An action from getAction().
+     * @return The item bought or sold by the action, or null if it doesn't trade.
+     */
+    public static ItemType itemOf(int action) {
+        if (action >= SELL) {
+            return ItemType.values()[action - SELL];
+        }
+        return action >= BUY ? ItemType.values()[action - BUY] : null;
+    }
+
+    /**
+     * Writes the value function and the policy table to two files in a directory, named after the mode.
+     * Each starts with a header of ints (magic, version, mode ordinal, gold cap, kit states, chests, terrains,
+     * treasures, flags) followed by one float or byte per state in index order, big-endian.
+     *
+     * @param directory Where the files go.
+     * @throws IOException if a file can't be written.
+     */
+    public void export(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        String prefix = mode.name().toLowerCase(Locale.ROOT);
+        try (FileChannel out = open(directory.resolve(prefix + "-values.bin"))) {
+            writeHeader(out, VALUES_MAGIC);
+            ByteBuffer chunk = ByteBuffer.allocate(1 << 20);
+            for (int state = 0; state < values.length; ) {
+                chunk.clear();
+                while (state < values.length && chunk.remaining() >= Float.BYTES) {
+                    chunk.putFloat(values[state++]);
+                }
+                write(out, chunk.flip());
+            }
+        }
+        try (FileChannel out = open(directory.resolve(prefix + "-policy.bin"))) {
+            writeHeader(out, POLICY_MAGIC);
+            write(out, ByteBuffer.wrap(policy));
+        }
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private void writeHeader(FileChannel out, int magic) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(9 * Integer.BYTES);
+        header.putInt(magic).putInt(FILE_VERSION).putInt(mode.ordinal()).putInt(goldCap).putInt(kitStates)
+                .putInt(CHESTS).putInt(Terrain.count()).putInt(TREASURES).putInt(FLAGS);
+        write(out, header.flip());
+    }
+
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private int kitIndex(Hunter hunter) {
+        return (int) hunter.getKitBits() & (kitStates - 1);
+    }
+
+    private int index(int gold, int kit, int chest, int town) {
+        return ((kit * CHESTS + chest) * TOWN_STATES + town) * golds + gold;
+    }
+
+    private int arrivalIndex(int gold, int kit, int chest) {
+        return (kit * CHESTS + chest) * golds + gold;
+    }
+
+    private void fillArrivals(float[] table) {
+        for (int kit = 0; kit < kitStates; kit++) {
+            for (int chest = 0; chest < WINNING_CHEST; chest++) {
+                fillArrivals(table, kit, chest);
+            }
+        }
+    }
+
+    /**
+     * Works out what arriving in a brand-new town is worth for every gold with one kit and chest, so a move only has
+     * to look up one number instead of averaging over every town it could lead to.
+     */
+    private void fillArrivals(float[] table, int kit, int chest) {
+        int first = index(0, kit, chest, 0);
+        for (int gold = 0; gold < golds; gold++) {
+            double sum = 0;
+            for (int terrain = 0; terrain < Terrain.count(); terrain++) {
+                for (int treasure = 0; treasure < TREASURES; treasure++) {
+                    int weight = townWeights[terrain * TREASURES + treasure];
+                    if (weight == 0) {
+                        continue;
+                    }
+                    // a treasure already in the chest is as good as dust
+                    int find = (chest & (1 << treasure)) != 0 ? NOTHING : treasure;
+                    int state = first + (terrain * TREASURES + find) * FLAGS * golds + gold;
+                    sum += weight * (toughness * table[state + TOUGH * golds] + (1 - toughness) * table[state]);
+                }
+            }
+            arrivals[arrivalIndex(gold, kit, chest)] = (float) (sum / totalTownWeight);
+        }
+    }
+
+    /**
+     * Gives every state with one kit its best value, and optionally records the action that achieves it. Chests are
+     * swept fullest first, since that is the direction winning flows back from.
+     *
+     * @return The biggest change made to a value.
+     */
+    private double improve(int kit, boolean record) {
+        Row row = new Row();
+        double[] best = new double[golds];
+        byte[] bestActions = new byte[golds];
+        double delta = 0;
+        for (int chest = WINNING_CHEST - 1; chest >= 0; chest--) {
+            for (int town = 0; town < TOWN_STATES; town++) {
+                if (!reachable(chest, town)) {
+                    continue;
+                }
+                int first = row.load(values, kit, chest, town);
+                // one action at a time across the whole row keeps each loop short and branch-free
+                for (int gold = 0; gold < golds; gold++) {
+                    best[gold] = trouble(row, 1, lossPenalty, gold);
+                    bestActions[gold] = TROUBLE;
+                }
+                for (int i = 1; i < row.actionCount; i++) {
+                    int action = row.actions[i];
+                    for (int gold = 0; gold < golds; gold++) {
+                        double value = backup(values, row, 1, 0, lossPenalty, action, gold);
+                        if (value < best[gold]) {
+                            best[gold] = value;
+                            bestActions[gold] = (byte) action;
+                        }
+                    }
+                }
+                for (int gold = 0, state = first; gold < golds; gold++, state++) {
+                    delta = Math.max(delta, Math.abs(best[gold] - values[state]));
+                    values[state] = (float) best[gold];
+                }
+                if (record) {
+                    System.arraycopy(bestActions, 0, policy, first, golds);
+                }
+            }
+            fillArrivals(values, kit, chest);
+        }
+        return delta;
+    }
+
+    /**
+     * Updates the chance of winning for every state with one kit, following the policy.
+     *
+     * @return The biggest change made to a chance.
+     */
+    private double evaluateWins(int kit) {
+        Row row = new Row();
+        double delta = 0;
+        for (int chest = WINNING_CHEST - 1; chest >= 0; chest--) {
+            for (int town = 0; town < TOWN_STATES; town++) {
+                if (!reachable(chest, town)) {
+                    continue;
+                }
+                int state = row.load(winChances, kit, chest, town);
+                for (int gold = 0; gold < golds; gold++, state++) {
+                    double chance = backup(winChances, row, 0, 1, 0, policy[state], gold);
+                    delta = Math.max(delta, Math.abs(chance - winChances[state]));
+                    winChances[state] = (float) chance;
+                }
+            }
+            fillArrivals(winChances, kit, chest);
+        }
+        return delta;
+    }
+
+    /**
+     * @return false if the town has a treasure to find that is already in the chest, which never happens since such a
+     *         town counts as having nothing to find.
+     */
+    private static boolean reachable(int chest, int town) {
+        int find = (town / FLAGS) % TREASURES;
+        return find == NOTHING || (chest & (1 << find)) == 0;
+    }
+
+    /**
+     * Works out what taking an action in a state is worth, given what every state is worth now.
+     *
+     * @param table The current worth of every state; arrivals must have been filled from it.
+     * @param row The state's row, loaded from the same table.
+     * @param step What taking a turn adds.
+     * @param won What winning is worth.
+     * @param lost What going broke is worth.
+     * @return The worth of the action, or NaN if the action would do nothing in this state.
+     */
+    private double backup(float[] table, Row row, double step, double won, double lost, int action, int gold) {
+        if (action >= SELL) {
+            return sell(table, row, step, action - SELL, gold);
+        }
+        if (action >= BUY) {
+            return buy(table, row, step, action - BUY, gold);
+        }
+        return switch (action) {
+            case HUNT -> step + (row.huntState < 0 ? won : table[row.huntState + gold]);
+            case DIG -> dig(table, row, step, gold);
+            case TROUBLE -> trouble(row, step, lost, gold);
+            case MOVE -> move(row, step, gold);
+            default -> Double.NaN;
+        };
+    }
+
+    private double sell(float[] table, Row row, double step, int item, int gold) {
+        return step + table[row.tradeStates[item] + Math.min(gold + buyBackCosts[item], goldCap)];
+    }
+
+    private double buy(float[] table, Row row, double step, int item, int gold) {
+        if (gold < costs[item]) {
+            return Double.NaN;
+        }
+        // the sword scares shopkeepers into handing their wares over
+        return step + table[row.tradeStates[item] + (row.sword ? gold : gold - costs[item])];
+    }
+
+    private double dig(float[] table, Row row, double step, int gold) {
+        int maxDigGold = rules.getMaxDigGold();
+        double dirtChance = rules.getDirtChance();
+        double found = row.dugSums.upTo(gold, maxDigGold);
+        return step + dirtChance * table[row.dugState + gold] + (1 - dirtChance) * found / maxDigGold;
+    }
+
+    private double trouble(Row row, double step, double lost, int gold) {
+        // the brawl chance is both the chance of a brawl and, once in one, the chance of losing it
+        double brawl = row.brawl;
+        int maxBrawlGold = rules.getMaxBrawlGold();
+        // nothing changes when no brawl starts, or when a samurai loses one; rather than loop back to this state,
+        // count only the turns that do change something
+        double same = 1 - brawl + (row.sword ? brawl * brawl : 0);
+        double changed = brawl * (1 - brawl) * row.sums.upTo(gold, maxBrawlGold);
+        if (!row.sword) {
+            int paid = Math.min(gold, maxBrawlGold);
+            double broke = (maxBrawlGold - paid) * lost;
+            changed += brawl * brawl * (row.sums.between(gold - paid, gold) + broke);
+        }
+        return (step + changed / maxBrawlGold) / (1 - same);
+    }
+
+    private double move(Row row, double step, int gold) {
+        double kept = arrivals[row.arrival + gold];
+        if (easy) {
+            return step + kept;
+        }
+        double broke = arrivals[row.brokenArrival + gold];
+        double breakChance = rules.getItemBreakChance();
+        return step + (1 - breakChance) * kept + breakChance * broke;
+    }
+
+    /**
+     * Running totals of one row of gold values, so the value of every possible brawl or dig is two lookups.
+     */
+    private final class GoldSums {
+        private final double[] sums = new double[golds + 1];
+        private final float[] table;
+
+        GoldSums(float[] table) {
+            this.table = table;
+        }
+
+        void load(int first) {
+            for (int gold = 0; gold < golds; gold++) {
+                sums[gold + 1] = sums[gold] + table[first + gold];
+            }
+        }
+
+        /**
+         * @return The sum of the values from gold + 1 to gold + count, where anything past the cap counts as the cap.
+         */
+        double upTo(int gold, int count) {
+            int last = Math.min(gold + count, goldCap);
+            return sums[last + 1] - sums[gold + 1] + (gold + count - last) * (sums[golds] - sums[goldCap]);
+        }
+
+        /**
+         * @return The sum of the values from first up to but not including end.
+         */
+        double between(int first, int end) {
+            return sums[end] - sums[first];
+        }
+    }
+
+    /**
+     * Everything about one row of states (one kit, chest and town, every gold) that doesn't depend on the gold,
+     * worked out once per row: which actions make sense and where they lead.
+     */
+    private final class Row {
+        private final int[] actions = new int[ACTIONS];
+        private final int[] tradeStates = new int[ITEMS];
+        private int actionCount;
+        private GoldSums sums;
+        private GoldSums dugSums;
+        private int huntState;
+        private int dugState;
+        private int arrival;
+        private int brokenArrival;
+        private double brawl;
+        private boolean sword;
+
+        /**
+         * @return The index of the row's first state.
+         */
+        int load(float[] table, int kit, int chest, int town) {
+            if (sums == null || sums.table != table) {
+                sums = new GoldSums(table);
+                dugSums = new GoldSums(table);
+            }
+            int first = index(0, kit, chest, town);
+            int flags = town & (FLAGS - 1);
+            int find = (town / FLAGS) % TREASURES;
+            int terrain = town / (FLAGS * TREASURES);
+            sword = (kit & ItemType.SWORD.getBit()) != 0;
+            if ((flags & TOUGH) != 0) {
+                brawl = rules.getToughBrawlChance();
+            } else if (easy) {
+                brawl = rules.getEasyBrawlChance();
+            } else {
+                brawl = rules.getBrawlChance();
+            }
+            sums.load(first);
+            actionCount = 0;
+            actions[actionCount++] = TROUBLE;
+
+            if (find != NOTHING) {
+                int newChest = chest | (1 << find);
+                int searched = (terrain * TREASURES + NOTHING) * FLAGS + flags;
+                huntState = newChest == WINNING_CHEST ? -1 : index(0, kit, newChest, searched);
+                actions[actionCount++] = HUNT;
+            }
+            if ((flags & DUG) == 0 && (kit & ItemType.SHOVEL.getBit()) != 0) {
+                dugState = first + DUG * golds;
+                dugSums.load(dugState);
+                actions[actionCount++] = DIG;
+            }
+            int needed = neededBits[terrain];
+            if ((kit & needed) != 0) {
+                arrival = arrivalIndex(0, kit, chest);
+                brokenArrival = arrivalIndex(0, kit & ~needed, chest);
+                actions[actionCount++] = MOVE;
+            }
+            for (int item = 0; item < ITEMS; item++) {
+                int bit = 1 << item;
+                if (bit >= kitStates) {
+                    break;
+                }
+                if ((kit & bit) != 0) {
+                    if (buyBackCosts[item] > 0) {
+                        tradeStates[item] = index(0, kit & ~bit, chest, town);
+                        actions[actionCount++] = SELL + item;
+                    }
+                } else if (costs[item] > 0 || item == ItemType.SWORD.ordinal()) {
+                    tradeStates[item] = index(0, kit | bit, chest, town);
+                    actions[actionCount++] = BUY + item;
+                }
+            }
+            return first;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package huntingtreasure;
+
+import java.util.Locale;
+
+/**
+ * The Terrain class is designed to represent the zones between the towns in the Treasure Hunter game.
+ * There are only six kinds of terrain, so every town shares one of the constants below rather than building its own,
+ * and each one works out its messages once, up front.
+ * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!
+ */
+
+public class Terrain {
+    // constants
+    public static final Terrain MOUNTAINS = new Terrain("Mountains", "Rope");
+    public static final Terrain OCEAN = new Terrain("Ocean", "Boat");
+    public static final Terrain PLAINS = new Terrain("Plains", "Horse");
+    public static final Terrain DESERT = new Terrain("Desert", "Water");
+    public static final Terrain JUNGLE = new Terrain("Jungle", "Machete");
+    public static final Terrain MARSH = new Terrain("Marsh", "Boots");
+
+    // static variables
+    private static final Terrain[] ALL = {MOUNTAINS, OCEAN, PLAINS, DESERT, JUNGLE, MARSH};
+
+    // instance variables
+    private final String terrainName;
+    private final ItemType neededItem;
+    private final String infoString;
+    private final String townInfoString;
+    private final String crossedMessage;
+    private final String itemLostMessage;
+
+    /**
+     * Sets the class member variables
+     *
+     * @param name The name of the zone.
+     * @param item The item needed in order to cross the zone.
+     * @throws IllegalArgumentException if the item isn't one the shops know.
+     */
+    public Terrain(String name, String item) {
+        terrainName = name;
+        neededItem = ItemType.fromName(item.toLowerCase(Locale.ROOT));
+        if (neededItem == null) {
+            throw new IllegalArgumentException("No such item to cross the " + name + " with: " + item);
+        }
+        infoString = "You are surrounded by " + terrainName + " which needs a(n) " + neededItem.getName() + " to cross.";
+        townInfoString = "This nice little town is surrounded by " + terrainName + ".";
+        crossedMessage = "You used your " + neededItem.getName() + " to cross the " + terrainName + ".";
+        itemLostMessage = crossedMessage + "\nUnfortunately, you lost your " + neededItem.getName();
+    }
+
+    /**
+     * @return The number of different terrains.
+     */
+    public static int count() {
+        return ALL.length;
+    }
+
+    /**
+     * @param index A number from 0 up to count().
+     * @return The shared terrain with that number.
+     */
+    public static Terrain get(int index) {
+        return ALL[index];
+    }
+
+    /**
+     * @param terrain A terrain.
+     * @return The number of the shared terrain with the same name, or -1 if it isn't one of them.
+     */
+    public static int indexOf(Terrain terrain) {
+        for (int i = 0; i < ALL.length; i++) {
+            if (ALL[i].terrainName.equals(terrain.terrainName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // accessors
+    public String getTerrainName() {
+        return terrainName;
+    }
+
+    public String getNeededItem() {
+        return neededItem.getName();
+    }
+
+    public ItemType getNeededItemType() {
+        return neededItem;
+    }
+
+    /**
+     * @return The description a town surrounded by this terrain gives of itself.
+     */
+    public String getTownInfoString() {
+        return townInfoString;
+    }
+
+    /**
+     * @param itemLost true if the item used to cross broke on the way.
+     * @return The news for a hunter who has just crossed this terrain.
+     */
+    public String getCrossedMessage(boolean itemLost) {
+        return itemLost ? itemLostMessage : crossedMessage;
+    }
+
+    /**
+     * Guards against a hunter crossing the zone without the proper item.
+     * Searches the hunter's inventory for the proper item and determines whether the hunter can cross.
+     *
+     * @param hunter The Hunter object trying to cross the terrain.
+     * @return true if the Hunter has the proper item.
+     */
+    public boolean canCrossTerrain(Hunter hunter) {
+        if (hunter.hasItemInKit(neededItem)) {
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return A string representation of the terrain and item to cross it.
+     */
+    public String infoString() {
+        return infoString;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,26 @@
+package huntingtreasure;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An unseeded RandomSource that rolls on the calling thread's own ThreadLocalRandom.<p>
+ * This is what an interactive game uses when nobody needs to replay it.
+ */
+
+public class ThreadLocalRandomSource implements RandomSource {
+    // static variables
+    static final ThreadLocalRandomSource INSTANCE = new ThreadLocalRandomSource();
+
+    private ThreadLocalRandomSource() {
+    }
+
+    @Override
+    public double nextDouble() {
+        return ThreadLocalRandom.current().nextDouble();
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return ThreadLocalRandom.current().nextInt(bound);
+    }
+}
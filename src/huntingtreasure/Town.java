@@ -0,0 +1,375 @@
+package huntingtreasure;
+
+/**
+ * The Town Class is where it all happens.
+ * The Town is designed to manage all the things a Hunter can do in town.<p>
+ * A Town is one hunter's stay in a town: it holds that hunter, the news meant for them and their own rolls of the dice.
+ * The place itself (the terrain, the treasure and the dig spot) is a TownSite. A single-player town has a site of its own;
+ * in a multiplayer game visit() puts the town on a site other hunters are standing on too, and the treasure and the dig
+ * spot go to whoever claims them first.<p>
+ * The odds of brawls, digs and broken items come from the Rules the town was built with.
+ * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!
+ */
+
+public class Town {
+    // instance variables
+    private Hunter hunter;
+    private Shop shop;
+    private final Rules rules;
+    private RandomSource random;
+    private double toughness;
+    private Hunter welcomedHunter;
+    private String roughWelcome;
+    private String sleepyWelcome;
+    private String printMessage;
+    private TownSite ownSite;
+    private TownSite site;
+    private boolean searchedHere;
+    private boolean dugHere;
+
+    /**
+     * The Town Constructor takes in a shop and the surrounding terrain, but leaves the hunter as null until one arrives.
+     *
+     * @param shop The town's shoppe.
+     * @param toughness The surrounding terrain.
+     */
+    public Town(Shop shop, double toughness) {
+        this(shop, toughness, RandomSource.threadLocal());
+    }
+
+    /**
+     * Builds a town whose chance rolls all come from the given RandomSource.
+     *
+     * @param shop The town's shoppe.
+     * @param toughness The chance that the town is a tough one.
+     * @param random Where the town's rolls come from.
+     */
+    public Town(Shop shop, double toughness, RandomSource random) {
+        this(shop, Rules.current(), toughness, random);
+    }
+
+    /**
+     * Builds a town played by the given rules.
+     *
+     * @param shop The town's shoppe.
+     * @param rules The odds and terrains the town uses.
+     * @param toughness The chance that the town is a tough one.
+     * @param random Where the town's rolls come from.
+     */
+    public Town(Shop shop, Rules rules, double toughness, RandomSource random) {
+        this.shop = shop;
+        this.rules = rules;
+        this.random = random;
+        this.toughness = toughness;
+        ownSite = new TownSite(rules, toughness, random);
+        site = ownSite;
+        leaveSite();
+    }
+
+    /**
+     * Builds a town on a site other hunters may be in as well, such as one from SharedTowns, without rolling a site
+     * of its own; it only gets one if it is ever reset() or restored.
+     *
+     * @param shop The town's shoppe.
+     * @param rules The odds and terrains the town uses.
+     * @param toughness The chance that a site of the town's own is a tough one.
+     * @param random Where the town's rolls come from.
+     * @param shared The site.
+     */
+    public Town(Shop shop, Rules rules, double toughness, RandomSource random, TownSite shared) {
+        this.shop = shop;
+        this.rules = rules;
+        this.random = random;
+        this.toughness = toughness;
+        site = shared;
+        leaveSite();
+    }
+
+    /**
+     * Turns this town into a brand new one: the terrain, the treasure and the toughness are rolled again,
+     * and nobody has searched or dug here yet. The TownFactory uses this to recycle towns instead of building new ones.
+     */
+    public void reset() {
+        if (ownSite == null) {
+            ownSite = new TownSite(rules, toughness, random);
+        } else {
+            ownSite.reroll(rules, toughness, random);
+        }
+        site = ownSite;
+        leaveSite();
+    }
+
+    /**
+     * Puts this town on a site that other hunters may be in as well, such as one from SharedTowns.
+     * Like reset(), it clears everything this town knew about its last hunter.
+     *
+     * @param shared The site.
+     */
+    public void visit(TownSite shared) {
+        site = shared;
+        leaveSite();
+    }
+
+    private void leaveSite() {
+        // the hunter gets set using the hunterArrives method, which
+        // gets called from a client class
+        hunter = null;
+        printMessage = "";
+        searchedHere = false;
+        dugHere = false;
+    }
+
+    public TownSite getSite() {
+        return site;
+    }
+
+    public Terrain getTerrain() {
+        return site.getTerrain();
+    }
+
+    public Rules getRules() {
+        return rules;
+    }
+
+    public Shop getShop() {
+        return shop;
+    }
+
+    public String getLatestNews() {
+        return printMessage;
+    }
+
+    public void setLatestNews(String news) {
+        printMessage = news;
+    }
+
+    public String getTreasure(){  return site.getTreasure().getName(); }
+
+    public ItemType getTreasureType(){  return site.getTreasure(); }
+
+    /**
+     * @return true if this hunter has searched here, or anybody has found the treasure.
+     */
+    public boolean getSearched() { return searchedHere || site.isTreasureClaimed(); }
+
+    /**
+     * Marks the town as searched by this hunter without claiming anything, as when all there was to find was dust.
+     */
+    public void setSearched() { searchedHere = true;}
+
+    public boolean getSearchedHere() { return searchedHere; }
+
+    /**
+     * Searches the town and takes its treasure if nobody has yet.
+     *
+     * @return true if this hunter is the one who found it.
+     */
+    public boolean claimTreasure() {
+        searchedHere = true;
+        return site.claimTreasure();
+    }
+
+    public boolean getAlreadyDug() { return site.isDug(); }
+
+    public boolean isToughTown() { return site.isToughTown(); }
+
+    /**
+     * Puts the town back the way it was when a saved game was written.
+     * The hunter still needs to arrive afterwards.
+     *
+     * @param terrain The surrounding terrain.
+     * @param treasure The treasure hidden in the town.
+     * @param toughTown Whether the town is a tough one.
+     * @param alreadyDug Whether the town has been dug.
+     * @param searched Whether the town's treasure has been found.
+     */
+    void restore(Terrain terrain, ItemType treasure, boolean toughTown, boolean alreadyDug, boolean searched) {
+        if (ownSite == null) {
+            ownSite = new TownSite(rules, toughness, random);
+        }
+        ownSite.restore(terrain, treasure, toughTown, alreadyDug, searched);
+        site = ownSite;
+        searchedHere = searched;
+        dugHere = alreadyDug;
+    }
+
+    /**
+     * Assigns an object to the Hunter in town.
+     *
+     * @param hunter The arriving Hunter.
+     */
+    public void hunterArrives(Hunter hunter) {
+        this.hunter = hunter;
+        if (hunter != welcomedHunter) {
+            // a recycled town usually greets the same hunter again, so the greetings are kept
+            welcomedHunter = hunter;
+            String welcome = "Welcome to town, " + hunter.getHunterName() + ".";
+            roughWelcome = welcome + "\nIt's pretty rough around here, so watch yourself.";
+            sleepyWelcome = welcome + "\nWe're just a sleepy little town with mild mannered folk.";
+        }
+        if (site.isToughTown()) {
+            printMessage = roughWelcome;
+        } else {
+            printMessage = sleepyWelcome;
+        }
+    }
+
+    /**
+     * Handles the action of the Hunter leaving the town.
+     *
+     * @return true if the Hunter was able to leave town.
+     */
+    public boolean leaveTown(boolean easy) {
+        Terrain terrain = site.getTerrain();
+        boolean canLeaveTown = terrain.canCrossTerrain(hunter);
+        if (canLeaveTown) {
+            ItemType item = terrain.getNeededItemType();
+            boolean itemLost = false;
+            if (!easy){
+                if (checkItemBreak()) {
+                    hunter.removeItemFromKit(item);
+                    itemLost = true;
+                }
+            }
+            printMessage = terrain.getCrossedMessage(itemLost);
+            return true;
+        }
+        printMessage = "You can't leave town, " + hunter.getHunterName() + ". You don't have a " + terrain.getNeededItem() + ".";
+        return false;
+    }
+
+    /**
+     * Handles the Hunter buying an item at the town's shop.
+     *
+     * @param item The item the Hunter wants to buy, or null if the shop doesn't know it.
+     */
+    public void buyItem(ItemType item) {
+        buyItem(item, Shop.NO_QUOTE);
+    }
+
+    /**
+     * Handles the Hunter buying an item at the price the shop quoted them.
+     *
+     * @param item The item the Hunter wants to buy, or null if the shop doesn't know it.
+     * @param quotedPrice The price the Hunter was quoted, or Shop.NO_QUOTE to pay whatever it is now.
+     */
+    public void buyItem(ItemType item, int quotedPrice) {
+        printMessage = shop.buyItem(hunter, item, quotedPrice);
+    }
+
+    /**
+     * Handles the Hunter selling an item to the town's shop.
+     *
+     * @param item The item the Hunter wants to sell, or null if the shop doesn't know it.
+     */
+    public void sellItem(ItemType item) {
+        sellItem(item, Shop.NO_QUOTE);
+    }
+
+    /**
+     * Handles the Hunter selling an item at the price the shop quoted them.
+     *
+     * @param item The item the Hunter wants to sell, or null if the shop doesn't know it.
+     * @param quotedPrice The price the Hunter was quoted, or Shop.NO_QUOTE to take whatever it is now.
+     */
+    public void sellItem(ItemType item, int quotedPrice) {
+        printMessage = shop.sellItem(hunter, item, quotedPrice);
+    }
+
+    /**
+     * Gives the hunter a chance to fight for some gold.<p>
+     * The chances of finding a fight and winning the gold are based on the toughness of the town.<p>
+     * The tougher the town, the easier it is to find a fight, and the harder it is to win one.
+     */
+    public void lookForTrouble(boolean easy) {
+        double noTroubleChance;
+        if (site.isToughTown()) {
+            noTroubleChance = rules.getToughBrawlChance();
+        } else if (easy) {
+            noTroubleChance = rules.getEasyBrawlChance();
+        }else {
+            noTroubleChance = rules.getBrawlChance();
+        }
+        if (random.nextDouble() > noTroubleChance) {
+            printMessage = "You couldn't find any trouble";
+        }
+        else {
+            printMessage = "You want trouble, stranger!  You got it!\nOof! Umph! Ow!\n";
+            int goldDiff = rules.rollBrawlGold(random);
+            if (random.nextDouble() > noTroubleChance ) {
+                printMessage += "Okay, stranger! You proved yer mettle. Here, take my gold.";
+                printMessage += "\nYou won the brawl and receive " + Colors.YELLOW+goldDiff +Colors.RESET + " gold.";
+                hunter.changeGold(goldDiff);
+            }
+            else if (hunter.hasItemInKit(ItemType.SWORD)){
+                printMessage += "the brawler, seeing your sword, realizes they picked a losing fight and gives you their gold";
+
+            }else {
+                printMessage += "That'll teach you to go lookin' fer trouble in MY town! Now pay up!";
+                printMessage += "\nYou lost the brawl and pay " + Colors.YELLOW + goldDiff + Colors.RESET + " gold.";
+                hunter.changeGold(-goldDiff);
+            }
+        }
+    }
+
+
+    public void digGold(){
+       double chance = random.nextDouble() ;
+       double dirtChance = rules.getDirtChance();
+
+       if(site.isDug()){
+           printMessage = alreadyDugNews();
+       }
+       else if(chance > dirtChance && hunter.hasItemInKit(ItemType.SHOVEL)){
+           if (!claimDig()) {
+               printMessage = alreadyDugNews();
+               return;
+           }
+           int goldReward = rules.rollDigGold(random);
+           hunter.changeGold(goldReward);
+          printMessage = "\nYou found " + goldReward + " gold";
+       }
+       else if(chance < dirtChance && hunter.hasItemInKit(ItemType.SHOVEL)){
+          printMessage = claimDig() ? "\nYou dug but only found dirt" : alreadyDugNews();
+       }
+       else {
+           printMessage = "\nYou cannot dig without a shovel";
+       }
+    }
+
+
+
+    private boolean claimDig() {
+        dugHere = site.claimDig();
+        return dugHere;
+    }
+
+    private String alreadyDugNews() {
+        return dugHere ? "\nYou already dug in this town" : "\nSomebody has already dug this town's gold";
+    }
+
+    public String infoString() {
+        return site.getTerrain().getTownInfoString();
+    }
+
+    /**
+     * Writes the same text as infoString() into a StringBuilder the caller keeps reusing.
+     *
+     * @param str Where the town's information is written.
+     */
+    public void appendInfo(StringBuilder str) {
+        str.append(site.getTerrain().getTownInfoString());
+    }
+
+    /**
+     * Determines whether a used item has broken.
+     *
+     * @return true if the item broke.
+     */
+    private boolean checkItemBreak() {
+        double rand = random.nextDouble();
+        return (rand < rules.getItemBreakChance());
+    }
+
+
+}
\ No newline at end of file
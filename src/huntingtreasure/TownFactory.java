@@ -0,0 +1,134 @@
+package huntingtreasure;
+
+import java.util.ArrayDeque;
+
+/**
+ * The TownFactory hands out towns for one game (or one simulator thread) and takes them back when the hunter moves on.<p>
+ * Towns that are given back are reset and kept in a small pool, and prefill() can build a batch of towns ahead of time,
+ * so in the steady state moving to a new town doesn't build any new objects.<p>
+ * A TownFactory built with SharedTowns puts every town it hands out on a site from the shared world instead of rolling one,
+ * so its towns never roll a site of their own, and prefill() leaves them to be built as they are needed.<p>
+ * A TownFactory is not shared between threads.
+ */
+
+public class TownFactory {
+    // instance variables
+    private final Shop shop;
+    private final Rules rules;
+    private final double toughness;
+    private final RandomSource random;
+    private final int capacity;
+    private final ArrayDeque<Town> pool;
+    private final SharedTowns sharedTowns;
+    private final GameMode mode;
+
+    /**
+     * Sets up a factory for towns with the same shop and toughness, played by the current rules.
+     *
+     * @param shop The shop every town gets.
+     * @param toughness The chance that a town is a tough one.
+     * @param random Where the towns' rolls come from.
+     * @param capacity The most towns kept waiting in the pool.
+     */
+    public TownFactory(Shop shop, double toughness, RandomSource random, int capacity) {
+        this(shop, Rules.current(), toughness, random, capacity);
+    }
+
+    /**
+     * Sets up a factory for towns with the same shop, rules and toughness.
+     *
+     * @param shop The shop every town gets.
+     * @param rules The rules every town is played by.
+     * @param toughness The chance that a town is a tough one.
+     * @param random Where the towns' rolls come from.
+     * @param capacity The most towns kept waiting in the pool.
+     */
+    public TownFactory(Shop shop, Rules rules, double toughness, RandomSource random, int capacity) {
+        this.shop = shop;
+        this.rules = rules;
+        this.toughness = toughness;
+        this.random = random;
+        this.capacity = capacity;
+        pool = new ArrayDeque<>(capacity);
+        sharedTowns = null;
+        mode = null;
+    }
+
+    /**
+     * Sets up a factory whose towns stand on the shared sites of a multiplayer world.
+     *
+     * @param shop The shop every town gets.
+     * @param rules The rules every town is played by.
+     * @param mode The difficulty; it picks the world's sites for this mode.
+     * @param random Where the towns' rolls come from.
+     * @param capacity The most towns kept waiting in the pool.
+     * @param sharedTowns The world.
+     */
+    public TownFactory(Shop shop, Rules rules, GameMode mode, RandomSource random, int capacity,
+                       SharedTowns sharedTowns) {
+        this.shop = shop;
+        this.rules = rules;
+        this.toughness = rules.getToughness(mode);
+        this.random = random;
+        this.capacity = capacity;
+        pool = new ArrayDeque<>(capacity);
+        this.sharedTowns = sharedTowns;
+        this.mode = mode;
+    }
+
+    /**
+     * Builds towns ahead of time so that later calls to newTown() don't have to. A shared world's sites can't be known
+     * ahead of time, so its towns aren't prefilled.
+     *
+     * @param count How many towns to build; the pool never grows past its capacity.
+     */
+    public void prefill(int count) {
+        if (sharedTowns != null) {
+            return;
+        }
+        for (int i = 0; i < count && pool.size() < capacity; i++) {
+            pool.addLast(new Town(shop, rules, toughness, random));
+        }
+    }
+
+    /**
+     * @return A town nobody is in yet, from the pool if there is one waiting.
+     */
+    public Town newTown() {
+        Town town = pool.pollFirst();
+        if (sharedTowns != null) {
+            TownSite site = sharedTowns.visit(mode, rules, random);
+            if (town == null) {
+                return new Town(shop, rules, toughness, random, site);
+            }
+            town.visit(site);
+            return town;
+        }
+        if (town == null) {
+            town = new Town(shop, rules, toughness, random);
+        }
+        return town;
+    }
+
+    /**
+     * Takes back a town the hunter has left. It is reset straight away, so it is ready the next time a town is needed.
+     *
+     * @param town The town that was left behind; nothing else may hold on to it.
+     */
+    public void recycle(Town town) {
+        if (pool.size() < capacity) {
+            if (sharedTowns == null) {
+                // a shared town gets its site when it is handed out again
+                town.reset();
+            }
+            pool.addLast(town);
+        }
+    }
+
+    /**
+     * @return How many towns are waiting in the pool.
+     */
+    public int getPoolSize() {
+        return pool.size();
+    }
+}
@@ -0,0 +1,126 @@
+package huntingtreasure;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A TownSite is the place a Town stands on: its terrain, whether it is a tough town, the treasure hidden there,
+ * and whether the treasure has been found and the dig spot dug.<p>
+ * In a single-player game each Town has a site of its own, which is rolled again whenever the town is recycled.
+ * In a multiplayer game many hunters' Towns stand on the same site from SharedTowns, and the treasure and the
+ * dig spot go to whoever claims them first. Claims are a compare-and-set on one int, so hunters never wait for each
+ * other and only the ones actually claiming touch the field.<p>
+ * The terrain, treasure and toughness only change through reroll() and restore(), which are for a site nobody else can see.
+ */
+
+public final class TownSite {
+    // constants
+    static final int TREASURE_CLAIMED = 1;
+    static final int DUG = 2;
+    private static final VarHandle CLAIMS;
+
+    static {
+        try {
+            CLAIMS = MethodHandles.lookup().findVarHandle(TownSite.class, "claims", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // instance variables
+    private Terrain terrain;
+    private ItemType treasure;
+    private boolean toughTown;
+    private volatile int claims;
+
+    /**
+     * Rolls a new site.
+     *
+     * @param rules The terrains and treasure odds to roll from.
+     * @param toughness The chance that the town is a tough one.
+     * @param random Where the site's rolls come from.
+     */
+    public TownSite(Rules rules, double toughness, RandomSource random) {
+        reroll(rules, toughness, random);
+    }
+
+    // accessors
+    public Terrain getTerrain() {
+        return terrain;
+    }
+
+    public ItemType getTreasure() {
+        return treasure;
+    }
+
+    public boolean isToughTown() {
+        return toughTown;
+    }
+
+    public boolean isTreasureClaimed() {
+        return (claims & TREASURE_CLAIMED) != 0;
+    }
+
+    public boolean isDug() {
+        return (claims & DUG) != 0;
+    }
+
+    /**
+     * @return Whether there is no treasure left here to race for: somebody has found it, or it was only ever dust.
+     */
+    public boolean isExhausted() {
+        return treasure == ItemType.DUST || (claims & TREASURE_CLAIMED) != 0;
+    }
+
+    /**
+     * Takes the site's treasure for the caller.
+     *
+     * @return true if this call found it, false if somebody had already.
+     */
+    public boolean claimTreasure() {
+        return claim(TREASURE_CLAIMED);
+    }
+
+    /**
+     * Takes the site's dig spot for the caller.
+     *
+     * @return true if this call gets to dig, false if somebody already has.
+     */
+    public boolean claimDig() {
+        return claim(DUG);
+    }
+
+    private boolean claim(int flag) {
+        int seen = claims;
+        while ((seen & flag) == 0) {
+            int witness = (int) CLAIMS.compareAndExchange(this, seen, seen | flag);
+            if (witness == seen) {
+                return true;
+            }
+            seen = witness;
+        }
+        return false;
+    }
+
+    /**
+     * Rolls the terrain, the treasure and the toughness again, in the same order a new Town always has,
+     * and clears the claims.
+     */
+    void reroll(Rules rules, double toughness, RandomSource random) {
+        terrain = rules.rollTerrain(random);
+        treasure = rules.rollTreasure(random);
+        // higher toughness = more likely to be a tough town
+        toughTown = random.nextDouble() < toughness;
+        claims = 0;
+    }
+
+    /**
+     * Puts the site back the way it was when a saved game was written.
+     */
+    void restore(Terrain terrain, ItemType treasure, boolean toughTown, boolean dug, boolean treasureClaimed) {
+        this.terrain = terrain;
+        this.treasure = treasure;
+        this.toughTown = toughTown;
+        claims = (dug ? DUG : 0) | (treasureClaimed ? TREASURE_CLAIMED : 0);
+    }
+}
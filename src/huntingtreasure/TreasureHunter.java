@@ -0,0 +1,428 @@
+package huntingtreasure;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * This class is responsible for controlling the Treasure Hunter game at the console.<p>
+ * It handles the display of the menu and reading the player's choices.<p>
+ * The rules themselves live in the GameEngine; this class only turns what the player types into commands
+ * and prints the results it gets back. <p>
+ * Each game reads everything the player types from a single CommandInput and writes to its own stream, so the same
+ * class serves the local console, every connection to the GameServer and the scripts a ScriptRunner plays. <p>
+ * Given a SessionSlab, the game parks itself there while it waits for the player's next choice and is built again
+ * when the choice comes in, by the same rules it was parked under, so an idle player keeps only their connection on
+ * the heap. While the game is in play, a player who has asked for a hint keeps the hint search and the positions it has
+ * worked out, at most HINT_TABLE_ENTRIES of them; parking lets go of the search too, and the next hint builds it again.
+ * Games in a shared world stand on sites other hunters can see and are never parked. <p>
+ * Given an AutoSaver, the game is saved in the background after every turn, and the player gets a resume code that
+ * picks the hunt up again if they are cut off. Given an EventJournal session, every turn is journaled. <p>
+ *
+ * This code has been adapted from Ivan Turner's original program -- thank you Mr. Turner!
+ */
+
+public class TreasureHunter {
+    // constants
+    private static final String MENU = Colors.RESET + "\n"
+            + "(B)uy something at the shop.\n"
+            + "(S)ell something at the shop.\n"
+            + "(E)xplore surrounding terrain.\n"
+            + "(D)ig for gold\n"
+            + "(M)ove on to a different town.\n"
+            + "(L)ook for trouble!\n"
+            + "(H)unt for treasure\n"
+            + "Ask for a h(I)nt.\n"
+            + "Give up the hunt and e(X)it.\n"
+            + "\n"
+            + "What's your next move? ";
+    private static final String HINT_KEY = "i";
+    private static final long HINT_BUDGET_NANOS = 5_000_000;
+    private static final int HINT_TABLE_ENTRIES = 2048;
+
+    // instance variables
+    private final CommandInput in;
+    private final PrintWriter out;
+    private final SharedTowns sharedTowns;
+    private final SessionSlab slab;
+    private final RandomSource random;
+    private AutoSaver autoSaver;
+    private AutoSaver.Session autoSave;
+    private EventJournal.Session journal;
+    private int slot;
+    private GameEngine game;
+    private HintSearch hints;
+    private Rules parkedRules;
+    private String news;
+    private boolean quit;
+    private final StringBuilder screen;
+    private char[] screenChars;
+
+    /**
+     * Constructs the Treasure Hunter game on the console.
+     */
+    public TreasureHunter() {
+        this(CommandInput.console(), new PrintWriter(System.out), null, null, RandomSource.threadLocal());
+    }
+
+    /**
+     * Constructs the Treasure Hunter game on the given streams.
+     *
+     * @param in Where the player's input is read from.
+     * @param out Where the game is shown; it is flushed every time the game waits for input.
+     */
+    public TreasureHunter(BufferedReader in, PrintWriter out) {
+        this(in, out, null);
+    }
+
+    /**
+     * Constructs a game on the given streams whose towns are shared with the other players in a world.
+     *
+     * @param in Where the player's input is read from.
+     * @param out Where the game is shown; it is flushed every time the game waits for input.
+     * @param sharedTowns The world, or null for towns of the player's own.
+     */
+    public TreasureHunter(BufferedReader in, PrintWriter out, SharedTowns sharedTowns) {
+        this(in, out, sharedTowns, null);
+    }
+
+    /**
+     * Constructs a game on the given streams that waits for its player in a SessionSlab.
+     *
+     * @param in Where the player's input is read from.
+     * @param out Where the game is shown; it is flushed every time the game waits for input.
+     * @param sharedTowns The world, or null for towns of the player's own.
+     * @param slab Where the game waits between turns, or null to keep it on the heap.
+     */
+    public TreasureHunter(BufferedReader in, PrintWriter out, SharedTowns sharedTowns, SessionSlab slab) {
+        this(CommandInput.of(in), out, sharedTowns, slab, RandomSource.threadLocal());
+    }
+
+    /**
+     * Constructs a game that plays a script, rolling its dice from the given source so that the same script
+     * always plays out the same way.
+     *
+     * @param in Where the commands are read from.
+     * @param out Where the game is shown.
+     * @param random Where the game's rolls come from.
+     */
+    public TreasureHunter(CommandInput in, PrintWriter out, RandomSource random) {
+        this(in, out, null, null, random);
+    }
+
+    private TreasureHunter(CommandInput in, PrintWriter out, SharedTowns sharedTowns, SessionSlab slab,
+                           RandomSource random) {
+        this.in = in;
+        this.out = out;
+        this.sharedTowns = sharedTowns;
+        this.slab = sharedTowns == null ? slab : null;
+        this.random = random;
+        slot = SessionSlab.NO_SLOT;
+        // these will be initialized in the play method
+        game = null;
+        news = "";
+        quit = false;
+        screen = new StringBuilder(1024);
+        screenChars = new char[1024];
+    }
+
+    /**
+     * Starts the game and plays it until the player exits, the game ends or the input runs out.
+     */
+    public void play() {
+        try {
+            welcomePlayer();
+            showMenu();
+            game.flushMetrics();
+            out.flush();
+        } finally {
+            if (autoSave != null) {
+                autoSave.finish();
+            }
+        }
+    }
+
+    /**
+     * Saves the game with an AutoSaver after every turn, and offers to resume a game it saved before. Call it before
+     * play(). Games in a shared world stand on sites that aren't saved, so they are never resumed.
+     *
+     * @param autoSaver The saver, or null to save nothing.
+     */
+    public void setAutoSaver(AutoSaver autoSaver) {
+        this.autoSaver = autoSaver;
+    }
+
+    /**
+     * Journals every turn of the game in a session of an EventJournal. Call it before play().
+     *
+     * @param session The session, or null to journal nothing.
+     */
+    public void setJournal(EventJournal.Session session) {
+        journal = session;
+    }
+
+    /**
+     * @return The game being played, or the game as it ended once play() returns.
+     */
+    public GameEngine getGame() {
+        return game;
+    }
+
+    /**
+     * Asks for the hunter's name and the difficulty, then starts the game engine with them.
+     * With an AutoSaver the player can give a resume code instead of the difficulty and carry on a saved game.
+     */
+    private void welcomePlayer() {
+        out.println("Welcome to " + Colors.CYAN + "TREASURE HUNTER" + Colors.RESET + "!");
+        out.println("Going hunting for the big treasure, eh?");
+        out.print("What's your name, Hunter? ");
+        String name = nextLine();
+
+        if (autoSaver != null && sharedTowns == null) {
+            out.print("Back to finish a hunt? Give your resume code, or press enter for a new one: ");
+            String code = nextLine().trim();
+            if (!code.isEmpty()) {
+                game = resumeGame(code, name);
+                if (game != null) {
+                    attachListeners();
+                    news = "Welcome back, " + game.getHunter().getHunterName()
+                            + ". Your hunt picks up where you left it.";
+                    return;
+                }
+                out.println("There's no hunt of yours under that code, so you're starting afresh.");
+            }
+        }
+
+        out.print(Colors.GREEN + "Easy" + Colors.RESET + ", "
+                + Colors.WHITE + "Normal" + Colors.RESET + ", or "
+                + Colors.RED + "Hard Mode" + Colors.RESET +  "? (e/n/h) ");
+        String mode = nextLine();
+
+        if (sharedTowns == null) {
+            game = new GameEngine(name, GameMode.fromKey(mode), random);
+        } else {
+            game = new GameEngine(name, GameMode.fromKey(mode), random, sharedTowns);
+        }
+        if (autoSaver != null) {
+            autoSave = autoSaver.open();
+            if (sharedTowns == null) {
+                out.println("Your resume code is " + Colors.YELLOW + autoSave.getResumeCode() + Colors.RESET
+                        + "; if you're cut off, give it with your name to carry on.");
+            }
+        }
+        attachListeners();
+        news = game.getCurrentTown().getLatestNews();
+    }
+
+    /**
+     * Loads the saved game a resume code stands for, if the code's key matches, the game belongs to the hunter and
+     * nobody else is playing it.
+     *
+     * @return The game, or null if the code doesn't lead to one; no session is held then.
+     */
+    private GameEngine resumeGame(String code, String name) {
+        AutoSaver.Session session = autoSaver.resume(code);
+        if (session == null) {
+            return null;
+        }
+        GameEngine saved = session.load(random);
+        // a long name was cut short when it was saved, so compare it as it was saved
+        String savedName = new String(SessionCodec.nameBytes(name), StandardCharsets.UTF_8);
+        if (saved == null || !saved.getHunter().getHunterName().equals(savedName)) {
+            session.finish();
+            return null;
+        }
+        autoSave = session;
+        return saved;
+    }
+
+    /**
+     * Displays the menu and receives the choice from the user.<p>
+     * The choice is sent to the processChoice() method for parsing.<p>
+     * This method will loop until the user chooses to exit or the game ends.
+     */
+    private void showMenu() {
+        while (!quit && !game.isGameOver()) {
+            renderTurn();
+            String choice;
+            park();
+            try {
+                choice = nextLine();
+            } finally {
+                unpark();
+            }
+            processChoice(choice);
+        }
+    }
+
+    /**
+     * Puts the game in the slab, if there is one with room, and lets go of everything built around it but its rules,
+     * the hint search and its table included. The turn screen has already been written, so the news isn't needed again either.
+     */
+    private void park() {
+        if (slab == null) {
+            return;
+        }
+        // the rebuilt game starts a new tally, so this one's counts go in now
+        game.flushMetrics();
+        slot = slab.park(game);
+        if (slot != SessionSlab.NO_SLOT) {
+            // the rules are shared by every game built under them, so holding on to them costs a reference
+            parkedRules = game.getRules();
+            game = null;
+            news = null;
+            hints = null;
+        }
+    }
+
+    private void unpark() {
+        if (slot != SessionSlab.NO_SLOT) {
+            game = slab.unpark(slot, parkedRules, random);
+            slot = SessionSlab.NO_SLOT;
+            parkedRules = null;
+            // the rebuilt game is a new object, so it needs listening to again
+            attachListeners();
+        }
+    }
+
+    private void attachListeners() {
+        if (autoSave != null) {
+            autoSave.attach(game);
+        }
+        if (journal != null) {
+            journal.attach(game);
+        }
+    }
+
+    /**
+     * Writes the whole turn screen (the news, the hunter, the town and the menu) in one go.<p>
+     * The screen is built in a StringBuilder that is reused every turn and handed to the output as a single write,
+     * which nextLine() then flushes.
+     */
+    private void renderTurn() {
+        screen.setLength(0);
+        screen.append('\n').append(news).append("\n***\n");
+        game.getHunter().appendInfo(screen);
+        screen.append("\n\n").append(Colors.WHITE);
+        game.getCurrentTown().appendInfo(screen);
+        screen.append('\n').append(MENU);
+
+        int length = screen.length();
+        if (screenChars.length < length) {
+            screenChars = new char[Math.max(length, screenChars.length * 2)];
+        }
+        screen.getChars(0, length, screenChars, 0);
+        out.write(screenChars, 0, length);
+    }
+
+    /**
+     * Takes the choice received from the menu and hands the matching command to the game engine.
+     * @param choice The action to process.
+     */
+    private void processChoice(String choice) {
+        if (choice.equals(HINT_KEY)) {
+            // a hint doesn't use up a turn
+            if (hints == null) {
+                hints = new HintSearch(game.getMode(), game.getRules(), HINT_BUDGET_NANOS, HINT_TABLE_ENTRIES);
+            }
+            news = hints.hint(game);
+            return;
+        }
+        Command command = Command.fromKey(choice);
+        if (command == null) {
+            news = "Yikes! That's an invalid option! Try again.";
+            return;
+        }
+        TurnResult result;
+        if (command == Command.BUY) {
+            result = visitShopToBuy();
+        } else if (command == Command.SELL) {
+            result = visitShopToSell();
+        } else {
+            result = game.execute(command);
+        }
+        if (result == null) {
+            return;
+        }
+        news = result.getMessage();
+        if (result.isGameOver()) {
+            quit = true;
+            out.println(news);
+        }
+    }
+
+    /**
+     * Walks the player through buying an item at the current town's shop.
+     *
+     * @return the result of the purchase, or null if nothing was bought.
+     */
+    private TurnResult visitShopToBuy() {
+        Shop shop = game.getCurrentTown().getShop();
+        out.println("Welcome to the shop! We have the finest wares in town.");
+        out.println("Currently we have the following items:");
+        out.println(shop.inventory());
+        out.print("What're you lookin' to buy? ");
+        String item = nextLine();
+        int cost = shop.checkMarketPrice(item, true);
+        if (cost == 0 && !item.equals("sword")) {
+            news = "We ain't got none of those.";
+            return null;
+        }
+        out.print("It'll cost you " + Colors.YELLOW + cost + Colors.RESET + " gold. Buy it (y/n)? ");
+        String option = nextLine();
+        if (option.equals("y")) {
+            // the market may have moved while the player thought it over; the shop won't charge a different price
+            return game.execute(Command.BUY, ItemType.fromName(item), cost);
+        }
+        news = "You left the shop";
+        return null;
+    }
+
+    /**
+     * Walks the player through selling an item to the current town's shop.
+     *
+     * @return the result of the sale, or null if nothing was sold.
+     */
+    private TurnResult visitShopToSell() {
+        Shop shop = game.getCurrentTown().getShop();
+        Hunter hunter = game.getHunter();
+        out.println("What're you lookin' to sell? ");
+        out.print("You currently have the following items: " + hunter.getInventory(hunter.getKit()));
+        String item = nextLine();
+        int cost = shop.checkMarketPrice(item, false);
+        if (cost == 0) {
+            news = "We don't want none of those.";
+            return null;
+        }
+        out.print("It'll get you " + cost + " gold. Sell it (y/n)? ");
+        String option = nextLine();
+        if (option.equals("y")) {
+            return game.execute(Command.SELL, ItemType.fromName(item), cost);
+        }
+        news = "You left the shop";
+        return null;
+    }
+
+    /**
+     * Shows everything printed so far and waits for the player's next line.
+     * If the player has gone away, the game is ended instead.
+     *
+     * @return The line in lower case, or an empty line if there is no more input.
+     */
+    private String nextLine() {
+        out.flush();
+        try {
+            String line = in.readLine();
+            if (line == null) {
+                quit = true;
+                return "";
+            }
+            return line.trim().toLowerCase(Locale.ROOT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
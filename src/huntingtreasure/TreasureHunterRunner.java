@@ -0,0 +1,367 @@
+package huntingtreasure;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class TreasureHunterRunner {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // -Dhuntingtreasure.rules=FILE plays by the rules in FILE, and picks up changes to it while running
+        String rulesFile = System.getProperty("huntingtreasure.rules");
+        if (rulesFile != null) {
+            new RulesWatcher(Path.of(rulesFile), System.err).start();
+        }
+        if (args.length > 0 && args[0].equals("simulate")) {
+            simulate(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("summarize")) {
+            summarize(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("serve")) {
+            serve(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("api")) {
+            api(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("loadtest")) {
+            loadTest(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("tune")) {
+            tune(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("script")) {
+            script(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("solve")) {
+            solve(args);
+            return;
+        }
+        GameMetrics.get().register();
+        TreasureHunter game = new TreasureHunter();
+        EventJournal journal = openJournal();
+        if (journal != null) {
+            game.setJournal(journal.open());
+        }
+        //System.out.println(Math.random() * 6);
+        game.play();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Opens the journal named by -Dhuntingtreasure.journal=DIR, which journals every turn of every game to segment files
+     * in DIR, written at most huntingtreasure.journal.delayMillis (5 by default) after each turn.
+     *
+     * @return The journal, or null if there isn't one.
+     */
+    private static EventJournal openJournal() throws IOException {
+        String journalDir = System.getProperty("huntingtreasure.journal");
+        if (journalDir == null) {
+            return null;
+        }
+        return new EventJournal(Path.of(journalDir), 64 << 20, 64 << 10, Long.getLong("huntingtreasure.journal.delayMillis", 5));
+    }
+
+    /**
+     * Runs the balance simulator: simulate [games] [easy|normal|hard|samurai] [maxTurns] [seed] [objects|batch|check] [summaryFile]
+     * "objects" (the default) plays each game with a GameEngine, "batch" plays the same games with the BatchSimulator,
+     * and "check" plays them both ways and fails unless the statistics match.
+     * "objects" also reports percentiles of the games' outcomes, and writes them to summaryFile if one is given:
+     * as CSV if its name ends in .csv, otherwise in the binary form that summarize reads.
+     */
+    private static void simulate(String[] args) throws IOException {
+        long games = args.length > 1 ? Long.parseLong(args[1]) : 100000;
+        GameMode mode = args.length > 2 ? GameMode.valueOf(args[2].toUpperCase(Locale.ROOT)) : GameMode.NORMAL;
+        int maxTurns = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+        String engine = args.length > 5 ? args[5] : "objects";
+        Path summaryFile = args.length > 6 ? Path.of(args[6]) : null;
+
+        if (engine.equals("check")) {
+            String mismatch = new BatchSimulator(mode, maxTurns, seed).crossCheck(games);
+            System.out.println("Mode: " + mode + ", seed: " + seed);
+            if (mismatch != null) {
+                System.out.print(mismatch);
+                System.exit(1);
+            }
+            System.out.println("The batch simulator and the Simulator agree on all " + games + " games.");
+            return;
+        }
+        long start = System.nanoTime();
+        SimulationStats stats;
+        if (engine.equals("batch")) {
+            stats = new BatchSimulator(mode, maxTurns, seed).run(games);
+        } else {
+            stats = new Simulator(mode, new GreedyPolicy(), maxTurns, seed, true).run(games);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("Mode: " + mode + ", seed: " + seed);
+        System.out.print(stats.report());
+        System.out.printf("%.2f seconds, %.0f games per second%n", seconds, games / seconds);
+        if (GameMetrics.ENABLED && !engine.equals("batch")) {
+            System.out.print(GameMetrics.get().getSnapshot());
+        }
+        if (summaryFile != null && stats.getOutcomes() != null) {
+            writeSummary(stats.getOutcomes(), summaryFile);
+            System.out.println("Outcome summary written to " + summaryFile);
+        }
+    }
+
+    private static void writeSummary(OutcomeSketches outcomes, Path file) throws IOException {
+        if (file.getFileName().toString().endsWith(".csv")) {
+            try (Writer out = Files.newBufferedWriter(file)) {
+                outcomes.writeCsv(out);
+            }
+        } else {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                outcomes.write(out);
+            }
+        }
+    }
+
+    /**
+     * Searches a grid of rules for win rates: tune GRIDFILE TARGETS [tolerance] [maxGames] [maxTurns] [seed] [cacheFile] [bestRulesFile]
+     * GRIDFILE lists values for rules keys, such as "brawl.chance = 0.25, 0.3, 0.33", and TARGETS the win rate each mode
+     * should have, such as "normal=0.3,hard=0.15". Points already in cacheFile (tuner.cache by default) aren't played
+     * again. The best point is written to bestRulesFile if one is given.
+     */
+    private static void tune(String[] args) throws IOException {
+        Path gridFile = Path.of(args[1]);
+        Map<GameMode, Double> targets = RulesTuner.parseTargets(args[2]);
+        double tolerance = args.length > 3 ? Double.parseDouble(args[3]) : 0.01;
+        long maxGames = args.length > 4 ? Long.parseLong(args[4]) : 1000000;
+        int maxTurns = args.length > 5 ? Integer.parseInt(args[5]) : 500;
+        long seed = args.length > 6 ? Long.parseLong(args[6]) : 42;
+        Path cacheFile = Path.of(args.length > 7 ? args[7] : "tuner.cache");
+        Path bestRulesFile = args.length > 8 ? Path.of(args[8]) : null;
+
+        RulesTuner tuner = new RulesTuner(Rules.current(), RulesTuner.readGrid(gridFile), targets, tolerance,
+                maxGames, maxTurns, seed, RulesTuner.DEFAULT_Z, cacheFile);
+        long start = System.nanoTime();
+        List<RulesTuner.Point> ranked = tuner.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.print(tuner.report(ranked));
+        System.out.printf("%d points in %.2f seconds%n", tuner.getPointCount(), seconds);
+        if (bestRulesFile != null && !ranked.isEmpty()) {
+            try (Writer out = Files.newBufferedWriter(bestRulesFile)) {
+                RulesTuner.writeRules(ranked.get(0), out);
+            }
+            System.out.println("Best rules written to " + bestRulesFile);
+        }
+    }
+
+    /**
+     * Merges binary outcome summaries from separate simulate runs and reports them: summarize FILE... [out.csv]
+     * A last argument ending in .csv gets the merged summary as CSV.
+     */
+    private static void summarize(String[] args) throws IOException {
+        OutcomeSketches merged = new OutcomeSketches();
+        Path csv = null;
+        for (int i = 1; i < args.length; i++) {
+            if (i == args.length - 1 && args[i].endsWith(".csv")) {
+                csv = Path.of(args[i]);
+                break;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Path.of(args[i]))))) {
+                merged.merge(OutcomeSketches.read(in));
+            }
+        }
+        System.out.print(merged.report());
+        if (csv != null) {
+            writeSummary(merged, csv);
+        }
+    }
+
+    /**
+     * Runs the multiplayer server: serve [port] [idleTimeoutSeconds] [drainSeconds] [sharedTownsPerMode] [marketTickMillis] [parkedGames]
+     * With sharedTownsPerMode above 0 (the default is 0) every player hunts in one world of that many towns per mode.
+     * With marketTickMillis above 0 (the default is 0) the shops' prices follow supply and demand, recomputed that often.
+     * With parkedGames above 0 (the default is 0) games waiting for their players are parked in a SessionSlab with room
+     * for that many, in direct memory or, with -Dhuntingtreasure.slab=FILE, mapped from FILE.
+     * With -Dhuntingtreasure.autosave=DIR every game is saved to a SessionStore in DIR in the background, at most
+     * huntingtreasure.autosave.windowMillis (1000 by default) after each turn, and players who are cut off can resume.
+     * With -Dhuntingtreasure.journal=DIR every turn is journaled as openJournal() describes.
+     * The game metrics are published over JMX and printed every huntingtreasure.metrics.reportSeconds seconds (60 by default).
+     */
+    private static void serve(String[] args) throws IOException {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 4000;
+        int idleTimeoutSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+        long drainSeconds = args.length > 3 ? Long.parseLong(args[3]) : 30;
+        int sharedTownsPerMode = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+        long marketTickMillis = args.length > 5 ? Long.parseLong(args[5]) : 0;
+        int parkedGames = args.length > 6 ? Integer.parseInt(args[6]) : 0;
+
+        if (marketTickMillis > 0) {
+            Shop.openMarket(marketTickMillis);
+        }
+
+        SharedTowns sharedTowns = sharedTownsPerMode > 0 ? new SharedTowns(sharedTownsPerMode) : null;
+        SessionSlab slab = null;
+        if (parkedGames > 0) {
+            String slabFile = System.getProperty("huntingtreasure.slab");
+            slab = slabFile == null ? new SessionSlab(parkedGames) : new SessionSlab(Path.of(slabFile), parkedGames);
+        }
+        String autoSaveDir = System.getProperty("huntingtreasure.autosave");
+        SessionStore store = autoSaveDir == null ? null : new SessionStore(Path.of(autoSaveDir));
+        AutoSaver autoSaver = store == null ? null
+                : new AutoSaver(store, 65536, Long.getLong("huntingtreasure.autosave.windowMillis", 1000));
+        EventJournal journal = openJournal();
+        GameServer server = new GameServer(port, idleTimeoutSeconds * 1000, sharedTowns, slab, autoSaver, journal);
+        server.start();
+        GameMetrics metrics = GameMetrics.get();
+        metrics.register();
+        metrics.startReporting(System.out, Long.getLong("huntingtreasure.metrics.reportSeconds", 60));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("Shutting down, waiting for " + server.getSessionCount() + " hunters to finish...");
+            try {
+                server.shutdown(drainSeconds * 1000);
+                if (autoSaver != null) {
+                    autoSaver.close();
+                    store.close();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                System.err.println("Could not save the last games: " + e.getMessage());
+            }
+            closeJournal(journal);
+        }));
+        System.out.println("Treasure Hunter server listening on port " + server.getPort());
+    }
+
+    /**
+     * Runs the HTTP API: api [port] [keyFile]
+     * Servers given the same key file accept each other's game tokens. Without one the server makes up a key,
+     * and its tokens are only good until it stops.
+     * With -Dhuntingtreasure.journal=DIR every turn is journaled as openJournal() describes; servers that share a key
+     * should share the journal too, since a game's tokens say where its records carry on.
+     */
+    private static void api(String[] args) throws IOException {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        byte[] key = args.length > 2 ? Files.readAllBytes(Path.of(args[2])) : newApiKey();
+
+        EventJournal journal = openJournal();
+        ApiServer server = new ApiServer(port, key, journal);
+        server.start();
+        GameMetrics metrics = GameMetrics.get();
+        metrics.register();
+        metrics.startReporting(System.out, Long.getLong("huntingtreasure.metrics.reportSeconds", 60));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.shutdown(5);
+            closeJournal(journal);
+        }));
+        System.out.println("Treasure Hunter API listening on port " + server.getPort());
+    }
+
+    /**
+     * Closes a server's journal, if it has one, once its last games are done.
+     */
+    private static void closeJournal(EventJournal journal) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Could not journal the last turns: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Load tests the HTTP API: loadtest [port] [connections] [seconds] [host]
+     * With port 0 (the default) a server is started in this JVM to test against.
+     * The first fifth of the time is warm-up and isn't measured.
+     */
+    private static void loadTest(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        long millis = (args.length > 3 ? Long.parseLong(args[3]) : 20) * 1000;
+        String host = args.length > 4 ? args[4] : "localhost";
+
+        ApiServer server = null;
+        if (port == 0) {
+            server = new ApiServer(0, newApiKey());
+            server.start();
+            port = server.getPort();
+        }
+        System.out.print(new ApiLoadTest(host, port, connections).run(millis / 5, millis - millis / 5));
+        if (server != null) {
+            server.shutdown(0);
+        }
+    }
+
+    private static byte[] newApiKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+
+    /**
+     * Plays every command script in a directory at once and reports how each ended: script DIR [seed] [reportFile]
+     * The report goes to reportFile if one is given, otherwise to the console; the same seed (0 by default) always
+     * gives the same report for the same scripts.
+     */
+    private static void script(String[] args) throws IOException, InterruptedException {
+        Path directory = Path.of(args.length > 1 ? args[1] : "scripts");
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        Path reportFile = args.length > 3 ? Path.of(args[3]) : null;
+
+        ScriptRunner runner = new ScriptRunner(directory, seed);
+        long start = System.nanoTime();
+        String report = runner.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        if (reportFile == null) {
+            System.out.print(report);
+        } else {
+            Files.writeString(reportFile, report);
+        }
+        System.out.printf("%d scripts, %d lines, %d failed, in %.2f seconds (%.0f lines a second)%n",
+                runner.getScriptCount(), runner.getLinesRead(), runner.getFailures(), seconds,
+                runner.getLinesRead() / seconds);
+    }
+
+    /**
+     * Solves every playable mode and exports the tables: solve [goldCap] [lossPenalty] [outputDir]
+     */
+    private static void solve(String[] args) throws IOException {
+        int goldCap = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        double lossPenalty = args.length > 2 ? Double.parseDouble(args[2]) : 200;
+        Path directory = Path.of(args.length > 3 ? args[3] : "strategy");
+
+        for (GameMode mode : new GameMode[] {GameMode.EASY, GameMode.NORMAL, GameMode.HARD, GameMode.SAMURAI}) {
+            long start = System.nanoTime();
+            StrategySolver solver = new StrategySolver(mode, goldCap, lossPenalty);
+            int sweeps = solver.solve(1e-3, 10000);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            solver.export(directory);
+            System.out.printf("%-8s %,d states, %d sweeps in %.2f seconds: %.2f expected turns (a loss costs %.0f), %.2f%% won%n",
+                    mode, solver.getStateCount(), sweeps, seconds, solver.getStartingTurns(), lossPenalty,
+                    100 * solver.getStartingWinChance());
+            // play the policy in the real game as a check on the tables
+            SimulationStats stats = new Simulator(mode, new OptimalPolicy(solver), 1000, 42).run(100000);
+            System.out.printf("         played by the engine: %.2f%% won, %.1f turns to win%n",
+                    100 * stats.getWinRate(), stats.getAverageTurnsToWin());
+        }
+        System.out.println("Tables written to " + directory.toAbsolutePath());
+    }
+}
@@ -0,0 +1,79 @@
+package huntingtreasure;
+
+/**
+ * The TurnResult class describes what happened when the GameEngine carried out a command.<p>
+ * It holds the message meant for the player, the change in the hunter's gold and whether the game is still going.
+ */
+
+public class TurnResult {
+    /**
+     * Where the game stands after a turn.
+     */
+    public enum Status {
+        PLAYING,
+        WON,
+        LOST,
+        QUIT
+    }
+
+    // instance variables
+    private final Command command;
+    private final String message;
+    private final Status status;
+    private final int goldChange;
+    private final ItemType item;
+
+    /**
+     * Sets the class member variables
+     *
+     * @param command The command that was carried out, or null if it was invalid.
+     * @param message The news produced by the command.
+     * @param status Where the game stands after the command.
+     * @param goldChange How much the hunter's gold went up (or down) during the command.
+     */
+    public TurnResult(Command command, String message, Status status, int goldChange) {
+        this(command, message, status, goldChange, null);
+    }
+
+    /**
+     * Sets the class member variables, including the item the command was about.
+     *
+     * @param command The command that was carried out, or null if it was invalid.
+     * @param message The news produced by the command.
+     * @param status Where the game stands after the command.
+     * @param goldChange How much the hunter's gold went up (or down) during the command.
+     * @param item The item bought or sold, the item that broke on a move, or the treasure hunted; null if none.
+     */
+    public TurnResult(Command command, String message, Status status, int goldChange, ItemType item) {
+        this.command = command;
+        this.message = message;
+        this.status = status;
+        this.goldChange = goldChange;
+        this.item = item;
+    }
+
+    // accessors
+    public Command getCommand() {
+        return command;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getGoldChange() {
+        return goldChange;
+    }
+
+    public ItemType getItem() {
+        return item;
+    }
+
+    public boolean isGameOver() {
+        return status != Status.PLAYING;
+    }
+}
@@ -0,0 +1,108 @@
+package huntingtreasure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Plays games against a running ApiServer and checks what it answers, in particular that a player can't go back to an
+ * older token once a newer one is out.
+ */
+
+class ApiServerTest {
+    // constants
+    private static final Pattern TOKEN = Pattern.compile("\"token\":\"([^\"]+)\"");
+
+    // instance variables
+    private ApiServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new ApiServer(0, "api test".getBytes(StandardCharsets.UTF_8));
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void stopServer() {
+        client.close();
+        server.shutdown(0);
+    }
+
+    @Test
+    void turnsAwayATokenOnceANewerOneIsOut() throws Exception {
+        String started = token(post("/games", "{\"name\":\"Ada\",\"mode\":\"easy\"}"));
+        String buyWater = turn(started, "buy", "water");
+        HttpResponse<String> bought = post("/turns", buyWater);
+        assertEquals(200, bought.statusCode());
+
+        // the same request again, as if its answer was lost, comes out the same
+        HttpResponse<String> resent = post("/turns", buyWater);
+        assertEquals(200, resent.statusCode());
+        assertEquals(bought.body().replaceAll(TOKEN.pattern(), ""), resent.body().replaceAll(TOKEN.pattern(), ""));
+
+        assertEquals(409, post("/turns", turn(started, "buy", "rope")).statusCode());
+        assertEquals(200, post("/turns", turn(token(bought), "buy", "rope")).statusCode());
+        assertEquals(409, post("/turns", buyWater).statusCode());
+    }
+
+    @Test
+    void answersWhatItCantPlayWithTheRightCode() throws Exception {
+        String started = token(post("/games", "{\"mode\":\"NORMAL\"}"));
+        String changed = (started.charAt(20) == 'A' ? 'B' : 'A') + "";
+        String tampered = started.substring(0, 20) + changed + started.substring(21);
+        assertEquals(401, post("/turns", turn(tampered, "move", null)).statusCode());
+        assertEquals(400, post("/turns", turn(started, "fly", null)).statusCode());
+        assertEquals(400, post("/games", "{\"mode\":\"impossible\"}").statusCode());
+        assertEquals(400, post("/turns", "{\"token\":").statusCode());
+        assertEquals(404, post("/games/1", "{}").statusCode());
+
+        HttpRequest get = HttpRequest.newBuilder(uri("/games")).GET().build();
+        assertEquals(405, client.send(get, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    void handsOutANewTokenEveryTurn() throws Exception {
+        String token = token(post("/games", "{\"name\":\"Ada\"}"));
+        for (int i = 0; i < 3; i++) {
+            HttpResponse<String> moved = post("/turns", turn(token, "move", null));
+            assertEquals(200, moved.statusCode());
+            assertNotEquals(token, token(moved));
+            token = token(moved);
+        }
+    }
+
+    private HttpResponse<String> post(String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri(path))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getPort() + path);
+    }
+
+    private static String turn(String token, String command, String item) {
+        return "{\"token\":\"" + token + "\",\"command\":\"" + command + "\""
+                + (item == null ? "" : ",\"item\":\"" + item + "\"") + "}";
+    }
+
+    private static String token(HttpResponse<String> response) {
+        Matcher matcher = TOKEN.matcher(response.body());
+        assertTrue(matcher.find(), response.body());
+        return matcher.group(1);
+    }
+}
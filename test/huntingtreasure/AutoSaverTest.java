@@ -0,0 +1,134 @@
+package huntingtreasure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Plays games under an AutoSaver and checks that their turns are written together, that a game comes back only for its
+ * resume code, and that the id of a finished game goes to one new session and no more.
+ */
+
+class AutoSaverTest {
+    // constants
+    private static final long LONG_WINDOW_MILLIS = 60_000;
+
+    // instance variables
+    @TempDir
+    Path directory;
+    private SessionStore store;
+    private AutoSaver saver;
+
+    @BeforeEach
+    void openSaver() throws IOException {
+        store = new SessionStore(directory);
+        saver = new AutoSaver(store, 64, LONG_WINDOW_MILLIS);
+    }
+
+    @AfterEach
+    void closeSaver() throws IOException {
+        saver.close();
+        store.close();
+    }
+
+    @Test
+    void writesTheTurnsPlayedBetweenBatchesOnce() throws IOException {
+        AutoSaver.Session session = saver.open();
+        GameEngine game = new GameEngine("Ada", GameMode.EASY, new SplittableRandomSource(42));
+        session.attach(game);
+        for (int i = 0; i < 50; i++) {
+            game.execute(Command.EXPLORE);
+        }
+        saver.flush();
+
+        assertEquals(1, saver.getBatchCount());
+        assertEquals(1, saver.getSlotsWritten());
+        SessionStoreTest.assertSameGame(game, session.load(new SplittableRandomSource(1)));
+    }
+
+    @Test
+    void resumesAGameOnlyWithItsCode() throws IOException {
+        AutoSaver.Session session = saver.open();
+        GameEngine game = SessionStoreTest.playedGame("Ada");
+        session.attach(game);
+        saver.flush();
+        String code = session.getResumeCode();
+        long id = session.getId();
+
+        // a session can't be taken up while its player still has it
+        assertNull(saver.resume(code));
+        session.finish();
+
+        AutoSaver.Session guessed = saver.resume(id + "-" + (code.endsWith("0") ? "1" : "0"));
+        assertNotNull(guessed);
+        assertNull(guessed.load(new SplittableRandomSource(1)));
+        guessed.finish();
+
+        AutoSaver.Session resumed = saver.resume(code);
+        SessionStoreTest.assertSameGame(game, resumed.load(new SplittableRandomSource(1)));
+        resumed.finish();
+
+        assertNull(saver.resume("not a code"));
+        assertNull(saver.resume((id + 1) + "-1"));
+        // the guessed code didn't free the id of a game still waiting to be resumed
+        assertNotEquals(id, saver.open().getId());
+    }
+
+    @Test
+    void handsTheIdOfAFinishedGameToOneNewSession() throws IOException {
+        AutoSaver.Session ended = saver.open();
+        GameEngine game = new GameEngine("Ada", GameMode.EASY, new SplittableRandomSource(42));
+        ended.attach(game);
+        game.execute(Command.EXIT);
+        ended.finish();
+        saver.flush();
+
+        // a resume code for the free id takes it, finds nothing and gives it back, once
+        AutoSaver.Session stale = saver.resume(ended.getResumeCode());
+        assertNull(stale.load(new SplittableRandomSource(1)));
+        stale.finish();
+
+        assertEquals(ended.getId(), saver.open().getId());
+        assertEquals(ended.getId() + 1, saver.open().getId());
+    }
+
+    @Test
+    void picksUpTheEmptySlotsOfAnEarlierRun() throws IOException {
+        AutoSaver.Session kept = saver.open();
+        kept.attach(SessionStoreTest.playedGame("Ada"));
+        AutoSaver.Session ended = saver.open();
+        GameEngine game = new GameEngine("Grace", GameMode.EASY, new SplittableRandomSource(42));
+        ended.attach(game);
+        game.execute(Command.EXIT);
+        saver.close();
+
+        saver = new AutoSaver(store, 64, LONG_WINDOW_MILLIS);
+        assertEquals(ended.getId(), saver.open().getId());
+        assertEquals(2, saver.open().getId());
+        assertNotNull(saver.resume(kept.getResumeCode()).load(new SplittableRandomSource(1)));
+    }
+
+    @Test
+    void letsGamesPlayOnOnceClosed() throws IOException {
+        AutoSaver.Session session = saver.open();
+        GameEngine game = new GameEngine("Ada", GameMode.EASY, new SplittableRandomSource(42));
+        session.attach(game);
+        saver.close();
+        assertFalse(saver.isSaving());
+
+        game.execute(Command.BUY, ItemType.WATER);
+        assertTrue(game.getHunter().hasItemInKit(ItemType.WATER));
+        session.finish();
+        assertFalse(session.load(new SplittableRandomSource(1)).getHunter().hasItemInKit(ItemType.WATER));
+    }
+}
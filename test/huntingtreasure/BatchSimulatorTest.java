@@ -0,0 +1,52 @@
+package huntingtreasure;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Checks that the BatchSimulator plays exactly the games the Simulator plays, roll for roll, so its statistics can
+ * stand in for the engine's.
+ */
+
+class BatchSimulatorTest {
+    // constants
+    private static final int GAMES = 2000;
+    private static final int MAX_TURNS = 500;
+    private static final long SEED = 42;
+
+    @ParameterizedTest
+    @EnumSource(GameMode.class)
+    void matchesTheSimulatorUnderTheDefaultRules(GameMode mode) {
+        assertNull(new BatchSimulator(mode, MAX_TURNS, SEED).crossCheck(GAMES));
+    }
+
+    @Test
+    void matchesTheSimulatorUnderUnevenRules() {
+        // uneven weights take the alias tables' second roll, which even ones never do
+        Properties properties = new Properties();
+        properties.setProperty("terrain.ocean.weight", "5");
+        properties.setProperty("terrain.marsh.weight", "0");
+        properties.setProperty("terrain.desert.weight", "3");
+        properties.setProperty("treasure.dust.weight", "3");
+        properties.setProperty("treasure.crown.weight", "2");
+        properties.setProperty("item.horse.cost", "9");
+        properties.setProperty("brawl.maxGold", "14");
+        properties.setProperty("dig.maxGold", "7");
+        Rules uneven = Rules.compile(properties, "test");
+
+        // the Simulator plays by the installed rules, so the uneven ones go in for the length of the test
+        Rules before = Rules.current();
+        Rules.install(uneven);
+        try {
+            for (GameMode mode : GameMode.values()) {
+                assertNull(new BatchSimulator(mode, uneven, MAX_TURNS, SEED).crossCheck(GAMES), mode.name());
+            }
+        } finally {
+            Rules.install(before);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package huntingtreasure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Seals games into GameTokens and checks that they open as they were sealed, and not at all once they are changed or
+ * opened with another key.
+ */
+
+class GameTokenTest {
+    // instance variables
+    private final GameToken tokens = new GameToken("token test".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    void opensTheGameItSealed() {
+        GameToken.Opened opened = tokens.start("Ada", GameMode.NORMAL, 42);
+        opened.getGame().execute(Command.BUY, ItemType.WATER);
+        opened.nextTurn();
+        opened.setJournal(17, 3);
+
+        GameToken.Opened reopened = tokens.open(tokens.seal(opened));
+        SessionStoreTest.assertSameGame(opened.getGame(), reopened.getGame());
+        assertEquals(opened.getGameId(), reopened.getGameId());
+        assertEquals(1, reopened.getTurn());
+        assertEquals(17, reopened.getJournalId());
+        assertEquals(3, reopened.getJournalSequence());
+    }
+
+    @Test
+    void playsTheSameRollsFromTheSameToken() {
+        String token = tokens.seal(tokens.start("Ada", GameMode.NORMAL, 42));
+        GameToken.Opened first = tokens.open(token);
+        GameToken.Opened second = tokens.open(token);
+        for (int i = 0; i < 5; i++) {
+            first.getGame().execute(Command.MOVE);
+            second.getGame().execute(Command.MOVE);
+        }
+        SessionStoreTest.assertSameGame(first.getGame(), second.getGame());
+    }
+
+    @Test
+    void givesEveryGameAndEverySealItsOwn() {
+        GameToken.Opened first = tokens.start("Ada", GameMode.NORMAL, 42);
+        GameToken.Opened second = tokens.start("Ada", GameMode.NORMAL, 42);
+        assertNotEquals(first.getGameId(), second.getGameId());
+        assertNotEquals(tokens.seal(first), tokens.seal(first));
+    }
+
+    @Test
+    void turnsAwayAChangedToken() {
+        byte[] bytes = Base64.getUrlDecoder().decode(tokens.seal(tokens.start("Ada", GameMode.NORMAL, 42)));
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] ^= 1;
+            String changed = encoder.encodeToString(bytes);
+            assertThrows(IllegalArgumentException.class, () -> tokens.open(changed), "byte " + i);
+            bytes[i] ^= 1;
+        }
+    }
+
+    @Test
+    void turnsAwayATokenSealedWithAnotherKey() {
+        GameToken other = new GameToken("another key".getBytes(StandardCharsets.UTF_8));
+        String token = other.seal(other.start("Ada", GameMode.NORMAL, 42));
+        assertThrows(IllegalArgumentException.class, () -> tokens.open(token));
+    }
+
+    @Test
+    void turnsAwayWhatIsNoTokenAtAll() {
+        assertThrows(IllegalArgumentException.class, () -> tokens.open("not a token"));
+        assertThrows(IllegalArgumentException.class, () -> tokens.open("AAAA"));
+        assertThrows(IllegalArgumentException.class, () -> tokens.open("A".repeat(GameToken.MAX_TOKEN_CHARS + 4)));
+    }
+}
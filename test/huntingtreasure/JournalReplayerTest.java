@@ -0,0 +1,125 @@
+package huntingtreasure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Plays games through GameTokens the way the ApiServer does, journaling every turn, and checks that replaying the
+ * journal gives back the game as it stands, even when a token is sent twice or an older one is gone back to.
+ */
+
+class JournalReplayerTest {
+    // instance variables
+    @TempDir
+    Path directory;
+    private GameToken tokens;
+    private EventJournal journal;
+
+    @BeforeEach
+    void openJournal() throws IOException {
+        tokens = new GameToken("journal test".getBytes(StandardCharsets.UTF_8));
+        journal = new EventJournal(directory, 1 << 20, 4096, 0);
+    }
+
+    @Test
+    void rebuildsTheGameTurnByTurn() throws IOException {
+        GameToken.Opened started = start();
+        GameToken.Opened bought = play(tokens.seal(started), Command.BUY, ItemType.WATER);
+        GameToken.Opened moved = play(tokens.seal(bought), Command.MOVE, null);
+        journal.close();
+
+        JournalReplayer.SessionState state = new JournalReplayer(directory).replay(moved.getJournalId());
+        GameEngine game = moved.getGame();
+        assertEquals(3, state.getEventCount());
+        assertEquals(2, state.getLastSequence());
+        assertEquals(game.getHunter().getGold(), state.getGold());
+        assertEquals(game.getHunter().getKitBits(), state.getKitBits());
+        assertEquals(game.getCurrentTown().getTerrain(), state.getTerrain());
+        assertEquals(game.getCurrentTown().getTreasureType(), state.getTreasure());
+    }
+
+    @Test
+    void countsATokenSentTwiceOnce() throws IOException {
+        GameToken.Opened started = start();
+        String token = tokens.seal(play(tokens.seal(started), Command.BUY, ItemType.WATER));
+        play(token, Command.BUY, ItemType.ROPE);
+        GameToken.Opened again = play(token, Command.BUY, ItemType.ROPE);
+        journal.close();
+
+        JournalReplayer.SessionState state = new JournalReplayer(directory).replayAll().get(again.getJournalId());
+        assertEquals(again.getGame().getHunter().getGold(), state.getGold());
+        assertEquals(3, state.getEventCount());
+        assertEquals(again.getJournalSequence() - 1, state.getLastSequence());
+    }
+
+    @Test
+    void followsTheBranchPlayedFromAnOlderToken() throws IOException {
+        GameToken.Opened started = start();
+        String older = tokens.seal(play(tokens.seal(started), Command.BUY, ItemType.WATER));
+        GameToken.Opened abandoned = play(tokens.seal(play(older, Command.BUY, ItemType.ROPE)), Command.BUY, ItemType.MACHETE);
+        GameToken.Opened branch = play(older, Command.BUY, ItemType.BOOTS);
+        journal.close();
+
+        JournalReplayer.SessionState state = new JournalReplayer(directory).replay(branch.getJournalId());
+        assertNotEquals(abandoned.getGame().getHunter().getGold(), state.getGold());
+        assertEquals(branch.getGame().getHunter().getGold(), state.getGold());
+        assertEquals(branch.getGame().getHunter().getKitBits(), state.getKitBits());
+        assertEquals(3, state.getEventCount());
+        assertEquals(2, state.getLastSequence());
+    }
+
+    @Test
+    void keepsSessionsApart() throws IOException {
+        GameToken.Opened first = play(tokens.seal(start()), Command.BUY, ItemType.WATER);
+        GameToken.Opened second = play(tokens.seal(start()), Command.BUY, ItemType.BOOTS);
+        journal.close();
+
+        Map<Long, JournalReplayer.SessionState> sessions = new JournalReplayer(directory).replayAll();
+        assertEquals(2, sessions.size());
+        assertEquals(first.getGame().getHunter().getGold(), sessions.get(first.getJournalId()).getGold());
+        assertEquals(second.getGame().getHunter().getGold(), sessions.get(second.getJournalId()).getGold());
+        assertNull(new JournalReplayer(directory).replay(second.getJournalId() + 1));
+    }
+
+    @Test
+    void letsGamesPlayOnOnceTheJournalIsClosed() throws IOException {
+        GameToken.Opened opened = play(tokens.seal(start()), Command.BUY, ItemType.WATER);
+        journal.close();
+        assertFalse(journal.isJournaling());
+
+        GameToken.Opened after = play(tokens.seal(opened), Command.BUY, ItemType.ROPE);
+        assertTrue(after.getGame().getHunter().hasItemInKit(ItemType.ROPE));
+        assertEquals(2, new JournalReplayer(directory).replay(opened.getJournalId()).getEventCount());
+    }
+
+    private GameToken.Opened start() {
+        GameToken.Opened opened = tokens.start("Ada", GameMode.EASY, 42);
+        EventJournal.Session session = journal.open();
+        session.attach(opened.getGame());
+        opened.setJournal(session.getId(), session.getNextSequence());
+        return opened;
+    }
+
+    /**
+     * Plays a turn of the game in a token, carrying on its journal session as the ApiServer does.
+     */
+    private GameToken.Opened play(String token, Command command, ItemType item) {
+        GameToken.Opened opened = tokens.open(token);
+        EventJournal.Session session = journal.resume(opened.getJournalId(), opened.getJournalSequence());
+        session.attach(opened.getGame());
+        opened.getGame().execute(command, item);
+        opened.setJournal(session.getId(), session.getNextSequence());
+        return opened;
+    }
+}
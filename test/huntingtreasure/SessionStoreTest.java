@@ -0,0 +1,133 @@
+package huntingtreasure;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Saves games through the SessionCodec and the SessionStore and checks that they come back as they were, and only for
+ * whoever holds their key.
+ */
+
+class SessionStoreTest {
+    // constants
+    private static final long KEY = 0x5EED_CAFE_F00DL;
+
+    // instance variables
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsAGameThroughTheCodec() {
+        GameEngine game = playedGame("Ada");
+        ByteBuffer buffer = ByteBuffer.allocate(SessionCodec.MAX_RECORD_BYTES);
+        int written = SessionCodec.encode(game, buffer);
+        assertEquals(buffer.position(), written);
+
+        buffer.flip();
+        assertSameGame(game, SessionCodec.decode(buffer, new SplittableRandomSource(1)));
+        assertEquals(written, buffer.position());
+    }
+
+    @Test
+    void cutsALongNameOnACharacterBoundary() {
+        // every é is two bytes, so MAX_NAME_BYTES falls in the middle of one
+        String name = "x" + "é".repeat(SessionCodec.MAX_NAME_BYTES);
+        byte[] bytes = SessionCodec.nameBytes(name);
+        assertTrue(bytes.length <= SessionCodec.MAX_NAME_BYTES);
+        assertTrue(name.startsWith(new String(bytes, StandardCharsets.UTF_8)));
+
+        GameEngine game = playedGame(name);
+        ByteBuffer buffer = ByteBuffer.allocate(SessionCodec.MAX_RECORD_BYTES);
+        SessionCodec.encode(game, buffer);
+        buffer.flip();
+        assertEquals(new String(bytes, StandardCharsets.UTF_8),
+                SessionCodec.decode(buffer, new SplittableRandomSource(1)).getHunter().getHunterName());
+    }
+
+    @Test
+    void readsAnEmptyRecordAsNoGameAndAnUnknownOneAsAnError() {
+        assertNull(SessionCodec.decode(ByteBuffer.allocate(SessionCodec.MAX_RECORD_BYTES), new SplittableRandomSource(1)));
+
+        ByteBuffer unknown = ByteBuffer.allocate(SessionCodec.MAX_RECORD_BYTES);
+        unknown.put(0, (byte) (SessionCodec.VERSION + 1));
+        assertThrows(IllegalArgumentException.class, () -> SessionCodec.decode(unknown, new SplittableRandomSource(1)));
+
+        ByteBuffer cut = ByteBuffer.allocate(SessionCodec.MAX_RECORD_BYTES);
+        SessionCodec.encode(playedGame("Ada"), cut);
+        cut.flip().limit(SessionCodec.HEADER_BYTES - 1);
+        assertThrows(IllegalArgumentException.class, () -> SessionCodec.decode(cut, new SplittableRandomSource(1)));
+    }
+
+    @Test
+    void loadsASavedGameOnlyWithItsKey() throws IOException {
+        GameEngine game = playedGame("Ada");
+        try (SessionStore store = new SessionStore(directory)) {
+            store.save(2, KEY, game);
+            assertSameGame(game, store.load(2, KEY, new SplittableRandomSource(1)));
+            assertNull(store.load(2, KEY + 1, new SplittableRandomSource(1)));
+            assertNull(store.load(3, KEY, new SplittableRandomSource(1)));
+        }
+        try (SessionStore reopened = new SessionStore(directory)) {
+            assertSameGame(game, reopened.load(2, KEY, new SplittableRandomSource(1)));
+        }
+    }
+
+    @Test
+    void leavesNothingOfALongerNameBehind() throws IOException {
+        try (SessionStore store = new SessionStore(directory)) {
+            store.save(0, KEY, playedGame("Bartholomew Roberts the Younger"));
+            store.save(0, KEY, playedGame("Ada"));
+            assertEquals("Ada", store.load(0, KEY, new SplittableRandomSource(1)).getHunter().getHunterName());
+        }
+    }
+
+    @Test
+    void findsTheSlotsThatHoldNoGame() throws IOException {
+        try (SessionStore store = new SessionStore(directory)) {
+            store.save(0, KEY, playedGame("Ada"));
+            store.save(3, KEY, playedGame("Grace"));
+            store.delete(0);
+            store.delete(7);
+            assertEquals(4, store.getSlotCount());
+            assertArrayEquals(new long[] {0, 1, 2}, store.findEmptySlots());
+            assertNull(store.load(0, KEY, new SplittableRandomSource(1)));
+        }
+    }
+
+    /**
+     * A game a few turns in, so the kit, the gold and the town's flags are not all where a new game has them.
+     */
+    static GameEngine playedGame(String name) {
+        GameEngine game = new GameEngine(name, GameMode.EASY, new SplittableRandomSource(7));
+        game.execute(Command.BUY, ItemType.SHOVEL);
+        game.execute(Command.DIG);
+        game.execute(Command.HUNT);
+        return game;
+    }
+
+    static void assertSameGame(GameEngine expected, GameEngine actual) {
+        assertEquals(expected.getMode(), actual.getMode());
+        assertEquals(expected.getStatus(), actual.getStatus());
+        Hunter hunter = expected.getHunter();
+        assertEquals(hunter.getHunterName(), actual.getHunter().getHunterName());
+        assertEquals(hunter.getGold(), actual.getHunter().getGold());
+        assertEquals(hunter.getKitBits(), actual.getHunter().getKitBits());
+        assertEquals(hunter.getChestBits(), actual.getHunter().getChestBits());
+        Town town = expected.getCurrentTown();
+        assertEquals(town.getTerrain(), actual.getCurrentTown().getTerrain());
+        assertEquals(town.getTreasureType(), actual.getCurrentTown().getTreasureType());
+        assertEquals(town.isToughTown(), actual.getCurrentTown().isToughTown());
+        assertEquals(town.getAlreadyDug(), actual.getCurrentTown().getAlreadyDug());
+        assertEquals(town.getSearched(), actual.getCurrentTown().getSearched());
+    }
+}